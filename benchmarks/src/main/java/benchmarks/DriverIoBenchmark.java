@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import orders.MappedRangeFileReader;
+import orders.OutputSink;
+import orders.RangeReducerType;
+import orders.ShippingHelper;
+import orders.ZipCodeRange;
+import orders.ZipCodeRangeException;
+import orders.ZipCodeRangeWriter;
+
+/**
+ * The Driver's csv load and write path: {@link MappedRangeFileReader} into a helper, then the reduced ranges
+ * out through a {@link ZipCodeRangeWriter}. The Driver sits in the default package, which JMH can't benchmark,
+ * so its steps are called directly.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DriverIoBenchmark {
+
+	@Param({"SPARSE", "DENSE", "OVERLAPPING", "ADJACENT"})
+	public RangeGenerator.Distribution distribution;
+
+	@Param({"1000", "100000", "10000000"})
+	public int count;
+
+	private File inputFile;
+	private File outputFile;
+	private ArrayList<ZipCodeRange> reduced;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, ZipCodeRangeException {
+		inputFile = File.createTempFile("ranges", ".csv");
+		outputFile = File.createTempFile("reduced", ".csv");
+		RangeGenerator.writeCsv(RangeGenerator.generate(distribution, count, false, 42), inputFile.getPath(), false);
+		reduced = loadCsv().getReducedZipCodeRanges(true);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		inputFile.delete();
+		outputFile.delete();
+	}
+
+	@Benchmark
+	public ShippingHelper loadCsv() throws IOException {
+		ShippingHelper helper = new ShippingHelper(RangeReducerType.defaultType(false).newReducer(false));
+		new MappedRangeFileReader(helper, false).load(inputFile.getPath());
+		return helper;
+	}
+
+	@Benchmark
+	public long writeCsv() throws IOException {
+		ZipCodeRangeWriter writer = new ZipCodeRangeWriter(OutputSink.CSV_FILE, outputFile.getPath(), false);
+		try {
+			writer.writeRanges(reduced);
+		} finally {
+			writer.close();
+		}
+		return writer.getRangeCount();
+	}
+}
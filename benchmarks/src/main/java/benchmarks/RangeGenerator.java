@@ -0,0 +1,118 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+
+import orders.OutputSink;
+import orders.ZipCodeRange;
+import orders.ZipCodeRangeWriter;
+
+/**
+ * Seeded synthetic range sets for the benchmarks, packed as [lower0, upper0, lower1, upper1, ...] in random order.
+ * <p>
+ * SPARSE - short ranges (1 to 4 zip codes) scattered over the whole universe
+ * <br>DENSE - wide ranges (up to 1000 zip codes) scattered over the whole universe
+ * <br>OVERLAPPING - ranges piled up in a window of about 1% of the universe
+ * <br>ADJACENT - back to back ranges, each starting right after the previous one ends, shuffled
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public final class RangeGenerator {
+
+	public enum Distribution {
+		SPARSE,
+		DENSE,
+		OVERLAPPING,
+		ADJACENT
+	}
+
+	/**
+	 * Don't instantiate me.
+	 */
+	private RangeGenerator() {
+
+	}
+
+	/**
+	 * @param distribution - how the ranges are spread
+	 * @param count - number of ranges
+	 * @param use9DigitZip - true for ZIP+4 bounds
+	 * @param seed - same seed, same ranges
+	 * @return packed bounds of count valid ranges
+	 */
+	public static int [] generate(Distribution distribution, int count, boolean use9DigitZip, long seed) {
+		Random random = new Random(seed);
+		int max = ZipCodeRange.getMaximumBoundValue(use9DigitZip);
+		int [] bounds = new int [count << 1];
+
+		int window = Math.max(1000, max / 100);
+		int windowStart = 1 + random.nextInt(max - window);
+		int next = 1;
+		for (int i = 0; i < bounds.length; i += 2) {
+			int lower;
+			int size;
+			switch (distribution) {
+				case SPARSE:
+					lower = 1 + random.nextInt(max);
+					size = random.nextInt(4);
+					break;
+				case DENSE:
+					lower = 1 + random.nextInt(max);
+					size = random.nextInt(1000);
+					break;
+				case OVERLAPPING:
+					lower = windowStart + random.nextInt(window);
+					size = random.nextInt(window / 10);
+					break;
+				default:
+					size = random.nextInt(8);
+					if (next + size > max) {
+						next = 1;
+					}
+					lower = next;
+					next = lower + size + 1;
+					break;
+			}
+			bounds[i] = lower;
+			bounds[i + 1] = Math.min(max, lower + size);
+		}
+		if (distribution == Distribution.ADJACENT) {
+			shuffle(bounds, random);
+		}
+		return bounds;
+	}
+
+	/**
+	 * Write packed bounds as a 2 column csv input file.
+	 * @param bounds - packed bounds
+	 * @param fileName - the csv file
+	 * @param use9DigitZip - true to pad bounds to 9 digits
+	 * @throws IOException if the file can't be written
+	 */
+	public static void writeCsv(int [] bounds, String fileName, boolean use9DigitZip) throws IOException {
+		ZipCodeRangeWriter writer = new ZipCodeRangeWriter(OutputSink.CSV_FILE, fileName, use9DigitZip);
+		try {
+			for (int i = 0; i < bounds.length; i += 2) {
+				writer.acceptRange(bounds[i], bounds[i + 1]);
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Fisher Yates shuffle of the ranges, the bounds of a range stay together.
+	 */
+	private static void shuffle(int [] bounds, Random random) {
+		for (int i = (bounds.length >> 1) - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int lower = bounds[i << 1];
+			int upper = bounds[(i << 1) + 1];
+			bounds[i << 1] = bounds[j << 1];
+			bounds[(i << 1) + 1] = bounds[(j << 1) + 1];
+			bounds[j << 1] = lower;
+			bounds[(j << 1) + 1] = upper;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import orders.RangeReducerType;
+import orders.ShippingHelper;
+import orders.ZipCodeRange;
+import orders.ZipCodeRangeException;
+
+/**
+ * Flagging and reducing ranges with each {@link RangeReducerType} engine.
+ * <p>
+ * e.g. java -jar benchmarks/target/benchmarks.jar ShippingHelperBenchmark -p engine=CHUNKED -p count=10000000
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShippingHelperBenchmark {
+
+	@Param({"BITMAP", "SORT_MERGE", "CHUNKED", "INTERVAL_TREE", "CONCURRENT_BITMAP"})
+	public RangeReducerType engine;
+
+	@Param({"SPARSE", "DENSE", "OVERLAPPING", "ADJACENT"})
+	public RangeGenerator.Distribution distribution;
+
+	@Param({"10", "1000", "100000", "10000000"})
+	public int count;
+
+	private int [] bounds;
+	private ZipCodeRange [] ranges;
+	private ShippingHelper loaded;
+
+	@Setup(Level.Trial)
+	public void setUp() throws ZipCodeRangeException {
+		bounds = RangeGenerator.generate(distribution, count, false, 42);
+		ranges = new ZipCodeRange [count];
+		for (int i = 0; i < count; i++) {
+			ranges[i] = new ZipCodeRange(bounds[i << 1], bounds[(i << 1) + 1], false);
+		}
+		loaded = new ShippingHelper(engine.newReducer(false));
+		for (ZipCodeRange range : ranges) {
+			loaded.setFlagForZipCodesInRange(range);
+		}
+	}
+
+	/**
+	 * Flag every range in a new helper, as the Driver does for each input row.
+	 */
+	@Benchmark
+	public ShippingHelper setFlagForZipCodesInRange() throws ZipCodeRangeException {
+		ShippingHelper helper = new ShippingHelper(engine.newReducer(false));
+		for (ZipCodeRange range : ranges) {
+			helper.setFlagForZipCodesInRange(range);
+		}
+		return helper;
+	}
+
+	/**
+	 * Same as {@link #setFlagForZipCodesInRange()} with the unvalidated bulk loader entry point.
+	 */
+	@Benchmark
+	public ShippingHelper setFlagForZipCodesInRangeBounds() {
+		ShippingHelper helper = new ShippingHelper(engine.newReducer(false));
+		for (int i = 0; i < bounds.length; i += 2) {
+			helper.setFlagForZipCodesInRange(bounds[i], bounds[i + 1]);
+		}
+		return helper;
+	}
+
+	@Benchmark
+	public ArrayList<ZipCodeRange> getReducedFlaggedRanges() throws ZipCodeRangeException {
+		return loaded.getReducedZipCodeRanges(true);
+	}
+
+	@Benchmark
+	public ArrayList<ZipCodeRange> getReducedUnflaggedRanges() throws ZipCodeRangeException {
+		return loaded.getReducedZipCodeRanges(false);
+	}
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import orders.ZipCodePrefixIndex;
+import orders.ZipCodeRangeSet;
+
+/**
+ * Single zip code lookups against a reduced {@link ZipCodeRangeSet} (binary search) and the
+ * {@link ZipCodePrefixIndex} compiled from it (constant time).
+ * <p>
+ * e.g. java -jar benchmarks/target/benchmarks.jar ZipCodeLookupBenchmark -p count=1000
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipCodeLookupBenchmark {
+
+	private static final int LOOKUPS = 1024;
+
+	@Param({"SPARSE", "DENSE"})
+	public RangeGenerator.Distribution distribution;
+
+	@Param({"10", "1000", "100000"})
+	public int count;
+
+	private ZipCodeRangeSet ranges;
+	private ZipCodePrefixIndex index;
+	private int [] zipCodes;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		int [] bounds = RangeGenerator.generate(distribution, count, false, 42);
+		ranges = ZipCodeRangeSet.fromPackedBounds(bounds, bounds.length);
+		index = ZipCodePrefixIndex.compile(ranges);
+		zipCodes = new int [LOOKUPS];
+		Random random = new Random(7);
+		for (int i = 0; i < LOOKUPS; i++) {
+			zipCodes[i] = 1 + random.nextInt(99999);
+		}
+	}
+
+	@Benchmark
+	public int rangeSetLookups() {
+		int restricted = 0;
+		for (int zipCode : zipCodes) {
+			if (ranges.isRestricted(zipCode)) {
+				restricted++;
+			}
+		}
+		return restricted;
+	}
+
+	@Benchmark
+	public int prefixIndexLookups() {
+		int restricted = 0;
+		for (int zipCode : zipCodes) {
+			if (index.isRestricted(zipCode)) {
+				restricted++;
+			}
+		}
+		return restricted;
+	}
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import orders.RangeStatus;
+import orders.ZipCodeRange;
+import orders.ZipCodeRangeException;
+
+/**
+ * Cost of building and validating a single {@link ZipCodeRange}, on the valid path and on the exception path
+ * a dirty feed takes.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipCodeRangeBenchmark {
+
+	public int lower = 94200;
+	public int upper = 94299;
+	public int invertedUpper = 94100;
+
+	@Benchmark
+	public ZipCodeRange constructValid() throws ZipCodeRangeException {
+		return new ZipCodeRange(lower, upper, false);
+	}
+
+	@Benchmark
+	public ZipCodeRangeException constructInvalid() {
+		try {
+			new ZipCodeRange(lower, invertedUpper, false);
+			return null;
+		} catch (ZipCodeRangeException ex) {
+			return ex;
+		}
+	}
+
+	@Benchmark
+	public ZipCodeRange constructFromString() throws ZipCodeRangeException {
+		return new ZipCodeRange("94200,94299");
+	}
+
+	@Benchmark
+	public RangeStatus validateBounds() {
+		return ZipCodeRange.validateBounds(lower, invertedUpper, false);
+	}
+}
@@ -1,20 +1,50 @@
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.text.MessageFormat;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
 
-import config.ShippingMessageConstants;
+import config.ShippingConfigDefaults;
+import orders.CoarsenedZipCodeRanges;
+import orders.MappedRangeFileReader;
+import orders.OutputSink;
+import orders.ParallelRangeFileLoader;
+import orders.PipelineMetrics;
+import orders.PipelinePhase;
+import orders.RangeDeltaApplier;
+import orders.RangeFileRestrictionSource;
+import orders.RangeReducer;
+import orders.RangeReducerType;
+import orders.RangeSink;
+import orders.RangeSinkSubscriber;
+import orders.RangeStatus;
+import orders.RejectedRowWriter;
+import orders.RestrictionService;
 import orders.ShippingHelper;
+import orders.SortedRangeFileMerger;
+import orders.StreamingRangeReducer;
 import orders.ZipCodeRange;
 import orders.ZipCodeRangeException;
+import orders.ZipCodeRangeSet;
+import orders.ZipCodeRangeSetFile;
+import orders.ZipCodeRangeWriter;
+import server.RestrictionServer;
 
 
 /**
@@ -27,6 +57,49 @@ import orders.ZipCodeRangeException;
  * outputFileName: output file for the reduced set of ranges. Defined in same place as input file name with file.output.ranges
  * <p>
  * helper: (ShippingHelper) new class that tracks issues arising from addressing and shipping
+ * <p>
+ * reducer.engine: (optional) the {@link RangeReducerType} the helper uses to reduce the ranges. Defaults to BITMAP
+ * (CHUNKED in 9 digit mode)
+ * <p>
+ * zip.use9digit: (optional) true when the ranges are 9 digit ZIP+4 codes, e.g. 941330001. Defaults to
+ * {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP}
+ * <p>
+ * driver.mode: (optional) what the run does. Defaults to reduce
+ * <br>reduce - load file.input.ranges into the helper and write the reduced ranges to file.output.ranges
+ * <br>merge - stream the union of the pre-sorted sources listed in file.input.sources (comma separated) to file.output.ranges
+ * <br>delta - apply the +lower,upper / -lower,upper lines of file.delta.ranges to the reduced ranges in file.base.ranges
+ * (defaults to file.output.ranges) and write the result to file.output.ranges
+ * <br>stream - read file.input.ranges line by line through a {@link StreamingRangeReducer} and write each reduced range
+ * to the output.sinks while the rest of the file is still being read
+ * <br>server - serve isRestricted lookups over HTTP for the items in server.items, see {@link RestrictionServer}
+ * <p>
+ * file.input.sorted: (optional) true when file.input.ranges is sorted by lower bound, lets the stream mode write each
+ * range as soon as it's complete. Defaults to false, the stream mode then writes once the whole file is read
+ * <p>
+ * server.items: (optional) comma separated itemId=rangeFile pairs served in server mode, csv or .zcrs files.
+ * An item restricted by several files joins them with +, e.g. SKU-1=hazmat.csv+state-ca.csv, and each distinct
+ * combination is reduced once, see {@link RangeFileRestrictionSource}.
+ * Defaults to file.input.ranges as item "default"
+ * <br>server.port: (optional) port of the server mode. Defaults to 8080
+ * <br>server.reload.minutes: (optional) reload the server.items files every that many minutes. Defaults to 0, never
+ * <p>
+ * ingest.parallelism: (optional) number of threads that load file.input.ranges. Defaults to 1
+ * <p>
+ * output.sinks: (optional) comma separated {@link OutputSink}s for the reduced ranges: csv_file, stdout or none.
+ * Defaults to csv_file,stdout
+ * <p>
+ * file.reject.ranges: (optional) in load and merge modes, copy the input rows that aren't a valid range to this file,
+ * see {@link RejectedRowWriter}
+ * <p>
+ * output.max.ranges: (optional) in reduce mode, write at most this many ranges by closing the smallest gaps between
+ * them, see {@link ZipCodeRangeSet#coarsen(int)}. Only ever restricts more zip codes. Defaults to 0, the exact ranges
+ * <p>
+ * file.output.binary: (optional) also save the reduced ranges to this file in the binary {@link ZipCodeRangeSetFile} format
+ * <p>
+ * metrics.enabled: (optional) time the load, flag, reduce and write phases and count the ranges in, out and rejected,
+ * see {@link PipelineMetrics}. The metrics are registered with JMX and printed at the end of the run. Defaults to
+ * {@link ShippingConfigDefaults#METRICS_ENABLED}
+ * <br>metrics.jfr: (optional) also commit a JFR event per phase while a flight recording is running. Defaults to false
  *
  * @author Julie Sampson
  *
@@ -36,6 +109,27 @@ public class Driver {
 	private ShippingHelper helper;
 	private String inputFileName;
 	private String outputFileName;
+	private String binaryOutputFileName;
+	private String rejectFileName;
+	private String baseFileName;
+	private String deltaFileName;
+	private Map<String, String> serverItems = new LinkedHashMap<String, String>();
+	private int serverPort = 8080;
+	private long serverReloadMinutes;
+	private boolean use9DigitZip = ShippingConfigDefaults.USE_9_DIGIT_ZIP;
+	private String driverMode = MODE_REDUCE;
+	private int ingestParallelism = 1;
+	private int maxOutputRanges;
+	private boolean inputSorted;
+	private List<OutputSink> outputSinks = Arrays.asList(OutputSink.CSV_FILE, OutputSink.STDOUT);
+	private List<String> sourceFileNames = new ArrayList<String>();
+	private final PipelineMetrics metrics = PipelineMetrics.getInstance();
+
+	private static final String MODE_REDUCE = "reduce";
+	private static final String MODE_MERGE = "merge";
+	private static final String MODE_DELTA = "delta";
+	private static final String MODE_SERVER = "server";
+	private static final String MODE_STREAM = "stream";
 	
 	/**
 	 * Entry point to run zip code ranges through the reducer.
@@ -56,33 +150,54 @@ public class Driver {
 	}
 
 	/**
-	 * Generate the reduced set of zip code ranges from the {@link ShippingHelper} and save
-	 * them to the outputFile. If outputFile file == null, write them to stdout.
+	 * Generate the reduced set of zip code ranges from the {@link ShippingHelper} and send
+	 * them to each of the output.sinks: the outputFile, stdout or nowhere. If outputFile file == null, write them to stdout.
+	 * <br>Also save them to file.output.binary when it's set.
+	 * <br>With output.max.ranges the smallest gaps are closed until the ranges fit, and the extra restricted zip codes are reported.
 	 *
 	 * @param outputFile
 	 * @throws ZipCodeRangeException
 	 * @throws IOException
+	 * @see ZipCodeRangeWriter
 	 */
 	public void generateOutputRanges(String outputFile) throws ZipCodeRangeException, IOException {
 
-		ArrayList<ZipCodeRange> zipCodeRanges = helper.getReducedZipCodeRanges(true);
+		if (maxOutputRanges <= 0) {
+			writeOutputRanges(ZipCodeRangeSet.fromShippingHelper(helper), outputFile);
+			return;
+		}
+		CoarsenedZipCodeRanges coarse = helper.getReducedZipCodeRanges(maxOutputRanges);
+		if (coarse.getClosedGapCount() > 0) {
+			System.out.println("Closed " + coarse.getClosedGapCount() + " gaps to fit output.max.ranges=" + maxOutputRanges + ": "
+							   + coarse.getExtraZipCodeCount() + " extra zip codes restricted.");
+		}
+		writeOutputRanges(coarse.getRanges(), outputFile);
+	}
 
-		BufferedWriter buffer = null;
+	/**
+	 * Send reduced ranges to each of the output.sinks, or to stdout if outputFile == null, and to file.output.binary when it's set.
+	 *
+	 * @param ranges
+	 * @param outputFile
+	 * @throws IOException
+	 */
+	private void writeOutputRanges(ZipCodeRangeSet ranges, String outputFile) throws IOException {
 
-		buffer = new BufferedWriter(new FileWriter(outputFile));
-		for (ZipCodeRange zipCodeRange : zipCodeRanges ) {
-			String range = (MessageFormat.format(ShippingMessageConstants.ZC_RANGE_OUTPUT_FILE_FORMAT,
-												 String.valueOf(zipCodeRange.getLowerBound()),
-												 String.valueOf(zipCodeRange.getUpperBound())));
-				buffer.write(range);
+		long start = metrics.startTimer();
+		List<OutputSink> sinks = (outputFile == null) ? Arrays.asList(OutputSink.STDOUT) : outputSinks;
+		for (OutputSink sink : sinks) {
+			ZipCodeRangeWriter writer = new ZipCodeRangeWriter(sink, outputFile, use9DigitZip);
+			try {
+				writer.writeRanges(ranges);
+			} finally {
+				writer.close();
+			}
 		}
-		buffer.close();
-
-		for (ZipCodeRange zipCodeRange : zipCodeRanges ) {
-			System.out.println(MessageFormat.format(ShippingMessageConstants.ZC_RANGE_OUTPUT_CONSOLE_FORMAT,
-													String.valueOf(zipCodeRange.getLowerBound()),
-													String.valueOf(zipCodeRange.getUpperBound())));
+		if (binaryOutputFileName != null) {
+			ZipCodeRangeSetFile.write(ranges, binaryOutputFileName);
 		}
+		metrics.stopTimer(PipelinePhase.WRITE, start);
+		metrics.recordRangesOut(ranges.size());
 	}
 
 	/**
@@ -98,7 +213,6 @@ public class Driver {
 	 *
 	*/
 	private void init() throws FileNotFoundException {
-		helper = new ShippingHelper();
 		Properties props = new Properties();
 		FileInputStream fis = new FileInputStream("./driver.properties");
 		try {
@@ -109,63 +223,341 @@ public class Driver {
 		}
 		inputFileName = props.getProperty("file.input.ranges");
 		outputFileName = props.getProperty("file.output.ranges");
+		binaryOutputFileName = props.getProperty("file.output.binary");
+		rejectFileName = props.getProperty("file.reject.ranges");
+		baseFileName = props.getProperty("file.base.ranges", outputFileName);
+		deltaFileName = props.getProperty("file.delta.ranges");
+		inputSorted = Boolean.parseBoolean(props.getProperty("file.input.sorted", "false").trim());
+		use9DigitZip = Boolean.parseBoolean(props.getProperty("zip.use9digit", String.valueOf(ShippingConfigDefaults.USE_9_DIGIT_ZIP)));
+		helper = new ShippingHelper(newReducer(props.getProperty("reducer.engine", RangeReducerType.defaultType(use9DigitZip).name())));
+		driverMode = props.getProperty("driver.mode", MODE_REDUCE).trim();
+		String sinks = props.getProperty("output.sinks", "").trim();
+		if (!sinks.isEmpty()) {
+			outputSinks = new ArrayList<OutputSink>();
+			for (String sink : sinks.split(",")) {
+				try {
+					outputSinks.add(OutputSink.fromName(sink));
+				} catch (IllegalArgumentException ex) {
+					System.out.println("Unknown output.sinks entry: " + sink + ". Ignoring it.");
+				}
+			}
+		}
+		try {
+			ingestParallelism = Integer.parseInt(props.getProperty("ingest.parallelism", "1").trim());
+		} catch (NumberFormatException ex) {
+			System.out.println("Invalid ingest.parallelism: " + props.getProperty("ingest.parallelism") + ". Loading on one thread.");
+		}
+		try {
+			maxOutputRanges = Integer.parseInt(props.getProperty("output.max.ranges", "0").trim());
+		} catch (NumberFormatException ex) {
+			System.out.println("Invalid output.max.ranges: " + props.getProperty("output.max.ranges") + ". Writing the exact ranges.");
+		}
+		for (String item : props.getProperty("server.items", "").split(",")) {
+			int equals = item.indexOf('=');
+			if (equals > 0) {
+				serverItems.put(item.substring(0, equals).trim(), item.substring(equals + 1).trim());
+			}
+		}
+		if (serverItems.isEmpty() && inputFileName != null) {
+			serverItems.put("default", inputFileName);
+		}
+		try {
+			serverPort = Integer.parseInt(props.getProperty("server.port", "8080").trim());
+			serverReloadMinutes = Long.parseLong(props.getProperty("server.reload.minutes", "0").trim());
+		} catch (NumberFormatException ex) {
+			System.out.println("Invalid server.port or server.reload.minutes. Using port " + serverPort + " and reload minutes " + serverReloadMinutes);
+		}
+		metrics.setEnabled(Boolean.parseBoolean(props.getProperty("metrics.enabled", String.valueOf(ShippingConfigDefaults.METRICS_ENABLED)).trim()));
+		metrics.setJfrEnabled(Boolean.parseBoolean(props.getProperty("metrics.jfr", "false").trim()));
+		if (metrics.isEnabled() && !metrics.register()) {
+			System.out.println("Couldn't register the metrics with JMX as " + PipelineMetrics.OBJECT_NAME);
+		}
+		String sources = props.getProperty("file.input.sources", "").trim();
+		if (!sources.isEmpty()) {
+			sourceFileNames = Arrays.asList(sources.split("\\s*,\\s*"));
+		}
+	}
+
+	/**
+	 * Pick the engine used to reduce the ranges. The engine can be changed per workload
+	 * by updating the reducer.engine property in {@link driver.properties}, e.g. reducer.engine=sort_merge
+	 * <br>Falls back to the default engine when the name isn't recognized or the engine doesn't support the zip code mode.
+	 *
+	 * @param engineName - name of a {@link RangeReducerType}
+	 * @return a new, empty engine
+	 */
+	private RangeReducer newReducer(String engineName) {
+		try {
+			return RangeReducerType.fromName(engineName).newReducer(use9DigitZip);
+		} catch (IllegalArgumentException ex) {
+			RangeReducerType defaultType = RangeReducerType.defaultType(use9DigitZip);
+			System.out.println("Can't use reducer.engine: " + engineName + ". Using " + defaultType + "\n" + ex.getMessage());
+			return defaultType.newReducer(use9DigitZip);
+		}
 	}
 
 
 	/**
 	 * Load the zip code ranges from a 2 column csv file.
-	 * <br>Open file resource at fileName
-	 * <br>Read in a line (one range) at a time and then parse it
+	 * <br>Memory map the file at fileName
+	 * <br>Parse the digits of each line (one range) straight from the mapped bytes and flag the range in the helper
+	 * <br>Skip and count the lines that aren't a valid range, and copy them to file.reject.ranges when it's set
 	 *
-	 * @param fileName
+	 * <p>
+	 * With ingest.parallelism > 1 the file is split in newline aligned chunks loaded on that many threads instead.
 	 *
+	 * @param fileName
+	 * @throws FileNotFoundException when the input file doesn't exist
+	 * @see MappedRangeFileReader
+	 * @see ParallelRangeFileLoader
 	 */
 	public void loadInputRanges(String fileName) throws FileNotFoundException {
 		File file = new File(fileName);
-		BufferedReader buffer = null;
-		try {
-			if (file.exists()) {
-				FileInputStream fis = new FileInputStream (file);
-				buffer = new BufferedReader(new InputStreamReader(fis));
-				String range = "";
-				while ((range = buffer.readLine())!= null) {
-					loadZipCodesFromRange(range);
-				}
+		if (!file.exists()) {
+			throw new FileNotFoundException(fileName);
+		}
+		RejectedRowWriter rejects = null;
+		long start = metrics.startTimer();
+		try {
+			if (rejectFileName != null) {
+				rejects = new RejectedRowWriter(rejectFileName);
 			}
-		} catch (IOException ex) {
+			if (ingestParallelism > 1) {
+				loadInputRangesInParallel(fileName, rejects);
+			}
+			else {
+				MappedRangeFileReader reader = new MappedRangeFileReader(helper, use9DigitZip);
+				reader.setRejectedRowWriter(rejects);
+				reader.load(fileName);
+				reportRejectedRows(fileName, reader.getRejectedRowCount(RangeStatus.OUT_OF_BOUNDS),
+								   reader.getRejectedRowCount(RangeStatus.INVERTED), reader.getRejectedRowCount(RangeStatus.UNPARSEABLE));
+			}
+		} catch (IOException | ZipCodeRangeException ex) {
 			ex.printStackTrace();
+		} finally {
+			closeQuietly(rejects);
+			metrics.stopTimer(PipelinePhase.LOAD, start);
+		}
+	}
 
+	/**
+	 * Load the zip code ranges on ingest.parallelism threads, each flagging its chunk of the file in
+	 * a private copy of the helper.
+	 *
+	 * @param fileName
+	 * @param rejects - the reject file shared by the threads, or null
+	 */
+	private void loadInputRangesInParallel(String fileName, RejectedRowWriter rejects) throws IOException, ZipCodeRangeException {
+		ForkJoinPool pool = new ForkJoinPool(ingestParallelism);
+		ParallelRangeFileLoader loader = new ParallelRangeFileLoader(pool, use9DigitZip);
+		loader.setRejectedRowWriter(rejects);
+		try {
+			loader.load(fileName, helper);
 		} finally {
+			pool.shutdown();
+		}
+		reportRejectedRows(fileName, loader.getRejectedRowCount(RangeStatus.OUT_OF_BOUNDS),
+						   loader.getRejectedRowCount(RangeStatus.INVERTED), loader.getRejectedRowCount(RangeStatus.UNPARSEABLE));
+	}
+
+	private void reportRejectedRows(String fileName, long outOfBounds, long inverted, long unparseable) {
+		if (outOfBounds + inverted + unparseable > 0) {
+			System.out.println("Skipped " + (outOfBounds + inverted + unparseable) + " invalid ranges in " + fileName
+							   + ": " + outOfBounds + " out of bounds, " + inverted + " inverted, " + unparseable + " unparseable");
+		}
+	}
+
+	private static void closeQuietly(RejectedRowWriter rejects) {
+		if (rejects != null) {
 			try {
-				buffer.close();
+				rejects.close();
 			} catch (IOException ex) {
-				ex.printStackTrace();
+				System.out.println("Couldn't write the reject file: " + ex.getMessage());
 			}
 		}
 	}
 
 	/**
 	 * Extract and flag a set of zip codes represented in the input string range.
-	 * <br> A {@link ZipCodeRange} object is created and passed to the {@link ShippingHelper} to manage
+	 * <br> The bounds are checked with {@link ZipCodeRange#validateBounds(int, int, boolean)} and flagged in the {@link ShippingHelper}
 	 *
 	 * <p> Expected input format:
 	 * <br>range == "98765,99766"
 	 *
 	 * @param range - a single range, with lower and upper bounds separated by a comma
+	 * @return VALID if the range was flagged, otherwise why it was skipped
+	 */
+	public RangeStatus loadZipCodesFromRange (String range) {
+		int [] bounds = new int [2];
+		RangeStatus status = parseBounds(range, bounds);
+		if (status == RangeStatus.VALID) {
+			helper.setFlagForZipCodesInRange(bounds[0], bounds[1]);
+		}
+		metrics.recordRejected(status);
+		return status;
+	}
+
+	/**
+	 * Parse and check one "lower,upper" line with {@link ZipCodeRange#parseBound(String, int, int)}, without
+	 * creating substrings or exceptions.
+	 *
+	 * @param line - a single range, with lower and upper bounds separated by a comma
+	 * @param bounds - receives the lower and upper bounds
+	 * @return VALID, or why the line isn't a valid range
+	 */
+	private RangeStatus parseBounds(String line, int [] bounds) {
+		int comma = line.indexOf(',');
+		if (comma < 0) {
+			return RangeStatus.UNPARSEABLE;
+		}
+		bounds[0] = ZipCodeRange.parseBound(line, 0, comma);
+		bounds[1] = ZipCodeRange.parseBound(line, comma + 1, line.length());
+		if (bounds[0] < 0 || bounds[1] < 0) {
+			return RangeStatus.UNPARSEABLE;
+		}
+		return ZipCodeRange.validateBounds(bounds[0], bounds[1], use9DigitZip);
+	}
+
+	/**
+	 * Stream the union of several restriction sources to the outputFile without loading them into the helper.
+	 * <br>Each source must be a 2 column csv file sorted by lower bound. The sources are k-way merged
+	 * and each minimal range is written as soon as it's complete.
 	 *
+	 * @param fileNames - the sorted sources
+	 * @param outputFile - file for the merged ranges
+	 * @throws ZipCodeRangeException if a source isn't sorted by lower bound
+	 * @throws IOException if a source can't be read or the output can't be written
+	 * @see SortedRangeFileMerger
+	 */
+	public void mergeSortedInputRanges(List<String> fileNames, String outputFile) throws ZipCodeRangeException, IOException {
+
+		SortedRangeFileMerger merger = new SortedRangeFileMerger(use9DigitZip);
+		RejectedRowWriter rejects = null;
+		ZipCodeRangeWriter writer = null;
+		long merged;
+		// reading, merging and writing are interleaved, the whole merge is timed as REDUCE
+		long start = metrics.startTimer();
+		try {
+			if (rejectFileName != null) {
+				rejects = new RejectedRowWriter(rejectFileName);
+				merger.setRejectedRowWriter(rejects);
+			}
+			writer = new ZipCodeRangeWriter(OutputSink.CSV_FILE, outputFile, use9DigitZip);
+			merged = merger.merge(fileNames, writer);
+		} finally {
+			metrics.stopTimer(PipelinePhase.REDUCE, start);
+			if (writer != null) {
+				writer.close();
+			}
+			closeQuietly(rejects);
+		}
+		metrics.recordRangesIn(merger.getRangeCount());
+		metrics.recordRangesOut(merged);
+		System.out.println("Merged " + fileNames.size() + " sources into " + merged + " ranges.");
+		reportRejectedRows(String.join(",", fileNames), merger.getRejectedRowCount(RangeStatus.OUT_OF_BOUNDS),
+						   merger.getRejectedRowCount(RangeStatus.INVERTED), merger.getRejectedRowCount(RangeStatus.UNPARSEABLE));
+	}
+
+	/**
+	 * Apply a change file to a previously reduced output file and write the new reduced ranges.
+	 * <br>The base file is read in a single pass and must be sorted, as written by an earlier run.
+	 * The work is proportional to the size of the base output plus the changes, not to the original sources.
+	 *
+	 * @param baseFile - reduced ranges of an earlier run
+	 * @param deltaFile - +lower,upper and -lower,upper lines, applied in order
+	 * @param outputFile - file for the new reduced ranges, can be the base file
+	 * @throws ZipCodeRangeException if the base file isn't sorted
+	 * @throws IOException if a file can't be read or the output can't be written
+	 * @see RangeDeltaApplier
+	 */
+	public void applyDeltaRanges(String baseFile, String deltaFile, String outputFile) throws ZipCodeRangeException, IOException {
+
+		RangeDeltaApplier applier = new RangeDeltaApplier(use9DigitZip);
+		ZipCodeRangeSet base = applier.loadReducedRanges(baseFile);
+		ZipCodeRangeSet ranges = applier.apply(base, deltaFile);
+		metrics.recordRangesIn(base.size() + applier.getAddedCount() + applier.getRemovedCount());
+		writeOutputRanges(ranges, outputFile);
+		System.out.println("Applied " + applier.getAddedCount() + " additions and " + applier.getRemovedCount() + " removals to "
+						   + base.size() + " ranges, now " + ranges.size() + " ranges. Skipped " + applier.getRejectedRowCount() + " invalid rows.");
+	}
+
+	/**
+	 * Stream the ranges of a 2 column csv file through a {@link StreamingRangeReducer} to each of the output.sinks,
+	 * or to stdout if outputFile == null, and to file.output.binary when it's set.
+	 * <br>This thread reads and parses the lines, the reducer and the writer run on the common pool. With
+	 * file.input.sorted each reduced range is written as soon as a later lower bound closes it, so the run takes
+	 * about as long as the slower of reading and writing rather than both. The reader blocks while the writer is behind.
+	 *
+	 * @param inputFile - ranges, sorted by lower bound if file.input.sorted is set
+	 * @param outputFile - file for the reduced ranges, or null for stdout
+	 * @throws ZipCodeRangeException if the input was declared sorted and isn't
+	 * @throws IOException if the input can't be read or the output can't be written
+	 */
+	public void streamInputRanges(String inputFile, String outputFile) throws ZipCodeRangeException, IOException {
+
+		StreamOutput writer = new StreamOutput((outputFile == null) ? Arrays.asList(OutputSink.STDOUT) : outputSinks,
+											   outputFile, binaryOutputFileName != null);
+		StreamingRangeReducer reducer = new StreamingRangeReducer(inputSorted, use9DigitZip);
+		RangeSinkSubscriber subscriber = new RangeSinkSubscriber(writer);
+		SubmissionPublisher<ZipCodeRange> source = new SubmissionPublisher<ZipCodeRange>();
+		reducer.subscribe(subscriber);
+		source.subscribe(reducer);
+
+		long [] rejected = new long [RangeStatus.values().length];
+		int [] bounds = new int [2];
+		long written;
+		try {
+			BufferedReader reader = new BufferedReader(new FileReader(inputFile), 1 << 16);
+			try {
+				String line;
+				while ((line = reader.readLine()) != null && !subscriber.getCompletion().isDone()) {
+					if (line.trim().isEmpty()) {
+						continue;
+					}
+					RangeStatus status = parseRange(line, bounds, source);
+					rejected[status.ordinal()]++;
+				}
+			} finally {
+				reader.close();
+				source.close();
+			}
+			written = subscriber.getCompletion().get().longValue();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while streaming " + inputFile, ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof ZipCodeRangeException) {
+				throw (ZipCodeRangeException) ex.getCause();
+			}
+			throw new IOException(ex.getCause().getMessage(), ex.getCause());
+		} finally {
+			writer.close();
+		}
+		if (binaryOutputFileName != null) {
+			ZipCodeRangeSetFile.write(writer.getRanges(), binaryOutputFileName);
+		}
+		metrics.recordRangesIn(reducer.getInputCount());
+		metrics.recordRangesOut(written);
+		reportRejectedRows(inputFile, rejected[RangeStatus.OUT_OF_BOUNDS.ordinal()], rejected[RangeStatus.INVERTED.ordinal()],
+						   rejected[RangeStatus.UNPARSEABLE.ordinal()]);
+		System.out.println("Streamed " + reducer.getInputCount() + " ranges into " + written + " ranges.");
+	}
+
+	/**
+	 * Parse one "lower,upper" line and submit it to the stream if it's a valid range.
+	 * @return VALID if the range was submitted, otherwise why it was skipped
 	 */
-	public void loadZipCodesFromRange (String range) {
-		String [] zipCodes = range.split(",");
-		if (zipCodes.length == 2) {
+	private RangeStatus parseRange(String line, int [] bounds, SubmissionPublisher<ZipCodeRange> source) {
+		RangeStatus status = parseBounds(line, bounds);
+		if (status == RangeStatus.VALID) {
 			try {
-				ZipCodeRange zipCodeRange = new ZipCodeRange(Integer.parseInt(zipCodes[0]), Integer.parseInt(zipCodes[1]));
-				helper.setFlagForZipCodesInRange(zipCodeRange);
-			} catch (NumberFormatException  ex) {
-				ex.printStackTrace();
+				source.submit(new ZipCodeRange(bounds[0], bounds[1], use9DigitZip));
 			} catch (ZipCodeRangeException ex) {
-				System.out.println("Problem parsing the String range: " + range + "\n" + ex.getLocalizedMessage());
+				status = RangeStatus.OUT_OF_BOUNDS;
 			}
 		}
+		metrics.recordRejected(status);
+		return status;
 	}
 
 	/**
@@ -186,6 +578,26 @@ public class Driver {
 			System.exit(-1);
 		}
 
+		if (MODE_MERGE.equalsIgnoreCase(driverMode)) {
+			runMerge();
+			reportMetrics();
+			return;
+		}
+		if (MODE_DELTA.equalsIgnoreCase(driverMode)) {
+			runDelta();
+			reportMetrics();
+			return;
+		}
+		if (MODE_SERVER.equalsIgnoreCase(driverMode)) {
+			runServer();
+			return;
+		}
+		if (MODE_STREAM.equalsIgnoreCase(driverMode)) {
+			runStream();
+			reportMetrics();
+			return;
+		}
+
 		try {
 			loadInputRanges(inputFileName);
 		} catch (FileNotFoundException ex) {
@@ -207,8 +619,187 @@ public class Driver {
 			System.out.println("Exiting...");
 			System.exit(-1);
 		}
+		reportMetrics();
 
 	}
-}
 
+	/**
+	 * Print the phase latencies and range counts when metrics.enabled is set.
+	 */
+	private void reportMetrics() {
+		if (metrics.isEnabled()) {
+			System.out.println(metrics);
+		}
+	}
+
+	/**
+	 * Run the merge mode, exit if the sources can't be merged.
+	 */
+	private void runMerge() {
 
+		try {
+			mergeSortedInputRanges(sourceFileNames, outputFileName);
+
+		} catch (ZipCodeRangeException ex) {
+			System.out.println("Problem merging the sorted sources " + ex.getMessage());
+			System.out.println("Exiting...");
+			System.exit(-1);
+
+		} catch (IOException ex) {
+			System.out.println("Couldn't merge the sorted sources: " + ex.getMessage());
+			System.out.println("Exiting...");
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Load the server.items restrictions and serve lookups on server.port until the process is stopped.
+	 * <br>The server threads keep the process alive after this returns.
+	 *
+	 * @return the running server
+	 * @throws IOException if the restrictions can't be loaded or the port can't be bound
+	 */
+	public RestrictionServer startServer() throws IOException {
+
+		ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor();
+		RestrictionService service = new RestrictionService(reloader);
+		RangeFileRestrictionSource source = new RangeFileRestrictionSource(serverItems, use9DigitZip);
+		try {
+			service.reload(source).join();
+		} catch (CompletionException ex) {
+			reloader.shutdown();
+			throw new IOException("Couldn't load server.items: " + ex.getCause().getMessage(), ex.getCause());
+		}
+		if (serverReloadMinutes > 0) {
+			// the restrictions were just loaded, the first scheduled reload waits a full period
+			service.scheduleReloads(reloader, source, serverReloadMinutes, serverReloadMinutes, TimeUnit.MINUTES);
+		}
+		else {
+			reloader.shutdown();
+		}
+
+		RestrictionServer server = new RestrictionServer(service, new InetSocketAddress(serverPort));
+		server.start();
+		System.out.println("Serving " + service.getSnapshot().getItemCount() + " items on port " + server.getPort()
+						   + ". Reduced file combinations: " + source.getReductionCache());
+		return server;
+	}
+
+	/**
+	 * Run the server mode, exit if the server can't start.
+	 */
+	private void runServer() {
+
+		try {
+			startServer();
+
+		} catch (IOException ex) {
+			System.out.println("Couldn't start the server: " + ex.getMessage());
+			System.out.println("Exiting...");
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Run the stream mode, exit if the ranges can't be streamed.
+	 */
+	private void runStream() {
+
+		try {
+			streamInputRanges(inputFileName, outputFileName);
+
+		} catch (ZipCodeRangeException ex) {
+			System.out.println("Problem streaming the ranges " + ex.getMessage());
+			System.out.println("Exiting...");
+			System.exit(-1);
+
+		} catch (IOException ex) {
+			System.out.println("Couldn't stream the ranges: " + ex.getMessage());
+			System.out.println("Exiting...");
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Run the delta mode, exit if the changes can't be applied.
+	 */
+	private void runDelta() {
+
+		try {
+			applyDeltaRanges(baseFileName, deltaFileName, outputFileName);
+
+		} catch (ZipCodeRangeException ex) {
+			System.out.println("Problem applying the changes to the reduced ranges " + ex.getMessage());
+			System.out.println("Exiting...");
+			System.exit(-1);
+
+		} catch (IOException ex) {
+			System.out.println("Couldn't apply the changes: " + ex.getMessage());
+			System.out.println("Exiting...");
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Sends each streamed range to the writer of every output sink, and keeps the bounds for file.output.binary
+	 * when it's set.
+	 */
+	private final class StreamOutput implements RangeSink {
+
+		private final List<ZipCodeRangeWriter> writers = new ArrayList<ZipCodeRangeWriter>();
+		private int [] bounds;
+		private int length;
+
+		private StreamOutput(List<OutputSink> sinks, String outputFile, boolean keepRanges) throws IOException {
+			try {
+				for (OutputSink sink : sinks) {
+					writers.add(new ZipCodeRangeWriter(sink, outputFile, use9DigitZip));
+				}
+			} catch (IOException ex) {
+				close();
+				throw ex;
+			}
+			bounds = keepRanges ? new int [64] : null;
+		}
+
+		@Override
+		public void acceptRange(int lower, int upper) throws IOException {
+			for (ZipCodeRangeWriter writer : writers) {
+				writer.acceptRange(lower, upper);
+			}
+			if (bounds != null) {
+				if (length == bounds.length) {
+					bounds = Arrays.copyOf(bounds, length << 1);
+				}
+				bounds[length++] = lower;
+				bounds[length++] = upper;
+			}
+		}
+
+		/**
+		 * @return the ranges streamed so far, empty unless they were kept
+		 */
+		private ZipCodeRangeSet getRanges() {
+			return (bounds == null) ? ZipCodeRangeSet.EMPTY : ZipCodeRangeSet.fromPackedBounds(bounds, length);
+		}
+
+		/**
+		 * Close every writer, then throw the first failure.
+		 */
+		private void close() throws IOException {
+			IOException failure = null;
+			for (ZipCodeRangeWriter writer : writers) {
+				try {
+					writer.close();
+				} catch (IOException ex) {
+					if (failure == null) {
+						failure = ex;
+					}
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+}
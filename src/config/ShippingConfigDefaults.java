@@ -20,6 +20,10 @@ public final class ShippingConfigDefaults {
 	public static final boolean USE_9_DIGIT_ZIP = false;
 	public static final int MINIMUM_BOUND_VALUE = 1;
 	public static final int MAXIMUM_BOUND_VALUE = 99999;
+	public static final int MAXIMUM_9_DIGIT_BOUND_VALUE = 999999999;
+	public static final String RANGE_REDUCER_ENGINE = "BITMAP";
+	public static final boolean METRICS_ENABLED = false;
+	public static final int REDUCTION_CACHE_SIZE = 1024;
 
 
 }
@@ -18,7 +18,7 @@ public final class ShippingMessageConstants {
 		
 	}
 
-	public static final String ZC_VALUE_INVALID_MSG = "Invalid Zip Code value. Expected: value[1-99999]. Actual: value of {0}  = {1}.\n";                                          
+	public static final String ZC_VALUE_INVALID_MSG = "Invalid Zip Code value. Expected: value[1-{2}]. Actual: value of {0}  = {1}.\n";                                          
 	public static final String ZC_RANGE_BOUND_INVALID_MSG = "Invalid Zip Code Range bounds. lower = {0} and upper = {1}.\n";                                          
 	public static final String ZC_RANGE_SIZE_INVALID_MSG = "Invalid Zip Code Range size. Expected: size[1-99999]. Actual: size = {0}\n."; 
 	public static final String ZC_RANGE_OUTPUT_CONSOLE_FORMAT = "[{0},{1}]";
@@ -26,5 +26,7 @@ public final class ShippingMessageConstants {
 	public static final String ZC_RANGE_INIT_FAILURE = 
 			"Initialization of ZipCodeRange Object failed with bound values: [{0},{1}]. Creating object with defaults.\n";
 	public static final String ZC_RANGE_SELF_APPRAISAL = "ZipCodeRange Object with lowerBound = {0}, and upperBound = {1}";
+	public static final String ZC_SOURCE_NOT_SORTED_MSG = "Range source {0} isn''t sorted by lower bound. Line {1}: lower = {2} after lower = {3}.\n";
+	public static final String ZC_RANGE_FILE_INVALID_MSG = "Invalid range set file {0}: {1}.\n";
 	public static final String ZC_RANGE_PARSE_ERROR = "Unable to parse range from string and ZipCodeRange object couldn't be created: range = {0}";
 }
@@ -0,0 +1,149 @@
+package orders;
+
+import java.util.Arrays;
+
+/**
+ * {@link ChunkContainer} that keeps the flagged values in a sorted char[]. 2 bytes per zip code, which
+ * beats the other layouts for scattered single zip codes.
+ * <br>Switches to a {@link RunChunkContainer} when it would hold more than 4096 values, or when the runs would
+ * take less room, so a wide range is never written out one value at a time.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+final class ArrayChunkContainer extends ChunkContainer {
+
+	static final int MAX_SIZE = 4096;
+
+	private char [] values = new char [4];
+	private int size;
+	// kept up to date by every change, see runStarts
+	private int runCount;
+
+	@Override
+	ChunkContainer addRange(int lower, int upper) {
+		int first = indexOf(lower);
+		int last = indexOf(upper + 1);
+		int rangeSize = upper - lower + 1;
+		int newSize = size - (last - first) + rangeSize;
+
+		// the range adds at most one run
+		if (newSize > MAX_SIZE || arrayBytes(newSize) > runBytes(runCount + 1)) {
+			return RunChunkContainer.fromRuns(toRuns()).addRange(lower, upper);
+		}
+		// only the starts of the replaced values and of the value after them can change
+		int startsBefore = runStarts(first, Math.min(last + 1, size));
+
+		char [] target = values;
+		if (newSize > values.length) {
+			target = Arrays.copyOf(values, Math.min(Math.max(newSize, values.length << 1), MAX_SIZE));
+		}
+		System.arraycopy(values, last, target, first + rangeSize, size - last);
+		for (int value = lower; value <= upper; value++) {
+			target[first + value - lower] = (char) value;
+		}
+		values = target;
+		size = newSize;
+		runCount += runStarts(first, Math.min(first + rangeSize + 1, size)) - startsBefore;
+		return this;
+	}
+
+	@Override
+	ChunkContainer removeRange(int lower, int upper) {
+		int first = indexOf(lower);
+		int last = indexOf(upper + 1);
+		int startsBefore = runStarts(first, Math.min(last + 1, size));
+		System.arraycopy(values, last, values, first, size - last);
+		size -= last - first;
+		runCount += runStarts(first, Math.min(first + 1, size)) - startsBefore;
+		return (size == 0) ? null : this;
+	}
+
+	@Override
+	boolean contains(int value) {
+		return Arrays.binarySearch(values, 0, size, (char) value) >= 0;
+	}
+
+	@Override
+	int cardinality() {
+		return size;
+	}
+
+	@Override
+	int runCount() {
+		return runCount;
+	}
+
+	/**
+	 * @return the number of values in [from, to) that start a run, i.e. don't follow the value before them
+	 */
+	private int runStarts(int from, int to) {
+		int starts = 0;
+		for (int i = from; i < to; i++) {
+			if (i == 0 || values[i] != values[i - 1] + 1) {
+				starts++;
+			}
+		}
+		return starts;
+	}
+
+	/**
+	 * @param runs - packed sorted, disjoint and non adjacent runs [start0, end0, ...] of at most MAX_SIZE values in total
+	 * @return an array container with the values of the runs
+	 */
+	static ArrayChunkContainer fromRuns(int [] runs) {
+		ArrayChunkContainer container = new ArrayChunkContainer();
+		int size = 0;
+		for (int i = 0; i < runs.length; i += 2) {
+			size += runs[i + 1] - runs[i] + 1;
+		}
+		container.values = new char [Math.max(size, 4)];
+		container.runCount = runs.length >> 1;
+		for (int i = 0; i < runs.length; i += 2) {
+			for (int value = runs[i]; value <= runs[i + 1]; value++) {
+				container.values[container.size++] = (char) value;
+			}
+		}
+		return container;
+	}
+
+	@Override
+	int [] toRuns() {
+		int [] runs = new int [8];
+		int count = 0;
+		int i = 0;
+		while (i < size) {
+			int start = values[i];
+			int end = start;
+			while (++i < size && values[i] == end + 1) {
+				end++;
+			}
+			if (count + 2 > runs.length) {
+				runs = Arrays.copyOf(runs, runs.length << 1);
+			}
+			runs[count++] = start;
+			runs[count++] = end;
+		}
+		return Arrays.copyOf(runs, count);
+	}
+
+	/**
+	 * @param value - value to look for
+	 * @return index of the first flagged value >= value
+	 */
+	private int indexOf(int value) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (values[mid] < value) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+}
@@ -0,0 +1,77 @@
+package orders;
+
+import java.util.ArrayList;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * Thread safe {@link RangeReducer} backed by an {@link AtomicZipCodeBitmap} that covers the whole 5 digit
+ * zip code space.
+ * <p>
+ * Any number of threads can flag and clear ranges for the same item at once, each word is updated with a
+ * CAS so no update is lost and writers don't block each other. {@link #getReducedZipCodeRanges(boolean)} reduces a
+ * consistent snapshot of the bitmap, so it never sees half a range even while other threads keep flagging. A
+ * snapshot that keeps losing the race to the writers briefly holds new writers back until it has its copy, see
+ * {@link AtomicZipCodeBitmap#snapshot()}.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class AtomicBitmapRangeReducer implements RangeReducer {
+
+	private final AtomicZipCodeBitmap zipCodesInRanges;
+
+	/**
+	 * Create a bitmap[99999 + 1] which serves as a 1-1 map to the set of all 5 digit zip codes and a discarded index[0].
+	 */
+	public AtomicBitmapRangeReducer() {
+		zipCodesInRanges = new AtomicZipCodeBitmap(ShippingConfigDefaults.MAX_NUMBER_OF_ZIP_CODES);
+	}
+
+	@Override
+	public void reset(boolean startState) {
+		zipCodesInRanges.fill(startState);
+	}
+
+	@Override
+	public void addRange(int lower, int upper) {
+		zipCodesInRanges.setRange(lower, upper);
+	}
+
+	@Override
+	public void removeRange(int lower, int upper) {
+		zipCodesInRanges.clearRange(lower, upper);
+	}
+
+	@Override
+	public boolean isFlagged(int zipCode) {
+		return zipCode >= 0 && zipCode <= zipCodesInRanges.getMaxValue() && zipCodesInRanges.get(zipCode);
+	}
+
+	/**
+	 * Take a snapshot of the bitmap and reduce it like the {@link BitmapRangeReducer} does.
+	 */
+	@Override
+	public ArrayList<ZipCodeRange> getReducedZipCodeRanges(boolean useFlagValue) throws ZipCodeRangeException {
+		return new BitmapRangeReducer(zipCodesInRanges.snapshot()).getReducedZipCodeRanges(useFlagValue);
+	}
+
+	@Override
+	public RangeReducer newEmptyReducer() {
+		return new AtomicBitmapRangeReducer();
+	}
+
+	/**
+	 * Bitmaps are combined with a CAS OR per word of a snapshot of other.
+	 */
+	@Override
+	public void addAll(RangeReducer other) throws ZipCodeRangeException {
+		if (other instanceof AtomicBitmapRangeReducer) {
+			zipCodesInRanges.or(((AtomicBitmapRangeReducer) other).zipCodesInRanges.snapshot());
+		}
+		else {
+			RangeReducer.super.addAll(other);
+		}
+	}
+
+}
@@ -0,0 +1,321 @@
+package orders;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread safe {@link ZipCodeBitmap}. The words live in an {@link AtomicLongArray} and every range is
+ * flagged (or cleared) with a compare and set OR (or AND NOT) per word, so any number of threads can flag
+ * ranges at the same time without a lock and without losing updates.
+ * <p>
+ * {@link #snapshot()} copies the words without blocking the writers, seqlock style: a writer bumps a
+ * started count before it changes words and a finished count after, and the copy is retried until no writer
+ * was active while it was taken. Every range is then either fully in the copy or not at all.
+ * <br>The counts are striped by thread, one cache line per stripe, so writers on different cores don't
+ * contend on them. After a few failed tries the snapshot closes a gate that holds back new writers, waits
+ * for the active ones to finish and copies the words, so it completes even under a constant stream of writes.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class AtomicZipCodeBitmap {
+
+	/**
+	 * 2^6 = 64 bits in a word.
+	 */
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+	private static final long WORD_MASK = 0xFFFFFFFFFFFFFFFFL;
+
+	/**
+	 * Longs between two stripes, 128 bytes keeps them off each other's cache line and its prefetched neighbour.
+	 */
+	private static final int STRIPE_STRIDE = 16;
+	private static final int MAX_STRIPES = 64;
+	private static final int OPTIMISTIC_SNAPSHOT_TRIES = 4;
+
+	private final AtomicLongArray words;
+	private final int maxValue;
+
+	// started count at stripe * STRIPE_STRIDE, finished count right after it
+	private final AtomicLongArray writeCounts;
+	private final int stripeMask;
+
+	private final ReentrantLock snapshotLock = new ReentrantLock();
+	private final Object gate = new Object();
+	private volatile boolean gateClosed;
+
+	/**
+	 * Create an empty bitmap for the values [0, maxValue].
+	 * <p>
+	 * @param maxValue - the largest value that can be flagged
+	 */
+	public AtomicZipCodeBitmap(int maxValue) {
+		this.maxValue = maxValue;
+		this.words = new AtomicLongArray(wordIndex(maxValue) + 1);
+		int stripes = Integer.highestOneBit(Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+		this.stripeMask = stripes - 1;
+		this.writeCounts = new AtomicLongArray(stripes * STRIPE_STRIDE);
+	}
+
+	/**
+	 * @return the largest value that can be flagged
+	 */
+	public int getMaxValue() {
+		return maxValue;
+	}
+
+	/**
+	 * @return the number of completed changes, e.g. to skip a snapshot when nothing changed
+	 */
+	public long getVersion() {
+		long version = 0;
+		for (int i = 0; i < writeCounts.length(); i += STRIPE_STRIDE) {
+			version += writeCounts.get(i + 1);
+		}
+		return version;
+	}
+
+	/**
+	 * Set every value [0, maxValue] to state.
+	 * <p>
+	 * @param state - true sets all the bits, false clears them
+	 */
+	public void fill(boolean state) {
+		int stripe = beginWrite();
+		try {
+			long fill = state ? WORD_MASK : 0L;
+			int last = words.length() - 1;
+			for (int i = 0; i < last; i++) {
+				words.set(i, fill);
+			}
+			words.set(last, fill & (WORD_MASK >>> -(maxValue + 1)));
+		} finally {
+			endWrite(stripe);
+		}
+	}
+
+	/**
+	 * Flag all the values in [lower, upper]. Bounds are expected to be in [0, maxValue].
+	 * <p>
+	 * @param lower - first value of the range
+	 * @param upper - last value of the range (inclusive)
+	 */
+	public void setRange(int lower, int upper) {
+		int startWordIndex = wordIndex(lower);
+		int endWordIndex = wordIndex(upper);
+		long firstWordMask = WORD_MASK << lower;
+		long lastWordMask = WORD_MASK >>> -(upper + 1);
+
+		int stripe = beginWrite();
+		try {
+			if (startWordIndex == endWordIndex) {
+				or(startWordIndex, firstWordMask & lastWordMask);
+			}
+			else {
+				or(startWordIndex, firstWordMask);
+				for (int i = startWordIndex + 1; i < endWordIndex; i++) {
+					words.set(i, WORD_MASK);
+				}
+				or(endWordIndex, lastWordMask);
+			}
+		} finally {
+			endWrite(stripe);
+		}
+	}
+
+	/**
+	 * Clear all the values in [lower, upper]. Bounds are expected to be in [0, maxValue].
+	 * <p>
+	 * @param lower - first value of the range
+	 * @param upper - last value of the range (inclusive)
+	 */
+	public void clearRange(int lower, int upper) {
+		int startWordIndex = wordIndex(lower);
+		int endWordIndex = wordIndex(upper);
+		long firstWordMask = WORD_MASK << lower;
+		long lastWordMask = WORD_MASK >>> -(upper + 1);
+
+		int stripe = beginWrite();
+		try {
+			if (startWordIndex == endWordIndex) {
+				andNot(startWordIndex, firstWordMask & lastWordMask);
+			}
+			else {
+				andNot(startWordIndex, firstWordMask);
+				for (int i = startWordIndex + 1; i < endWordIndex; i++) {
+					words.set(i, 0L);
+				}
+				andNot(endWordIndex, lastWordMask);
+			}
+		} finally {
+			endWrite(stripe);
+		}
+	}
+
+	/**
+	 * Flag every value flagged in other, one CAS per word.
+	 * <p>
+	 * @param other - a bitmap with the same maxValue
+	 */
+	public void or(ZipCodeBitmap other) {
+		long [] otherWords = other.getWords();
+		int stripe = beginWrite();
+		try {
+			for (int i = 0; i < otherWords.length; i++) {
+				if (otherWords[i] != 0) {
+					or(i, otherWords[i]);
+				}
+			}
+		} finally {
+			endWrite(stripe);
+		}
+	}
+
+	/**
+	 * @param value - a value in [0, maxValue]
+	 * @return true if the value is flagged
+	 */
+	public boolean get(int value) {
+		return (words.get(wordIndex(value)) & (1L << value)) != 0;
+	}
+
+	/**
+	 * Copy the words while no range is half flagged.
+	 * <br>Tries a few times without blocking the writers, then holds back new writers until the copy is taken.
+	 * <p>
+	 * @return a consistent copy of the bitmap
+	 */
+	public ZipCodeBitmap snapshot() {
+		long [] copy = new long [words.length()];
+		long [] started = new long [stripeMask + 1];
+		for (int tries = 0; tries < OPTIMISTIC_SNAPSHOT_TRIES; tries++) {
+			if (readStartedCountsIfIdle(started)) {
+				copyWords(copy);
+				if (startedCountsEqual(started)) {
+					return new ZipCodeBitmap(maxValue, copy);
+				}
+			}
+			Thread.yield();
+		}
+
+		snapshotLock.lock();
+		try {
+			gateClosed = true;
+			// writers that start from now on back out and wait at the gate
+			while (!readStartedCountsIfIdle(started)) {
+				Thread.yield();
+			}
+			copyWords(copy);
+			return new ZipCodeBitmap(maxValue, copy);
+		} finally {
+			synchronized (gate) {
+				gateClosed = false;
+				gate.notifyAll();
+			}
+			snapshotLock.unlock();
+		}
+	}
+
+	/**
+	 * The finished count of a stripe is read before its started count, so equal counts mean no writer of the
+	 * stripe was active when the started count was read.
+	 * <p>
+	 * @param started - receives the started count of every stripe
+	 * @return true if no stripe had an active writer
+	 */
+	private boolean readStartedCountsIfIdle(long [] started) {
+		for (int s = 0; s < started.length; s++) {
+			long finished = writeCounts.get(s * STRIPE_STRIDE + 1);
+			started[s] = writeCounts.get(s * STRIPE_STRIDE);
+			if (started[s] != finished) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if no writer started since the counts were read
+	 */
+	private boolean startedCountsEqual(long [] started) {
+		for (int s = 0; s < started.length; s++) {
+			if (writeCounts.get(s * STRIPE_STRIDE) != started[s]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void copyWords(long [] copy) {
+		for (int i = 0; i < copy.length; i++) {
+			copy[i] = words.get(i);
+		}
+	}
+
+	/**
+	 * Count the writer as started in its stripe, or wait while a snapshot has the gate closed.
+	 * @return the stripe of the writer as an index into the counts, for {@link #endWrite(int)}
+	 */
+	private int beginWrite() {
+		int index = stripe() * STRIPE_STRIDE;
+		while (true) {
+			writeCounts.incrementAndGet(index);
+			if (!gateClosed) {
+				return index;
+			}
+			// back out so the snapshot sees the stripe idle, then wait for the gate to open
+			writeCounts.incrementAndGet(index + 1);
+			awaitOpenGate();
+		}
+	}
+
+	private void endWrite(int index) {
+		writeCounts.incrementAndGet(index + 1);
+	}
+
+	private void awaitOpenGate() {
+		boolean interrupted = false;
+		synchronized (gate) {
+			while (gateClosed) {
+				try {
+					gate.wait();
+				} catch (InterruptedException ex) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the stripe of the current thread
+	 */
+	private int stripe() {
+		int hash = System.identityHashCode(Thread.currentThread()) * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & stripeMask;
+	}
+
+	private void or(int index, long mask) {
+		long word = words.get(index);
+		while ((word & mask) != mask && !words.compareAndSet(index, word, word | mask)) {
+			word = words.get(index);
+		}
+	}
+
+	private void andNot(int index, long mask) {
+		long word = words.get(index);
+		while ((word & mask) != 0 && !words.compareAndSet(index, word, word & ~mask)) {
+			word = words.get(index);
+		}
+	}
+
+	/**
+	 * @param value - a value in [0, maxValue]
+	 * @return index of the word that holds the bit for value
+	 */
+	private static int wordIndex(int value) {
+		return value >>> ADDRESS_BITS_PER_WORD;
+	}
+}
@@ -0,0 +1,121 @@
+package orders;
+
+import java.util.Arrays;
+
+/**
+ * {@link ChunkContainer} that keeps the flagged values in a fixed 1024 word {@link ZipCodeBitmap} (8 KB).
+ * Used for chunks too fragmented for the array and run layouts.
+ * <br>The cardinality and run count are updated from the words a change touches, not by scanning the bitmap.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+final class BitmapChunkContainer extends ChunkContainer {
+
+	private static final int LAST_WORD = MAX_VALUE >>> 6;
+
+	private final ZipCodeBitmap bitmap = new ZipCodeBitmap(MAX_VALUE);
+	private int cardinality;
+	private int runCount;
+
+	@Override
+	ChunkContainer addRange(int lower, int upper) {
+		int firstWord = lower >>> 6;
+		int lastWord = upper >>> 6;
+		int bitsBefore = bitCount(firstWord, lastWord);
+		int startsBefore = runStarts(firstWord, lastWord);
+		bitmap.setRange(lower, upper);
+		cardinality += bitCount(firstWord, lastWord) - bitsBefore;
+		runCount += runStarts(firstWord, lastWord) - startsBefore;
+		return this;
+	}
+
+	@Override
+	ChunkContainer removeRange(int lower, int upper) {
+		int firstWord = lower >>> 6;
+		int lastWord = upper >>> 6;
+		int bitsBefore = bitCount(firstWord, lastWord);
+		int startsBefore = runStarts(firstWord, lastWord);
+		bitmap.clearRange(lower, upper);
+		cardinality += bitCount(firstWord, lastWord) - bitsBefore;
+		runCount += runStarts(firstWord, lastWord) - startsBefore;
+		return (cardinality == 0) ? null : this;
+	}
+
+	@Override
+	boolean contains(int value) {
+		return bitmap.get(value);
+	}
+
+	@Override
+	int cardinality() {
+		return cardinality;
+	}
+
+	@Override
+	int runCount() {
+		return runCount;
+	}
+
+	/**
+	 * @return the number of set bits in the words [firstWord, lastWord]
+	 */
+	private int bitCount(int firstWord, int lastWord) {
+		long [] words = bitmap.getWords();
+		int count = 0;
+		for (int i = firstWord; i <= lastWord; i++) {
+			count += Long.bitCount(words[i]);
+		}
+		return count;
+	}
+
+	/**
+	 * A run starts at every set bit whose lower neighbour is clear. Changing the words [firstWord, lastWord] can
+	 * also change whether the first bit of the next word starts a run, so that word is counted too.
+	 * <p>
+	 * @return the number of run starts in the words [firstWord, lastWord + 1]
+	 */
+	private int runStarts(int firstWord, int lastWord) {
+		long [] words = bitmap.getWords();
+		int count = 0;
+		long previousWord = (firstWord == 0) ? 0L : words[firstWord - 1];
+		for (int i = firstWord; i <= Math.min(lastWord + 1, LAST_WORD); i++) {
+			long word = words[i];
+			count += Long.bitCount(word & ~((word << 1) | (previousWord >>> 63)));
+			previousWord = word;
+		}
+		return count;
+	}
+
+	/**
+	 * @param runs - packed sorted, disjoint and non adjacent runs [start0, end0, ...]
+	 * @return a bitmap container with the values of the runs
+	 */
+	static BitmapChunkContainer fromRuns(int [] runs) {
+		BitmapChunkContainer container = new BitmapChunkContainer();
+		for (int i = 0; i < runs.length; i += 2) {
+			container.bitmap.setRange(runs[i], runs[i + 1]);
+			container.cardinality += runs[i + 1] - runs[i] + 1;
+		}
+		container.runCount = runs.length >> 1;
+		return container;
+	}
+
+	@Override
+	int [] toRuns() {
+		int [] runs = new int [64];
+		int count = 0;
+		int start = bitmap.nextSetBit(0);
+		while (start != -1) {
+			int end = bitmap.nextClearBit(start) - 1;
+			if (count + 2 > runs.length) {
+				runs = Arrays.copyOf(runs, runs.length << 1);
+			}
+			runs[count++] = start;
+			runs[count++] = end;
+			start = bitmap.nextSetBit(end + 1);
+		}
+		return Arrays.copyOf(runs, count);
+	}
+
+}
@@ -0,0 +1,116 @@
+package orders;
+
+import java.util.ArrayList;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * {@link RangeReducer} backed by a {@link ZipCodeBitmap} that covers the whole zip code space.
+ * <p>
+ * Flagging and reducing cost ~1563 word operations whatever the number of input ranges, which makes it
+ * the engine of choice for items with many or wide ranges.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class BitmapRangeReducer implements RangeReducer {
+
+	/**
+	 * The set of all possible zip code values for a 5 digit number.
+	 * <br>The bit at position [zip_code_value] reflects the restricted status of a zip code for an item.
+	 */
+	private final ZipCodeBitmap zipCodesInRanges;
+
+	/**
+	 * Create a bitmap[99999 + 1] which serves as a 1-1 map to the set of all 5 digit zip codes and a discarded index[0].
+	 */
+	public BitmapRangeReducer() {
+		zipCodesInRanges = new ZipCodeBitmap(ShippingConfigDefaults.MAX_NUMBER_OF_ZIP_CODES);
+	}
+
+	/**
+	 * Reduce the ranges of an existing bitmap, e.g. a snapshot of an {@link AtomicBitmapRangeReducer}.
+	 * @param zipCodesInRanges - bitmap over the 5 digit zip codes, not copied
+	 */
+	BitmapRangeReducer(ZipCodeBitmap zipCodesInRanges) {
+		this.zipCodesInRanges = zipCodesInRanges;
+	}
+
+	@Override
+	public void reset(boolean startState) {
+		zipCodesInRanges.fill(startState);
+	}
+
+	@Override
+	public void addRange(int lower, int upper) {
+		zipCodesInRanges.setRange(lower, upper);
+	}
+
+	@Override
+	public void removeRange(int lower, int upper) {
+		zipCodesInRanges.clearRange(lower, upper);
+	}
+
+	@Override
+	public boolean isFlagged(int zipCode) {
+		return zipCode >= 0 && zipCode <= zipCodesInRanges.getMaxValue() && zipCodesInRanges.get(zipCode);
+	}
+
+	/**
+	 * Execute a word by word traversal starting at position [1].
+	 * <br>Detect lower and upper bounds by finding the next bit with (and then without) the flag value
+	 * <br>Construct a {@link ZipCodeRange} object from detected bounds
+	 * <br>Add range to the return set
+	 */
+	@Override
+	public ArrayList<ZipCodeRange> getReducedZipCodeRanges(boolean useFlagValue) throws ZipCodeRangeException {
+
+		int lastIndex = zipCodesInRanges.getMaxValue();
+		int lowerBoundIndex = nextIndexWithValue(ShippingConfigDefaults.MINIMUM_BOUND_VALUE, useFlagValue);
+		int upperBoundIndex;
+
+		ArrayList <ZipCodeRange> reduced = new ArrayList<ZipCodeRange>();
+
+		while (lowerBoundIndex != -1 && lowerBoundIndex <= lastIndex) {
+			upperBoundIndex = nextIndexWithValue(lowerBoundIndex, !useFlagValue);
+			if (upperBoundIndex == -1) {
+				upperBoundIndex = lastIndex + 1;
+			}
+			reduced.add(new ZipCodeRange(lowerBoundIndex, upperBoundIndex - 1));
+			lowerBoundIndex = nextIndexWithValue(upperBoundIndex, useFlagValue);
+		}
+		return reduced;
+	}
+
+	@Override
+	public RangeReducer newEmptyReducer() {
+		return new BitmapRangeReducer();
+	}
+
+	/**
+	 * Bitmaps are combined with a word by word OR.
+	 */
+	@Override
+	public void addAll(RangeReducer other) throws ZipCodeRangeException {
+		if (other instanceof BitmapRangeReducer) {
+			zipCodesInRanges.or(((BitmapRangeReducer) other).zipCodesInRanges);
+		}
+		else {
+			RangeReducer.super.addAll(other);
+		}
+	}
+
+	/**
+	 * @param fromIndex - first zip code to check
+	 * @param value - flag state to look for
+	 * @return the first zip code >= fromIndex with the flag state == value, or -1 if there isn't one
+	 */
+	private int nextIndexWithValue(int fromIndex, boolean value) {
+		if (value) {
+			return zipCodesInRanges.nextSetBit(fromIndex);
+		}
+		int index = zipCodesInRanges.nextClearBit(fromIndex);
+		return (index > zipCodesInRanges.getMaxValue()) ? -1 : index;
+	}
+
+}
@@ -0,0 +1,113 @@
+package orders;
+
+/**
+ * One 2^16 value chunk of a {@link ZipCodeChunkedBitmap}. Values are the low 16 bits of a zip code [0, 65535].
+ * <p>
+ * Each chunk uses the smallest of three layouts, picked from its cardinality and run count by
+ * {@link #compact(ChunkContainer)} after every change, so it moves to a smaller layout as well as a larger one:
+ * <br>{@link ArrayChunkContainer} - sorted values, 2 bytes per zip code, up to 4096 zip codes
+ * <br>{@link RunChunkContainer} - sorted [start, end] runs, 4 bytes per run, up to 2048 runs
+ * <br>{@link BitmapChunkContainer} - 1024 word bitmap, always 8 KB
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+abstract class ChunkContainer {
+
+	static final int MAX_VALUE = 0xFFFF;
+
+	static final int BITMAP_BYTES = 8192;
+
+	/**
+	 * Flag all the values in [lower, upper].
+	 * <p>
+	 * @param lower - first value of the range [0, 65535]
+	 * @param upper - last value of the range [lower, 65535]
+	 * @return the container holding the result, this one or a new one with a better layout
+	 */
+	abstract ChunkContainer addRange(int lower, int upper);
+
+	/**
+	 * Clear all the values in [lower, upper].
+	 * <p>
+	 * @param lower - first value of the range [0, 65535]
+	 * @param upper - last value of the range [lower, 65535]
+	 * @return the container holding the result, or null if no value is left flagged
+	 */
+	abstract ChunkContainer removeRange(int lower, int upper);
+
+	/**
+	 * @param value - a value in [0, 65535]
+	 * @return true if the value is flagged
+	 */
+	abstract boolean contains(int value);
+
+	/**
+	 * @return the flagged values as packed sorted, disjoint and non adjacent runs [start0, end0, start1, end1, ...]
+	 */
+	abstract int [] toRuns();
+
+	/**
+	 * @return the number of flagged values, kept up to date by every change so it costs O(1)
+	 */
+	abstract int cardinality();
+
+	/**
+	 * @return the number of sorted, disjoint and non adjacent runs of flagged values, kept up to date by every
+	 * change so it costs O(1)
+	 */
+	abstract int runCount();
+
+	/**
+	 * @param cardinality - number of flagged values
+	 * @return bytes an {@link ArrayChunkContainer} needs, Integer.MAX_VALUE if it can't hold that many
+	 */
+	static int arrayBytes(int cardinality) {
+		return (cardinality <= ArrayChunkContainer.MAX_SIZE) ? cardinality << 1 : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @param runCount - number of runs
+	 * @return bytes a {@link RunChunkContainer} needs, Integer.MAX_VALUE if it can't hold that many
+	 */
+	static int runBytes(int runCount) {
+		return (runCount <= RunChunkContainer.MAX_RUNS) ? runCount << 2 : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Move the values to the smallest layout for their cardinality and run count.
+	 * <p>
+	 * @param container - a container, or null
+	 * @return the container itself if its layout is already the smallest, a converted copy otherwise, or null if
+	 * no value is flagged
+	 */
+	static ChunkContainer compact(ChunkContainer container) {
+		if (container == null) {
+			return null;
+		}
+		int cardinality = container.cardinality();
+		if (cardinality == 0) {
+			return null;
+		}
+		int arrayBytes = arrayBytes(cardinality);
+		int runBytes = runBytes(container.runCount());
+
+		if (arrayBytes <= runBytes && arrayBytes <= BITMAP_BYTES) {
+			return (container instanceof ArrayChunkContainer) ? container : ArrayChunkContainer.fromRuns(container.toRuns());
+		}
+		if (runBytes <= BITMAP_BYTES) {
+			return (container instanceof RunChunkContainer) ? container : RunChunkContainer.fromRuns(container.toRuns());
+		}
+		return (container instanceof BitmapChunkContainer) ? container : BitmapChunkContainer.fromRuns(container.toRuns());
+	}
+
+	/**
+	 * @param lower - first value of a range [0, 65535]
+	 * @param upper - last value of the range [lower, 65535]
+	 * @return an empty container in the layout that stores the range in the fewest bytes
+	 */
+	static ChunkContainer forRange(int lower, int upper) {
+		return (arrayBytes(upper - lower + 1) <= runBytes(1)) ? new ArrayChunkContainer() : new RunChunkContainer();
+	}
+
+}
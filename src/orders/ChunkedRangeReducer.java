@@ -0,0 +1,95 @@
+package orders;
+
+import java.util.ArrayList;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * {@link RangeReducer} backed by a compressed {@link ZipCodeChunkedBitmap}.
+ * <p>
+ * Memory grows with the number of chunks an item touches rather than with the size of the zip code space,
+ * so it handles 9 digit (ZIP+4) restrictions without materializing the 10^9 possible codes.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class ChunkedRangeReducer implements RangeReducer {
+
+	private final ZipCodeChunkedBitmap zipCodesInRanges = new ZipCodeChunkedBitmap();
+	private final boolean use9DigitZip;
+	private final int maxBoundValue;
+
+	/**
+	 * Create an engine for the configured {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP} mode.
+	 */
+	public ChunkedRangeReducer() {
+		this(ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+
+	/**
+	 * @param use9DigitZip - true to track ZIP+4 codes [1, 999999999], false for 5 digit zip codes [1, 99999]
+	 */
+	public ChunkedRangeReducer(boolean use9DigitZip) {
+		this.use9DigitZip = use9DigitZip;
+		this.maxBoundValue = ZipCodeRange.getMaximumBoundValue(use9DigitZip);
+	}
+
+	@Override
+	public void reset(boolean startState) {
+		zipCodesInRanges.clear();
+		if (startState) {
+			zipCodesInRanges.setRange(ShippingConfigDefaults.MINIMUM_BOUND_VALUE, maxBoundValue);
+		}
+	}
+
+	@Override
+	public void addRange(int lower, int upper) {
+		zipCodesInRanges.setRange(lower, upper);
+	}
+
+	@Override
+	public void removeRange(int lower, int upper) {
+		zipCodesInRanges.clearRange(lower, upper);
+	}
+
+	@Override
+	public boolean isFlagged(int zipCode) {
+		return zipCode >= 0 && zipCodesInRanges.get(zipCode);
+	}
+
+	/**
+	 * Traverse the chunks in zip code order, joining runs across chunk boundaries. The unflagged ranges are
+	 * the gaps between the flagged ones in [MINIMUM_BOUND_VALUE, maximum bound].
+	 */
+	@Override
+	public ArrayList<ZipCodeRange> getReducedZipCodeRanges(boolean useFlagValue) throws ZipCodeRangeException {
+
+		int [] ranges = zipCodesInRanges.toRanges();
+		ArrayList <ZipCodeRange> reduced = new ArrayList<ZipCodeRange>((ranges.length >> 1) + 1);
+
+		if (useFlagValue) {
+			for (int i = 0; i < ranges.length; i += 2) {
+				reduced.add(new ZipCodeRange(ranges[i], ranges[i + 1], use9DigitZip));
+			}
+		}
+		else {
+			int nextLower = ShippingConfigDefaults.MINIMUM_BOUND_VALUE;
+			for (int i = 0; i < ranges.length; i += 2) {
+				if (ranges[i] > nextLower) {
+					reduced.add(new ZipCodeRange(nextLower, ranges[i] - 1, use9DigitZip));
+				}
+				nextLower = Math.max(nextLower, ranges[i + 1] + 1);
+			}
+			if (nextLower <= maxBoundValue) {
+				reduced.add(new ZipCodeRange(nextLower, maxBoundValue, use9DigitZip));
+			}
+		}
+		return reduced;
+	}
+
+	@Override
+	public RangeReducer newEmptyReducer() {
+		return new ChunkedRangeReducer(use9DigitZip);
+	}
+
+}
@@ -0,0 +1,47 @@
+package orders;
+
+/**
+ * Restricted ranges cut down to a budget by {@link ShippingHelper#getReducedZipCodeRanges(int)}, with what closing
+ * the gaps cost: how many gaps were closed and how many unrestricted zip codes became restricted.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public final class CoarsenedZipCodeRanges {
+
+	private final ZipCodeRangeSet ranges;
+	private final int closedGapCount;
+	private final long extraZipCodeCount;
+
+	CoarsenedZipCodeRanges(ZipCodeRangeSet exact, ZipCodeRangeSet coarse) {
+		this.ranges = coarse;
+		this.closedGapCount = exact.size() - coarse.size();
+		this.extraZipCodeCount = coarse.getZipCodeCount() - exact.getZipCodeCount();
+	}
+
+	/**
+	 * @return the ranges, a superset of the restricted zip codes
+	 */
+	public ZipCodeRangeSet getRanges() {
+		return ranges;
+	}
+
+	/**
+	 * @return the number of gaps between the minimal ranges that were closed, 0 if they already fit
+	 */
+	public int getClosedGapCount() {
+		return closedGapCount;
+	}
+
+	/**
+	 * @return the number of unrestricted zip codes that the closed gaps restrict
+	 */
+	public long getExtraZipCodeCount() {
+		return extraZipCodeCount;
+	}
+
+	@Override
+	public String toString() {
+		return ranges + " (" + closedGapCount + " gaps closed, " + extraZipCodeCount + " extra zip codes)";
+	}
+}
@@ -0,0 +1,140 @@
+package orders;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * {@link RangeReducer} that keeps the flagged zip codes as a balanced tree (red-black {@link TreeMap})
+ * of disjoint, non adjacent ranges keyed by lower bound.
+ * <p>
+ * Every add and remove splits or coalesces the ranges it touches so the tree is always in the minimal form:
+ * <br>addRange / removeRange - O(log n + k) where k is the number of ranges touched
+ * <br>getReducedZipCodeRanges - O(n) read of the tree, no rescan
+ * <p>
+ * The engine of choice when restrictions are flipped one range at a time and the reduced set is read in between.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class IntervalTreeRangeReducer implements RangeReducer {
+
+	/**
+	 * lower bound -> upper bound of each flagged range
+	 */
+	private final TreeMap<Integer, Integer> ranges = new TreeMap<Integer, Integer>();
+	private final boolean use9DigitZip;
+	private final int maxBoundValue;
+
+	/**
+	 * Create an engine for the configured {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP} mode.
+	 */
+	public IntervalTreeRangeReducer() {
+		this(ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+
+	/**
+	 * @param use9DigitZip - true to track ZIP+4 codes [1, 999999999], false for 5 digit zip codes [1, 99999]
+	 */
+	public IntervalTreeRangeReducer(boolean use9DigitZip) {
+		this.use9DigitZip = use9DigitZip;
+		this.maxBoundValue = ZipCodeRange.getMaximumBoundValue(use9DigitZip);
+	}
+
+	@Override
+	public void reset(boolean startState) {
+		ranges.clear();
+		if (startState) {
+			ranges.put(ShippingConfigDefaults.MINIMUM_BOUND_VALUE, maxBoundValue);
+		}
+	}
+
+	/**
+	 * Coalesce [lower, upper] with the range starting before it (if they overlap or touch) and
+	 * with every range starting inside [lower, upper + 1].
+	 */
+	@Override
+	public void addRange(int lower, int upper) {
+		Map.Entry<Integer, Integer> before = ranges.floorEntry(lower);
+		if (before != null && before.getValue() >= lower - 1) {
+			lower = before.getKey();
+			upper = Math.max(upper, before.getValue());
+		}
+
+		NavigableMap<Integer, Integer> covered = ranges.subMap(lower, true, upper + 1, true);
+		if (!covered.isEmpty()) {
+			upper = Math.max(upper, covered.lastEntry().getValue());
+			covered.clear();
+		}
+		ranges.put(lower, upper);
+	}
+
+	/**
+	 * Trim the range starting before [lower, upper], drop the ranges starting inside it and keep the
+	 * tail of the last one if it sticks out past upper.
+	 */
+	@Override
+	public void removeRange(int lower, int upper) {
+		Map.Entry<Integer, Integer> before = ranges.lowerEntry(lower);
+		if (before != null && before.getValue() >= lower) {
+			int end = before.getValue();
+			ranges.put(before.getKey(), lower - 1);
+			if (end > upper) {
+				ranges.put(upper + 1, end);
+				return;
+			}
+		}
+
+		NavigableMap<Integer, Integer> covered = ranges.subMap(lower, true, upper, true);
+		if (!covered.isEmpty()) {
+			int end = covered.lastEntry().getValue();
+			covered.clear();
+			if (end > upper) {
+				ranges.put(upper + 1, end);
+			}
+		}
+	}
+
+	@Override
+	public boolean isFlagged(int zipCode) {
+		Map.Entry<Integer, Integer> range = ranges.floorEntry(zipCode);
+		return range != null && zipCode <= range.getValue();
+	}
+
+	/**
+	 * The tree is already reduced, read it in order. The unflagged ranges are the gaps between the
+	 * flagged ones in [MINIMUM_BOUND_VALUE, maximum bound].
+	 */
+	@Override
+	public ArrayList<ZipCodeRange> getReducedZipCodeRanges(boolean useFlagValue) throws ZipCodeRangeException {
+
+		ArrayList <ZipCodeRange> reduced = new ArrayList<ZipCodeRange>(ranges.size() + 1);
+		if (useFlagValue) {
+			for (Map.Entry<Integer, Integer> range : ranges.entrySet()) {
+				reduced.add(new ZipCodeRange(range.getKey(), range.getValue(), use9DigitZip));
+			}
+		}
+		else {
+			int nextLower = ShippingConfigDefaults.MINIMUM_BOUND_VALUE;
+			for (Map.Entry<Integer, Integer> range : ranges.entrySet()) {
+				if (range.getKey() > nextLower) {
+					reduced.add(new ZipCodeRange(nextLower, range.getKey() - 1, use9DigitZip));
+				}
+				nextLower = range.getValue() + 1;
+			}
+			if (nextLower <= maxBoundValue) {
+				reduced.add(new ZipCodeRange(nextLower, maxBoundValue, use9DigitZip));
+			}
+		}
+		return reduced;
+	}
+
+	@Override
+	public RangeReducer newEmptyReducer() {
+		return new IntervalTreeRangeReducer(use9DigitZip);
+	}
+
+}
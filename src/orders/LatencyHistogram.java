@@ -0,0 +1,97 @@
+package orders;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with power of 2 buckets: bucket i counts the durations in [2^(i-1), 2^i) nanoseconds.
+ * <p>
+ * Recording is a {@link Long#numberOfLeadingZeros(long)} and two {@link LongAdder} increments, cheap enough for
+ * the hot path and contention free across threads. Percentiles are reported as the upper bound of their bucket,
+ * within a factor of 2 of the true value.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKET_COUNT = 64;
+
+	private final LongAdder [] buckets = new LongAdder [BUCKET_COUNT];
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @param nanos - a duration in nanoseconds, negative durations count as 0
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		buckets[BUCKET_COUNT - Long.numberOfLeadingZeros(nanos)].increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+
+	/**
+	 * @return the number of durations recorded
+	 */
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	/**
+	 * @return the sum of the durations recorded, in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	/**
+	 * @return the longest duration recorded, in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * @param percentile - in (0, 100], e.g. 99
+	 * @return upper bound in nanoseconds of the bucket holding the percentile, 0 if nothing was recorded
+	 */
+	public long getPercentileNanos(double percentile) {
+		long [] counts = new long [BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets[i].sum();
+			count += counts[i];
+		}
+		long rank = (long) Math.ceil(count * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] > 0) {
+				return Math.min((i == BUCKET_COUNT - 1) ? Long.MAX_VALUE : (1L << i) - 1, getMaxNanos());
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Forget everything recorded so far.
+	 */
+	public void reset() {
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+		totalNanos.reset();
+		maxNanos.reset();
+	}
+}
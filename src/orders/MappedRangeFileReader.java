@@ -0,0 +1,277 @@
+package orders;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.Arrays;
+import java.nio.channels.FileChannel;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * Allocation free loader for 2 column csv range files.
+ * <p>
+ * The file is memory mapped with {@link FileChannel#map} and the ASCII digits are parsed straight from the
+ * mapped bytes into lower and upper ints, which are validated and flagged in a {@link ShippingHelper} with
+ * {@link ShippingHelper#setFlagForZipCodesInRange(int, int)}. No String, String[] or {@link ZipCodeRange}
+ * is created per line, and bad rows are counted per {@link RangeStatus} rather than thrown. With a
+ * {@link RejectedRowWriter} the bad rows are also copied to a reject file.
+ * <p>
+ * Accepted lines: "lower,upper" with optional leading zeros (00001), spaces around each field and \r\n line ends.
+ * <br>A space inside a number ("1 2,3") makes the line unparseable.
+ * Blank lines are ignored. Files over 2 GB are mapped one window at a time and the parser state carries
+ * over from one window to the next.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class MappedRangeFileReader {
+
+	private static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+	/**
+	 * Values past this can't take another digit without overflowing, they saturate to OVERFLOW_VALUE
+	 * which fails validation as out of bounds.
+	 */
+	private static final int MAX_VALUE_BEFORE_DIGIT = (Integer.MAX_VALUE - 9) / 10;
+	private static final int OVERFLOW_VALUE = Integer.MAX_VALUE;
+
+	private final ShippingHelper helper;
+	private final boolean use9DigitZip;
+
+	private long rangeCount;
+	private final long [] rejectedRowCounts = new long [RangeStatus.values().length];
+	private RejectedRowWriter rejectedRowWriter;
+
+	/**
+	 * Parser state for the current line, kept across windows.
+	 */
+	private int field;
+	private int lower;
+	private int upper;
+	private int lowerDigits;
+	private int upperDigits;
+	private boolean lineHasContent;
+	private boolean lineInvalid;
+	// whitespace followed the digits of the current field, so another digit can't belong to it
+	private boolean fieldEnded;
+
+	/**
+	 * Start of the current line in the current window, and the bytes of the line from earlier windows.
+	 * Only tracked with a {@link RejectedRowWriter}.
+	 */
+	private int lineStart;
+	private byte [] carry = new byte [0];
+	private int carryLength;
+
+	/**
+	 * Create a reader for the configured {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP} mode.
+	 * @param helper - the helper the ranges are flagged in
+	 */
+	public MappedRangeFileReader(ShippingHelper helper) {
+		this(helper, ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+
+	/**
+	 * @param helper - the helper the ranges are flagged in
+	 * @param use9DigitZip - true when the file holds 9 digit (ZIP+4) zip codes
+	 */
+	public MappedRangeFileReader(ShippingHelper helper, boolean use9DigitZip) {
+		this.helper = helper;
+		this.use9DigitZip = use9DigitZip;
+		resetLine();
+	}
+
+	/**
+	 * Copy every rejected row to a reject file from now on.
+	 * @param writer - the reject file, or null to only count the rejected rows
+	 */
+	public void setRejectedRowWriter(RejectedRowWriter writer) {
+		this.rejectedRowWriter = writer;
+	}
+
+	/**
+	 * Map the whole file and flag every valid range in the helper.
+	 * <p>
+	 * @param fileName - 2 column csv file with one range per line
+	 * @throws FileNotFoundException if the file doesn't exist
+	 * @throws IOException if the file can't be mapped
+	 */
+	public void load(String fileName) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			load(channel, 0, channel.size());
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Map the bytes [start, end) of a file and flag every valid range in the helper. The region is
+	 * expected to start at the beginning of a line and end at the end of one (or of the file).
+	 * <p>
+	 * @param channel - open channel on the csv file
+	 * @param start - first byte of the region
+	 * @param end - first byte past the region
+	 * @throws IOException if the region can't be mapped or a rejected row can't be written
+	 */
+	public void load(FileChannel channel, long start, long end) throws IOException {
+		PipelineMetrics metrics = PipelineMetrics.getInstance();
+		long startTime = metrics.startTimer();
+		long rangesBefore = rangeCount;
+		for (long position = start; position < end; position += MAX_WINDOW_SIZE) {
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_WINDOW_SIZE, end - position));
+			parse(window);
+		}
+		endLine(null, 0);
+		// one FLAG entry per region, timing each range would cost more than flagging it
+		metrics.stopTimer(PipelinePhase.FLAG, startTime);
+		metrics.recordRangesIn(rangeCount - rangesBefore);
+	}
+
+	/**
+	 * @return the number of valid ranges flagged so far
+	 */
+	public long getRangeCount() {
+		return rangeCount;
+	}
+
+	/**
+	 * @return the number of non blank rows skipped so far because they weren't a valid range
+	 */
+	public long getRejectedRowCount() {
+		long count = 0;
+		for (long rejected : rejectedRowCounts) {
+			count += rejected;
+		}
+		return count;
+	}
+
+	/**
+	 * @param status - why the rows were rejected
+	 * @return the number of rows skipped so far with that status, 0 for VALID
+	 */
+	public long getRejectedRowCount(RangeStatus status) {
+		return rejectedRowCounts[status.ordinal()];
+	}
+
+	/**
+	 * Run the line state machine over every byte of the window.
+	 */
+	private void parse(MappedByteBuffer window) throws IOException {
+		int limit = window.limit();
+		lineStart = 0;
+		for (int i = 0; i < limit; i++) {
+			int b = window.get(i);
+
+			if (b >= '0' && b <= '9') {
+				lineHasContent = true;
+				if (fieldEnded) {
+					lineInvalid = true;
+				}
+				int digit = b - '0';
+				if (field == 0) {
+					lower = (lower > MAX_VALUE_BEFORE_DIGIT) ? OVERFLOW_VALUE : lower * 10 + digit;
+					lowerDigits++;
+				}
+				else {
+					upper = (upper > MAX_VALUE_BEFORE_DIGIT) ? OVERFLOW_VALUE : upper * 10 + digit;
+					upperDigits++;
+				}
+			}
+			else if (b == '\n') {
+				endLine(window, i);
+				lineStart = i + 1;
+			}
+			else if (b == ',') {
+				lineHasContent = true;
+				fieldEnded = false;
+				if (field == 0) {
+					field = 1;
+				}
+				else {
+					lineInvalid = true;
+				}
+			}
+			else if (b == '\r' || b == ' ' || b == '\t') {
+				// whitespace is only allowed before or after a field
+				fieldEnded = ((field == 0) ? lowerDigits : upperDigits) > 0;
+			}
+			else {
+				lineHasContent = true;
+				lineInvalid = true;
+			}
+		}
+		if (rejectedRowWriter != null && lineStart < limit) {
+			appendCarry(window, lineStart, limit);
+		}
+	}
+
+	/**
+	 * Flag the range parsed from the current line, or count the line as rejected, then start a new line.
+	 * @param window - the window holding the end of the line, or null at the end of the region
+	 * @param end - position of the \n in the window
+	 */
+	private void endLine(ByteBuffer window, int end) throws IOException {
+		if (lineHasContent) {
+			RangeStatus status = RangeStatus.UNPARSEABLE;
+			if (!lineInvalid && field == 1 && lowerDigits > 0 && upperDigits > 0) {
+				status = ZipCodeRange.validateBounds(lower, upper, use9DigitZip);
+			}
+			if (status == RangeStatus.VALID) {
+				helper.setFlagForZipCodesInRange(lower, upper);
+				rangeCount++;
+			}
+			else {
+				rejectedRowCounts[status.ordinal()]++;
+				PipelineMetrics.getInstance().recordRejected(status);
+				if (rejectedRowWriter != null) {
+					writeRejectedRow(status, window, end);
+				}
+			}
+		}
+		carryLength = 0;
+		resetLine();
+	}
+
+	private void writeRejectedRow(RangeStatus status, ByteBuffer window, int end) throws IOException {
+		if (carryLength == 0) {
+			rejectedRowWriter.writeRow(status, window, lineStart, end);
+			return;
+		}
+		if (window != null) {
+			appendCarry(window, lineStart, end);
+		}
+		rejectedRowWriter.writeRow(status, ByteBuffer.wrap(carry), 0, carryLength);
+	}
+
+	/**
+	 * Keep the bytes [from, to) of a line that doesn't end in this window.
+	 */
+	private void appendCarry(ByteBuffer window, int from, int to) {
+		int length = to - from;
+		if (carry.length < carryLength + length) {
+			carry = Arrays.copyOf(carry, Math.max(carryLength + length, carry.length << 1));
+		}
+		ByteBuffer source = window.duplicate();
+		source.limit(to);
+		source.position(from);
+		source.get(carry, carryLength, length);
+		carryLength += length;
+	}
+
+	private void resetLine() {
+		field = 0;
+		lower = 0;
+		upper = 0;
+		lowerDigits = 0;
+		upperDigits = 0;
+		lineHasContent = false;
+		lineInvalid = false;
+		fieldEnded = false;
+	}
+
+}
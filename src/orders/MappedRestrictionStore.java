@@ -0,0 +1,343 @@
+package orders;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import config.ShippingMessageConstants;
+
+/**
+ * Read only, file backed counterpart of a {@link RestrictionStore} for catalogs of millions of items.
+ * <p>
+ * Every item's restrictions live in one memory mapped file and lookups read the mapped bytes directly, so the
+ * restrictions cost no heap and add nothing to GC work however large the catalog gets. After a restart the file
+ * is mapped again and its index checked in one pass rather than reloaded, and the OS page cache keeps the hot
+ * items resident.
+ * <p>
+ * Layout, big endian:
+ * <br>header - magic "ZCMS", version (short), reserved (short), item count, set count, then the offsets of the
+ * index, keys and sets regions and the file length
+ * <br>index - per item, sorted by the UTF-8 bytes of the item ID: key offset, key length, set offset
+ * <br>keys - the UTF-8 item IDs
+ * <br>sets - per distinct set: range count, then the packed bounds [lower0, upper0, lower1, upper1, ...] as ints.
+ * Sets shared by several items, as interned by the store, are written once.
+ * <p>
+ * A lookup binary searches the index for the item, then the item's bounds for the zip code. A file holds up to
+ * 2 GB, the size of one mapping.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public final class MappedRestrictionStore {
+
+	public static final int MAGIC = 0x5A434D53;
+	public static final short VERSION = 1;
+
+	static final int HEADER_SIZE = 32;
+	private static final int INDEX_ENTRY_SIZE = 12;
+
+	private final ByteBuffer buffer;
+	private final int itemCount;
+	private final int setCount;
+	private final int indexOffset;
+	private final int keysOffset;
+	private final int setsOffset;
+
+	private MappedRestrictionStore(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.itemCount = buffer.getInt(8);
+		this.setCount = buffer.getInt(12);
+		this.indexOffset = buffer.getInt(16);
+		this.keysOffset = buffer.getInt(20);
+		this.setsOffset = buffer.getInt(24);
+	}
+
+	/**
+	 * Write every item of a store to a file, replacing the file if it exists.
+	 * <p>
+	 * @param store - the restrictions to save
+	 * @param fileName - the output file
+	 * @throws IOException if the file can't be written or would be larger than 2 GB
+	 */
+	public static void write(RestrictionStore store, String fileName) throws IOException {
+		int itemCount = store.getItemCount();
+		final byte [][] keys = new byte [itemCount][];
+		String [] itemIds = store.getItemIds().toArray(new String [itemCount]);
+		Integer [] order = new Integer [itemCount];
+		for (int i = 0; i < itemCount; i++) {
+			keys[i] = itemIds[i].getBytes(StandardCharsets.UTF_8);
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer left, Integer right) {
+				return Arrays.compareUnsigned(keys[left.intValue()], keys[right.intValue()]);
+			}
+		});
+
+		// lay out the keys and the distinct sets, the store already shares identical sets
+		long keysLength = 0;
+		for (byte [] key : keys) {
+			keysLength += key.length;
+		}
+		long indexOffset = HEADER_SIZE;
+		long keysOffset = indexOffset + (long) itemCount * INDEX_ENTRY_SIZE;
+		long setsOffset = keysOffset + keysLength;
+		Map<ZipCodeRangeSet, Long> setOffsets = new IdentityHashMap<ZipCodeRangeSet, Long>();
+		ZipCodeRangeSet [] sets = new ZipCodeRangeSet [itemCount];
+		int setCount = 0;
+		long end = setsOffset;
+		for (int i = 0; i < itemCount; i++) {
+			ZipCodeRangeSet ranges = store.getRestrictions(itemIds[order[i].intValue()]);
+			if (!setOffsets.containsKey(ranges)) {
+				setOffsets.put(ranges, Long.valueOf(end));
+				sets[setCount++] = ranges;
+				end += 4 + ranges.size() * 8L;
+			}
+		}
+		if (end > Integer.MAX_VALUE) {
+			throw new IOException("The restrictions need " + end + " bytes, a mapped store holds up to 2 GB");
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeShort(0);
+			out.writeInt(itemCount);
+			out.writeInt(setCount);
+			out.writeInt((int) indexOffset);
+			out.writeInt((int) keysOffset);
+			out.writeInt((int) setsOffset);
+			out.writeInt((int) end);
+			long keyOffset = keysOffset;
+			for (int i = 0; i < itemCount; i++) {
+				int item = order[i].intValue();
+				out.writeInt((int) keyOffset);
+				out.writeInt(keys[item].length);
+				out.writeInt(setOffsets.get(store.getRestrictions(itemIds[item])).intValue());
+				keyOffset += keys[item].length;
+			}
+			for (int i = 0; i < itemCount; i++) {
+				out.write(keys[order[i].intValue()]);
+			}
+			for (int i = 0; i < setCount; i++) {
+				out.writeInt(sets[i].size());
+				for (int j = 0; j < sets[i].size(); j++) {
+					out.writeInt(sets[i].getLowerBound(j));
+					out.writeInt(sets[i].getUpperBound(j));
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Memory map a file and check its header and index, so a truncated or corrupt file fails here rather than in
+	 * a lookup. The bounds themselves aren't read until they're looked up.
+	 * <p>
+	 * @param fileName - a file written by {@link #write(RestrictionStore, String)}
+	 * @return the mapped store
+	 * @throws IOException if the file can't be read or mapped
+	 * @throws ZipCodeRangeException if the file isn't a valid store file
+	 */
+	public static MappedRestrictionStore map(String fileName) throws IOException, ZipCodeRangeException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		MappedByteBuffer buffer;
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+				throw invalid(fileName, "size " + channel.size());
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			file.close();
+		}
+		return wrap(buffer, fileName);
+	}
+
+	/**
+	 * Check the header of a store file and that every index entry points inside the keys and sets regions.
+	 */
+	static MappedRestrictionStore wrap(ByteBuffer buffer, String name) throws ZipCodeRangeException {
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw invalid(name, "bad magic number");
+		}
+		if (buffer.getShort(4) != VERSION) {
+			throw invalid(name, "unsupported version " + buffer.getShort(4));
+		}
+		MappedRestrictionStore store = new MappedRestrictionStore(buffer);
+		if (store.itemCount < 0 || store.setCount < 0 || store.indexOffset != HEADER_SIZE
+			|| store.keysOffset != HEADER_SIZE + (long) store.itemCount * INDEX_ENTRY_SIZE
+			|| store.setsOffset < store.keysOffset || store.setsOffset > buffer.limit()) {
+			throw invalid(name, "bad header");
+		}
+		if (buffer.getInt(28) != buffer.limit()) {
+			throw invalid(name, "expected " + buffer.getInt(28) + " bytes, found " + buffer.limit());
+		}
+		for (int i = 0; i < store.itemCount; i++) {
+			int entry = store.indexOffset + i * INDEX_ENTRY_SIZE;
+			int keyOffset = buffer.getInt(entry);
+			int keyLength = buffer.getInt(entry + 4);
+			int set = buffer.getInt(entry + 8);
+			if (keyOffset < store.keysOffset || keyLength < 0 || (long) keyOffset + keyLength > store.setsOffset) {
+				throw invalid(name, "bad key in index entry " + i);
+			}
+			if (set < store.setsOffset || (long) set + 4 > buffer.limit()) {
+				throw invalid(name, "bad set offset in index entry " + i);
+			}
+			int rangeCount = buffer.getInt(set);
+			if (rangeCount < 0 || set + 4 + rangeCount * 8L > buffer.limit()) {
+				throw invalid(name, "bad range count " + rangeCount + " in index entry " + i);
+			}
+		}
+		return store;
+	}
+
+	private static ZipCodeRangeException invalid(String name, String reason) {
+		return new ZipCodeRangeException(MessageFormat.format(ShippingMessageConstants.ZC_RANGE_FILE_INVALID_MSG, name, reason));
+	}
+
+	/**
+	 * @return the number of items in the file
+	 */
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	/**
+	 * @return the number of distinct restriction sets shared by the items
+	 */
+	public int getProfileCount() {
+		return setCount;
+	}
+
+	/**
+	 * @param itemId - catalog item (SKU) identifier
+	 * @return true if the item is in the file
+	 */
+	public boolean containsItem(String itemId) {
+		return findSet(itemId) >= 0;
+	}
+
+	/**
+	 * @param itemId - catalog item (SKU) identifier
+	 * @param zipCode - destination zip code
+	 * @return true if the item can't be shipped to the zip code
+	 */
+	public boolean isRestricted(String itemId, int zipCode) {
+		int set = findSet(itemId);
+		return set >= 0 && isRestricted(set, zipCode);
+	}
+
+	/**
+	 * @param itemId - catalog item (SKU) identifier
+	 * @param zipCodes - destination zip codes
+	 * @return bit i is set when the item can't be shipped to zipCodes[i]
+	 */
+	public BitSet isRestricted(String itemId, int [] zipCodes) {
+		BitSet restricted = new BitSet(zipCodes.length);
+		int set = findSet(itemId);
+		if (set >= 0) {
+			for (int i = 0; i < zipCodes.length; i++) {
+				if (isRestricted(set, zipCodes[i])) {
+					restricted.set(i);
+				}
+			}
+		}
+		return restricted;
+	}
+
+	/**
+	 * Copy an item's restrictions to the heap, e.g. to combine them with other sets.
+	 * @param itemId - catalog item (SKU) identifier
+	 * @return the item's restrictions, {@link ZipCodeRangeSet#EMPTY} if the item isn't in the file
+	 */
+	public ZipCodeRangeSet getRestrictions(String itemId) {
+		int set = findSet(itemId);
+		if (set < 0) {
+			return ZipCodeRangeSet.EMPTY;
+		}
+		int [] bounds = new int [buffer.getInt(set) << 1];
+		for (int i = 0; i < bounds.length; i++) {
+			bounds[i] = buffer.getInt(set + 4 + (i << 2));
+		}
+		return ZipCodeRangeSet.fromPackedBounds(bounds, bounds.length);
+	}
+
+	/**
+	 * Binary search the index for the item.
+	 * @return the offset of the item's set, -1 if the item isn't in the file
+	 */
+	private int findSet(String itemId) {
+		byte [] key = itemId.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = itemCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int entry = indexOffset + middle * INDEX_ENTRY_SIZE;
+			int comparison = compareKey(buffer.getInt(entry), buffer.getInt(entry + 4), key);
+			if (comparison < 0) {
+				low = middle + 1;
+			}
+			else if (comparison > 0) {
+				high = middle - 1;
+			}
+			else {
+				return buffer.getInt(entry + 8);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compare the mapped key at offset with key, byte by byte as unsigned values.
+	 */
+	private int compareKey(int offset, int length, byte [] key) {
+		int common = Math.min(length, key.length);
+		for (int i = 0; i < common; i++) {
+			int difference = (buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return length - key.length;
+	}
+
+	/**
+	 * Binary search the mapped bounds of a set for the last range starting at or before zipCode.
+	 */
+	private boolean isRestricted(int set, int zipCode) {
+		int bounds = set + 4;
+		int low = 0;
+		int high = buffer.getInt(set) - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int range = bounds + (middle << 3);
+			if (buffer.getInt(range) > zipCode) {
+				high = middle - 1;
+			}
+			else if (buffer.getInt(range + 4) < zipCode) {
+				low = middle + 1;
+			}
+			else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
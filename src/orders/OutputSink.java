@@ -0,0 +1,29 @@
+package orders;
+
+/**
+ * Where a {@link ZipCodeRangeWriter} sends the reduced ranges.
+ * <p>
+ * CSV_FILE - one "lower,upper" line per range in a file
+ * <br>STDOUT - one "[lower,upper]" line per range on the console
+ * <br>NONE - ranges are counted and dropped, e.g. for timing runs
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public enum OutputSink {
+
+	CSV_FILE,
+	STDOUT,
+	NONE;
+
+	/**
+	 * Look up a sink by name, ignoring case and surrounding whitespace. e.g. "csv_file"
+	 * <p>
+	 * @param name - the sink name
+	 * @return the matching sink
+	 * @throws IllegalArgumentException if no sink has that name
+	 */
+	public static OutputSink fromName(String name) {
+		return valueOf(name.trim().toUpperCase());
+	}
+}
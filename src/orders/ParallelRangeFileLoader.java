@@ -0,0 +1,243 @@
+package orders;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * Parallel loader for 2 column csv range files.
+ * <p>
+ * Flagging ranges is commutative, so the file is split into newline aligned chunks and each chunk is
+ * memory mapped, parsed and flagged by a {@link MappedRangeFileReader} on a {@link ForkJoinPool} worker into
+ * its own private copy of the helper. The copies are combined pairwise by set union (a word by word OR for the
+ * bitmap engine) as the tasks join, and the result is added to the target helper. No locking on the hot path.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class ParallelRangeFileLoader {
+
+	/**
+	 * Smaller files aren't worth splitting further.
+	 */
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+	private static final int NEWLINE_SCAN_SIZE = 256;
+
+	private final ForkJoinPool pool;
+	private final boolean use9DigitZip;
+
+	private long rangeCount;
+	private final long [] rejectedRowCounts = new long [RangeStatus.values().length];
+	private RejectedRowWriter rejectedRowWriter;
+
+	/**
+	 * Create a loader for the configured {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP} mode.
+	 * @param pool - the pool that runs the chunks, one chunk per worker
+	 */
+	public ParallelRangeFileLoader(ForkJoinPool pool) {
+		this(pool, ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+
+	/**
+	 * @param pool - the pool that runs the chunks, one chunk per worker
+	 * @param use9DigitZip - true when the file holds 9 digit (ZIP+4) zip codes
+	 */
+	public ParallelRangeFileLoader(ForkJoinPool pool, boolean use9DigitZip) {
+		this.pool = pool;
+		this.use9DigitZip = use9DigitZip;
+	}
+
+	/**
+	 * Copy every rejected row to a reject file from now on. The chunks share the writer, so the rows are
+	 * written in no particular order.
+	 * @param writer - the reject file, or null to only count the rejected rows
+	 */
+	public void setRejectedRowWriter(RejectedRowWriter writer) {
+		this.rejectedRowWriter = writer;
+	}
+
+	/**
+	 * Load the file in parallel and flag every valid range in the helper.
+	 * <p>
+	 * @param fileName - 2 column csv file with one range per line
+	 * @param helper - the helper the ranges are flagged in, only touched by the calling thread
+	 * @throws IOException if the file can't be read or mapped
+	 * @throws ZipCodeRangeException if the chunk results can't be combined
+	 */
+	public void load(String fileName, ShippingHelper helper) throws IOException, ZipCodeRangeException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long [] boundaries = splitAtNewlines(channel);
+
+			ChunkResult result = pool.invoke(new LoadChunkTask(channel, boundaries, 0, boundaries.length - 1, helper));
+			if (result.ioFailure != null) {
+				throw result.ioFailure;
+			}
+			if (result.mergeFailure != null) {
+				throw result.mergeFailure;
+			}
+
+			helper.setFlagForZipCodesInHelper(result.helper);
+			rangeCount += result.rangeCount;
+			for (int i = 0; i < rejectedRowCounts.length; i++) {
+				rejectedRowCounts[i] += result.rejectedRowCounts[i];
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * @return the number of valid ranges flagged so far
+	 */
+	public long getRangeCount() {
+		return rangeCount;
+	}
+
+	/**
+	 * @return the number of non blank rows skipped so far because they weren't a valid range
+	 */
+	public long getRejectedRowCount() {
+		long count = 0;
+		for (long rejected : rejectedRowCounts) {
+			count += rejected;
+		}
+		return count;
+	}
+
+	/**
+	 * @param status - why the rows were rejected
+	 * @return the number of rows skipped so far with that status, 0 for VALID
+	 */
+	public long getRejectedRowCount(RangeStatus status) {
+		return rejectedRowCounts[status.ordinal()];
+	}
+
+	/**
+	 * Cut the file in about one chunk per worker and move every cut just past the next newline.
+	 * @return chunk boundaries [0, cut1, cut2, ..., size], chunk i is [boundaries[i], boundaries[i + 1])
+	 */
+	private long [] splitAtNewlines(FileChannel channel) throws IOException {
+		long size = channel.size();
+		int chunkCount = (int) Math.max(1, Math.min(pool.getParallelism(), size / MIN_CHUNK_SIZE));
+
+		long [] boundaries = new long [chunkCount + 1];
+		boundaries[chunkCount] = size;
+		ByteBuffer scan = ByteBuffer.allocate(NEWLINE_SCAN_SIZE);
+
+		for (int i = 1; i < chunkCount; i++) {
+			long position = Math.max(size / chunkCount * i, boundaries[i - 1]);
+			boundaries[i] = nextLineStart(channel, position, scan);
+		}
+		return boundaries;
+	}
+
+	/**
+	 * @return the position just past the first newline at or after position, or the file size
+	 */
+	private static long nextLineStart(FileChannel channel, long position, ByteBuffer scan) throws IOException {
+		long size = channel.size();
+		while (position < size) {
+			scan.clear();
+			int read = channel.read(scan, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (scan.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Helper copy, counters and first failure of one or more chunks. Failures travel back with the result
+	 * rather than as exceptions thrown across the pool.
+	 */
+	private static final class ChunkResult {
+		private final ShippingHelper helper;
+		private long rangeCount;
+		private final long [] rejectedRowCounts = new long [RangeStatus.values().length];
+		private IOException ioFailure;
+		private ZipCodeRangeException mergeFailure;
+
+		private ChunkResult(ShippingHelper helper) {
+			this.helper = helper;
+		}
+
+		private boolean failed() {
+			return ioFailure != null || mergeFailure != null;
+		}
+	}
+
+	/**
+	 * Load chunks [from, to) by splitting them in halves until a single chunk is left, then OR the halves back together.
+	 */
+	private final class LoadChunkTask extends RecursiveTask<ChunkResult> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel channel;
+		private final long [] boundaries;
+		private final int from;
+		private final int to;
+		private final ShippingHelper prototype;
+
+		private LoadChunkTask(FileChannel channel, long [] boundaries, int from, int to, ShippingHelper prototype) {
+			this.channel = channel;
+			this.boundaries = boundaries;
+			this.from = from;
+			this.to = to;
+			this.prototype = prototype;
+		}
+
+		@Override
+		protected ChunkResult compute() {
+			if (to - from == 1) {
+				ChunkResult result = new ChunkResult(prototype.newEmptyCopy());
+				MappedRangeFileReader reader = new MappedRangeFileReader(result.helper, use9DigitZip);
+				reader.setRejectedRowWriter(rejectedRowWriter);
+				try {
+					reader.load(channel, boundaries[from], boundaries[to]);
+				} catch (IOException ex) {
+					result.ioFailure = ex;
+				}
+				result.rangeCount = reader.getRangeCount();
+				for (RangeStatus status : RangeStatus.values()) {
+					result.rejectedRowCounts[status.ordinal()] = reader.getRejectedRowCount(status);
+				}
+				return result;
+			}
+
+			int middle = (from + to) >>> 1;
+			LoadChunkTask right = new LoadChunkTask(channel, boundaries, middle, to, prototype);
+			right.fork();
+			ChunkResult left = new LoadChunkTask(channel, boundaries, from, middle, prototype).compute();
+			ChunkResult rightResult = right.join();
+
+			if (left.failed() || rightResult.failed()) {
+				return left.failed() ? left : rightResult;
+			}
+			try {
+				left.helper.setFlagForZipCodesInHelper(rightResult.helper);
+			} catch (ZipCodeRangeException ex) {
+				left.mergeFailure = ex;
+			}
+			left.rangeCount += rightResult.rangeCount;
+			for (int i = 0; i < left.rejectedRowCounts.length; i++) {
+				left.rejectedRowCounts[i] += rightResult.rejectedRowCounts[i];
+			}
+			return left;
+		}
+	}
+
+}
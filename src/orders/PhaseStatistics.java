@@ -0,0 +1,64 @@
+package orders;
+
+/**
+ * Read only summary of the {@link LatencyHistogram} of one {@link PipelinePhase}, as shown by JMX.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public final class PhaseStatistics {
+
+	private final long count;
+	private final long totalMicros;
+	private final long medianMicros;
+	private final long percentile99Micros;
+	private final long maxMicros;
+
+	PhaseStatistics(LatencyHistogram histogram) {
+		this.count = histogram.getCount();
+		this.totalMicros = histogram.getTotalNanos() / 1000;
+		this.medianMicros = histogram.getPercentileNanos(50) / 1000;
+		this.percentile99Micros = histogram.getPercentileNanos(99) / 1000;
+		this.maxMicros = histogram.getMaxNanos() / 1000;
+	}
+
+	/**
+	 * @return how many times the phase ran
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return time spent in the phase across all runs, in microseconds
+	 */
+	public long getTotalMicros() {
+		return totalMicros;
+	}
+
+	/**
+	 * @return upper bound of the median run, in microseconds
+	 */
+	public long getMedianMicros() {
+		return medianMicros;
+	}
+
+	/**
+	 * @return upper bound of the 99th percentile run, in microseconds
+	 */
+	public long getPercentile99Micros() {
+		return percentile99Micros;
+	}
+
+	/**
+	 * @return the longest run, in microseconds
+	 */
+	public long getMaxMicros() {
+		return maxMicros;
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + count + " total=" + totalMicros + "us p50<=" + medianMicros + "us p99<=" + percentile99Micros + "us max=" + maxMicros + "us";
+	}
+}
@@ -0,0 +1,241 @@
+package orders;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * Process wide latency histograms per {@link PipelinePhase} and counters for ranges in, ranges out and rejected
+ * rows, shared by every {@link ShippingHelper} and loader.
+ * <p>
+ * Recording is off by default ({@link ShippingConfigDefaults#METRICS_ENABLED}). While it's off every call is a
+ * single volatile read and a branch: no clock reads, no counters touched. While it's on, phases are timed once
+ * per load, batch or reduction rather than per range, with two {@link System#nanoTime()} calls and a few
+ * {@link LongAdder} increments, which scale across loader threads. Ranges in are counted by the loaders and
+ * ranges out only for the final output, by the driver.
+ * <p>
+ * Usage:
+ * <br>long start = metrics.startTimer();
+ * <br>... the phase ...
+ * <br>metrics.stopTimer(PipelinePhase.REDUCE, start);
+ * <p>
+ * {@link #register()} exposes the metrics over JMX as {@value #OBJECT_NAME}, and {@link #setJfrEnabled(boolean)}
+ * adds a {@link PipelinePhaseEvent} per phase to flight recordings.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public final class PipelineMetrics implements PipelineMetricsMXBean {
+
+	public static final String OBJECT_NAME = "shipit:type=PipelineMetrics";
+
+	private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+	private volatile boolean enabled = ShippingConfigDefaults.METRICS_ENABLED;
+	private volatile boolean jfrEnabled;
+
+	private final LatencyHistogram [] histograms = new LatencyHistogram [PipelinePhase.values().length];
+	private final LongAdder rangesIn = new LongAdder();
+	private final LongAdder rangesOut = new LongAdder();
+	private final LongAdder [] rejects = new LongAdder [RangeStatus.values().length];
+
+	private PipelineMetrics() {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+		for (int i = 0; i < rejects.length; i++) {
+			rejects[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @return the metrics shared by the process
+	 */
+	public static PipelineMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Register the metrics with the platform MBean server, once per process.
+	 * @return true if they're registered, false if JMX refused them
+	 */
+	public boolean register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(this, new ObjectName(OBJECT_NAME));
+			return true;
+		} catch (InstanceAlreadyExistsException ex) {
+			return true;
+		} catch (JMException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return the clock to pass to {@link #stopTimer(PipelinePhase, long)}, or 0 while metrics are disabled
+	 */
+	public long startTimer() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Record the time since start in the histogram of the phase.
+	 * @param phase - the phase that ran
+	 * @param start - the value returned by {@link #startTimer()}, 0 records nothing
+	 */
+	public void stopTimer(PipelinePhase phase, long start) {
+		if (start == 0 || !enabled) {
+			return;
+		}
+		long duration = System.nanoTime() - start;
+		histograms[phase.ordinal()].record(duration);
+		if (jfrEnabled && phase != PipelinePhase.FLAG) {
+			PipelinePhaseEvent event = new PipelinePhaseEvent();
+			if (event.shouldCommit()) {
+				event.phase = phase.name();
+				event.durationNanos = duration;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * @param count - number of ranges flagged
+	 */
+	public void recordRangesIn(long count) {
+		if (enabled) {
+			rangesIn.add(count);
+		}
+	}
+
+	/**
+	 * @param count - number of reduced ranges produced
+	 */
+	public void recordRangesOut(long count) {
+		if (enabled) {
+			rangesOut.add(count);
+		}
+	}
+
+	/**
+	 * @param status - why a row or range was rejected, VALID is ignored
+	 */
+	public void recordRejected(RangeStatus status) {
+		if (enabled && status.isRejected()) {
+			rejects[status.ordinal()].increment();
+		}
+	}
+
+	/**
+	 * @param phase - a phase
+	 * @return the histogram of the phase, for in process reporting
+	 */
+	public LatencyHistogram getHistogram(PipelinePhase phase) {
+		return histograms[phase.ordinal()];
+	}
+
+	/**
+	 * @param status - a rejected status
+	 * @return the number of rows or ranges rejected with that status
+	 */
+	public long getRejects(RangeStatus status) {
+		return rejects[status.ordinal()].sum();
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public boolean isJfrEnabled() {
+		return jfrEnabled;
+	}
+
+	@Override
+	public void setJfrEnabled(boolean jfrEnabled) {
+		this.jfrEnabled = jfrEnabled;
+	}
+
+	@Override
+	public Map<String, PhaseStatistics> getPhases() {
+		Map<String, PhaseStatistics> phases = new LinkedHashMap<String, PhaseStatistics>();
+		for (PipelinePhase phase : PipelinePhase.values()) {
+			phases.put(phase.name(), new PhaseStatistics(histograms[phase.ordinal()]));
+		}
+		return phases;
+	}
+
+	@Override
+	public long getRangesIn() {
+		return rangesIn.sum();
+	}
+
+	@Override
+	public long getRangesOut() {
+		return rangesOut.sum();
+	}
+
+	@Override
+	public double getReductionRatio() {
+		long out = getRangesOut();
+		return (out == 0) ? 0 : (double) getRangesIn() / out;
+	}
+
+	@Override
+	public long getOutOfBoundsRejects() {
+		return getRejects(RangeStatus.OUT_OF_BOUNDS);
+	}
+
+	@Override
+	public long getInvertedRejects() {
+		return getRejects(RangeStatus.INVERTED);
+	}
+
+	@Override
+	public long getUnparseableRejects() {
+		return getRejects(RangeStatus.UNPARSEABLE);
+	}
+
+	@Override
+	public void reset() {
+		for (LatencyHistogram histogram : histograms) {
+			histogram.reset();
+		}
+		rangesIn.reset();
+		rangesOut.reset();
+		for (LongAdder reject : rejects) {
+			reject.reset();
+		}
+	}
+
+	/**
+	 * @return one line per phase and a line of counters, for the console
+	 */
+	@Override
+	public String toString() {
+		StringBuilder summary = new StringBuilder();
+		for (Map.Entry<String, PhaseStatistics> phase : getPhases().entrySet()) {
+			summary.append(phase.getKey()).append(": ").append(phase.getValue()).append('\n');
+		}
+		summary.append("ranges in=").append(getRangesIn()).append(" out=").append(getRangesOut())
+			   .append(String.format(" ratio=%.2f", getReductionRatio()))
+			   .append(" rejects: out of bounds=").append(getOutOfBoundsRejects())
+			   .append(" inverted=").append(getInvertedRejects())
+			   .append(" unparseable=").append(getUnparseableRejects());
+		return summary.toString();
+	}
+}
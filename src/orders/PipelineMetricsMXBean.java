@@ -0,0 +1,72 @@
+package orders;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link PipelineMetrics}, registered as {@value PipelineMetrics#OBJECT_NAME}.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public interface PipelineMetricsMXBean {
+
+	/**
+	 * @return true while metrics are being recorded
+	 */
+	boolean isEnabled();
+
+	/**
+	 * @param enabled - true to start recording, false to stop. What was recorded is kept
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * @return true while a JFR event is committed for each LOAD, REDUCE and WRITE phase
+	 */
+	boolean isJfrEnabled();
+
+	/**
+	 * @param jfrEnabled - true to commit JFR events, they're only recorded while metrics are enabled
+	 */
+	void setJfrEnabled(boolean jfrEnabled);
+
+	/**
+	 * @return latency summary per {@link PipelinePhase} name
+	 */
+	Map<String, PhaseStatistics> getPhases();
+
+	/**
+	 * @return the number of ranges flagged
+	 */
+	long getRangesIn();
+
+	/**
+	 * @return the number of reduced ranges produced
+	 */
+	long getRangesOut();
+
+	/**
+	 * @return ranges in per range out, 0 before anything was reduced
+	 */
+	double getReductionRatio();
+
+	/**
+	 * @return the number of ranges rejected for a bound outside the zip code range
+	 */
+	long getOutOfBoundsRejects();
+
+	/**
+	 * @return the number of ranges rejected for a lower bound above the upper bound
+	 */
+	long getInvertedRejects();
+
+	/**
+	 * @return the number of rows rejected because they aren't 2 numbers separated by a comma
+	 */
+	long getUnparseableRejects();
+
+	/**
+	 * Forget everything recorded so far.
+	 */
+	void reset();
+}
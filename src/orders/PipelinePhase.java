@@ -0,0 +1,20 @@
+package orders;
+
+/**
+ * The timed phases of a run, see {@link PipelineMetrics}.
+ * <p>
+ * LOAD - reading an input file into a helper, flagging included
+ * <br>FLAG - flagging one range (or merging one helper) in a {@link ShippingHelper}
+ * <br>REDUCE - reducing a helper to its minimal ranges
+ * <br>WRITE - writing the reduced ranges to the output sinks
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public enum PipelinePhase {
+
+	LOAD,
+	FLAG,
+	REDUCE,
+	WRITE
+}
@@ -0,0 +1,32 @@
+package orders;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event committed by {@link PipelineMetrics} at the end of a LOAD, REDUCE or WRITE phase, so a flight
+ * recording lines the phases up with GC and allocation events. FLAG is too fine grained for an event per range,
+ * it's only in the histograms.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+@Name("shipit.PipelinePhase")
+@Label("Pipeline Phase")
+@Category("Shipit")
+@Description("One run of a phase of the zip code range pipeline")
+@StackTrace(false)
+final class PipelinePhaseEvent extends Event {
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long durationNanos;
+}
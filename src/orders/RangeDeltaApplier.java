@@ -0,0 +1,159 @@
+package orders;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * Applies a small change file to a previously reduced range set instead of reloading every source.
+ * <p>
+ * Change file lines are "+lower,upper" to restrict a range and "-lower,upper" to lift a restriction, applied in
+ * file order. Blank lines are ignored and other rows are skipped and counted.
+ * <p>
+ * The changes are first folded into two disjoint interval trees, the ranges added and the ranges removed by
+ * the file as a whole (a later line wins over an earlier one). The new set is then
+ * (base - removed) + added, two linear passes with {@link ZipCodeRangeSet#subtract(ZipCodeRangeSet)} and
+ * {@link ZipCodeRangeSet#union(ZipCodeRangeSet)}. The cost is O(n + d log d) for n base ranges and d changes,
+ * whatever the size of the sources the base was reduced from.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class RangeDeltaApplier {
+
+	private final boolean use9DigitZip;
+
+	private long addedCount;
+	private long removedCount;
+	private long rejectedRowCount;
+
+	/**
+	 * Create an applier for the configured {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP} mode.
+	 */
+	public RangeDeltaApplier() {
+		this(ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+
+	/**
+	 * @param use9DigitZip - true when the files hold 9 digit (ZIP+4) zip codes
+	 */
+	public RangeDeltaApplier(boolean use9DigitZip) {
+		this.use9DigitZip = use9DigitZip;
+	}
+
+	/**
+	 * Load a reduced output file, e.g. the file.output.ranges of an earlier run. The file is read in one
+	 * streaming pass and must be sorted by lower bound.
+	 * <p>
+	 * @param fileName - 2 column csv file of sorted ranges
+	 * @return the ranges in minimal form
+	 * @throws IOException if the file can't be read
+	 * @throws ZipCodeRangeException if the file isn't sorted by lower bound
+	 */
+	public ZipCodeRangeSet loadReducedRanges(String fileName) throws IOException, ZipCodeRangeException {
+		SortedRangeFileMerger merger = new SortedRangeFileMerger(use9DigitZip);
+		PackedBoundsSink sink = new PackedBoundsSink();
+		merger.merge(Collections.singletonList(fileName), sink);
+		rejectedRowCount += merger.getRejectedRowCount();
+		return ZipCodeRangeSet.fromPackedBounds(sink.bounds, sink.length);
+	}
+
+	/**
+	 * Apply the change file to the base set.
+	 * <p>
+	 * @param base - the previously reduced ranges
+	 * @param deltaFileName - the change file
+	 * @return the new ranges in minimal form
+	 * @throws IOException if the change file can't be read
+	 * @throws ZipCodeRangeException if the changes can't be reduced
+	 */
+	public ZipCodeRangeSet apply(ZipCodeRangeSet base, String deltaFileName) throws IOException, ZipCodeRangeException {
+		IntervalTreeRangeReducer added = new IntervalTreeRangeReducer(use9DigitZip);
+		IntervalTreeRangeReducer removed = new IntervalTreeRangeReducer(use9DigitZip);
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(deltaFileName), StandardCharsets.US_ASCII));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				applyLine(line.trim(), added, removed);
+			}
+		} finally {
+			reader.close();
+		}
+
+		return base.subtract(ZipCodeRangeSet.fromZipCodeRanges(removed.getReducedZipCodeRanges(true)))
+				   .union(ZipCodeRangeSet.fromZipCodeRanges(added.getReducedZipCodeRanges(true)));
+	}
+
+	/**
+	 * @return the number of "+" lines applied so far
+	 */
+	public long getAddedCount() {
+		return addedCount;
+	}
+
+	/**
+	 * @return the number of "-" lines applied so far
+	 */
+	public long getRemovedCount() {
+		return removedCount;
+	}
+
+	/**
+	 * @return the number of base and change file rows skipped so far because they weren't a valid range
+	 */
+	public long getRejectedRowCount() {
+		return rejectedRowCount;
+	}
+
+	/**
+	 * A "+" moves the range to the added tree and out of the removed one, a "-" does the opposite.
+	 */
+	private void applyLine(String line, IntervalTreeRangeReducer added, IntervalTreeRangeReducer removed) {
+		if (line.isEmpty()) {
+			return;
+		}
+		char operation = line.charAt(0);
+		int comma = line.indexOf(',');
+		int lower = (comma < 0) ? -1 : ZipCodeRange.parseBound(line, 1, comma);
+		int upper = (comma < 0) ? -1 : ZipCodeRange.parseBound(line, comma + 1, line.length());
+		if ((operation != '+' && operation != '-') || !ZipCodeRange.isValidRange(lower, upper, use9DigitZip)) {
+			rejectedRowCount++;
+			return;
+		}
+		if (operation == '+') {
+			added.addRange(lower, upper);
+			removed.removeRange(lower, upper);
+			addedCount++;
+		}
+		else {
+			removed.addRange(lower, upper);
+			added.removeRange(lower, upper);
+			removedCount++;
+		}
+	}
+
+	/**
+	 * Collects merged ranges in a growing packed int[].
+	 */
+	private static final class PackedBoundsSink implements RangeSink {
+		private int [] bounds = new int [64];
+		private int length;
+
+		@Override
+		public void acceptRange(int lower, int upper) {
+			if (length == bounds.length) {
+				bounds = Arrays.copyOf(bounds, length << 1);
+			}
+			bounds[length++] = lower;
+			bounds[length++] = upper;
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+package orders;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * {@link RestrictionSource} that loads the range files of each item.
+ * <p>
+ * An item lists one file, or several joined with {@link #SOURCE_SEPARATOR} (e.g. hazmat.csv+state-ca.csv) whose
+ * restrictions all apply. Files ending in {@link #BINARY_FILE_EXTENSION} are {@link ZipCodeRangeSetFile}s and are
+ * mapped, any other file is a 2 column csv file of ranges in any order, loaded with a {@link MappedRangeFileReader}.
+ * <p>
+ * Items usually repeat a few combinations of files, so each distinct combination is reduced once per load and
+ * shared through a {@link ReductionCache}.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class RangeFileRestrictionSource implements RestrictionSource {
+
+	public static final String BINARY_FILE_EXTENSION = ".zcrs";
+	public static final String SOURCE_SEPARATOR = "+";
+
+	private final Map<String, String> fileNamesByItem;
+	private final boolean use9DigitZip;
+	private final ReductionCache cache = new ReductionCache(ShippingConfigDefaults.REDUCTION_CACHE_SIZE);
+
+	/**
+	 * @param fileNamesByItem - item ID -> range file, or files joined with SOURCE_SEPARATOR, copied
+	 * @param use9DigitZip - true when the csv files hold 9 digit (ZIP+4) zip codes
+	 */
+	public RangeFileRestrictionSource(Map<String, String> fileNamesByItem, boolean use9DigitZip) {
+		this.fileNamesByItem = new LinkedHashMap<String, String>(fileNamesByItem);
+		this.use9DigitZip = use9DigitZip;
+	}
+
+	/**
+	 * Create a source for the configured {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP} mode.
+	 * @param fileNamesByItem - item ID -> range file, or files joined with SOURCE_SEPARATOR, copied
+	 */
+	public RangeFileRestrictionSource(Map<String, String> fileNamesByItem) {
+		this(fileNamesByItem, ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+
+	/**
+	 * Load every item. The files are read again on every load, the cache only spans a single load.
+	 */
+	@Override
+	public void loadRestrictions(RestrictionStore store) throws IOException, ZipCodeRangeException {
+		cache.clear();
+		SourceSetReducer reducer = new SourceSetReducer() {
+			@Override
+			public ZipCodeRangeSet reduce(List<String> fileNames) throws IOException, ZipCodeRangeException {
+				return load(fileNames);
+			}
+		};
+		for (Map.Entry<String, String> item : fileNamesByItem.entrySet()) {
+			List<String> fileNames = Arrays.asList(item.getValue().split("\\s*\\" + SOURCE_SEPARATOR + "\\s*"));
+			store.putRestrictions(item.getKey(), cache.getReduced(fileNames, reducer));
+		}
+	}
+
+	/**
+	 * @return the cache of reduced file combinations, with its hit, miss and eviction counts
+	 */
+	public ReductionCache getReductionCache() {
+		return cache;
+	}
+
+	/**
+	 * Flag every csv file in one helper and add the mapped binary files to the reduced result.
+	 */
+	private ZipCodeRangeSet load(List<String> fileNames) throws IOException, ZipCodeRangeException {
+		ShippingHelper helper = null;
+		ZipCodeRangeSet ranges = ZipCodeRangeSet.EMPTY;
+		for (String fileName : fileNames) {
+			if (fileName.endsWith(BINARY_FILE_EXTENSION)) {
+				ranges = ranges.union(ZipCodeRangeSetFile.map(fileName).toZipCodeRangeSet());
+				continue;
+			}
+			if (helper == null) {
+				helper = new ShippingHelper(RangeReducerType.defaultType(use9DigitZip).newReducer(use9DigitZip));
+			}
+			new MappedRangeFileReader(helper, use9DigitZip).load(fileName);
+		}
+		return (helper == null) ? ranges : ranges.union(ZipCodeRangeSet.fromShippingHelper(helper));
+	}
+
+}
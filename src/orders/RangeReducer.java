@@ -0,0 +1,78 @@
+package orders;
+
+import java.util.ArrayList;
+
+/**
+ * Strategy for collecting zip code ranges and reducing them to the minimal set of ranges
+ * that represents the same restrictions.
+ * <p>
+ * Engines trade memory for speed differently, pick one per workload with {@link RangeReducerType}:
+ * <br>{@link BitmapRangeReducer} - fixed cost over the whole zip code space, best for dense items
+ * <br>{@link SortMergeRangeReducer} - O(n log n) in the number of ranges, best for sparse items
+ * <br>{@link ChunkedRangeReducer} - compressed chunks, for 9 digit (ZIP+4) zip codes
+ * <br>{@link IntervalTreeRangeReducer} - always reduced, for ranges added and removed one at a time
+ * <br>{@link AtomicBitmapRangeReducer} - writers don't block each other, for many threads flagging the same item
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public interface RangeReducer {
+
+	/**
+	 * Set the start state for every zip code in [MINIMUM_BOUND_VALUE, MAXIMUM_BOUND_VALUE].
+	 * <p>
+	 * @param startState - true flags every zip code, false clears them all
+	 */
+	void reset(boolean startState);
+
+	/**
+	 * Flag all the zip codes in [lower, upper]. Bounds are expected to be validated by the caller.
+	 * <p>
+	 * @param lower - lower bound of the range
+	 * @param upper - upper bound of the range (inclusive)
+	 */
+	void addRange(int lower, int upper);
+
+	/**
+	 * Clear all the zip codes in [lower, upper], lifting the restriction on them.
+	 * Bounds are expected to be validated by the caller.
+	 * <p>
+	 * @param lower - lower bound of the range
+	 * @param upper - upper bound of the range (inclusive)
+	 */
+	void removeRange(int lower, int upper);
+
+	/**
+	 * @param zipCode - the zip code to look up
+	 * @return true if the zip code is flagged (restricted)
+	 */
+	boolean isFlagged(int zipCode);
+
+	/**
+	 * Returns the minimal set of ranges representing the zip codes with the flag state = useFlagValue.
+	 * <p>
+	 * @param useFlagValue - true for the flagged (restricted) zip codes, false for the unrestricted ones
+	 * @return the minimal set of ranges in ascending order
+	 * @throws ZipCodeRangeException if a reduced range can't be constructed
+	 */
+	ArrayList<ZipCodeRange> getReducedZipCodeRanges(boolean useFlagValue) throws ZipCodeRangeException;
+
+	/**
+	 * @return a new, empty engine of the same type and zip code mode, e.g. a private copy for a worker thread
+	 */
+	RangeReducer newEmptyReducer();
+
+	/**
+	 * Flag every zip code flagged in other (set union). Flagging is commutative so engines filled on separate
+	 * threads can be combined in any order. Engines override this with a faster path for their own type.
+	 * <p>
+	 * @param other - engine with the zip codes to add, left unchanged
+	 * @throws ZipCodeRangeException if the ranges of other can't be reduced
+	 */
+	default void addAll(RangeReducer other) throws ZipCodeRangeException {
+		for (ZipCodeRange range : other.getReducedZipCodeRanges(true)) {
+			addRange(range.getLowerBound(), range.getUpperBound());
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package orders;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * The available {@link RangeReducer} engines.
+ * <p>
+ * BITMAP - fixed cost word packed bitmap over the whole zip code space, for dense 5 digit items
+ * <br>SORT_MERGE - sort and merge of the input ranges, for sparse items with few ranges
+ * <br>CHUNKED - compressed chunked bitmap, for 9 digit (ZIP+4) items
+ * <br>INTERVAL_TREE - always reduced tree of ranges, for items whose ranges are added and removed one at a time
+ * <br>CONCURRENT_BITMAP - atomic bitmap whose writers don't block each other, for 5 digit items flagged by many threads at once
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public enum RangeReducerType {
+
+	BITMAP {
+		@Override
+		public RangeReducer newReducer(boolean use9DigitZip) {
+			if (use9DigitZip) {
+				throw new IllegalArgumentException("The BITMAP engine only covers 5 digit zip codes. Use CHUNKED or SORT_MERGE for 9 digit zip codes.");
+			}
+			return new BitmapRangeReducer();
+		}
+	},
+
+	SORT_MERGE {
+		@Override
+		public RangeReducer newReducer(boolean use9DigitZip) {
+			return new SortMergeRangeReducer(use9DigitZip);
+		}
+	},
+
+	CHUNKED {
+		@Override
+		public RangeReducer newReducer(boolean use9DigitZip) {
+			return new ChunkedRangeReducer(use9DigitZip);
+		}
+	},
+
+	INTERVAL_TREE {
+		@Override
+		public RangeReducer newReducer(boolean use9DigitZip) {
+			return new IntervalTreeRangeReducer(use9DigitZip);
+		}
+	},
+
+	CONCURRENT_BITMAP {
+		@Override
+		public RangeReducer newReducer(boolean use9DigitZip) {
+			if (use9DigitZip) {
+				throw new IllegalArgumentException("The CONCURRENT_BITMAP engine only covers 5 digit zip codes. Use CHUNKED or SORT_MERGE for 9 digit zip codes.");
+			}
+			return new AtomicBitmapRangeReducer();
+		}
+	};
+
+	/**
+	 * @return a new, empty engine of this type for the configured {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP} mode
+	 */
+	public RangeReducer newReducer() {
+		return newReducer(ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+
+	/**
+	 * @param use9DigitZip - true for ZIP+4 codes
+	 * @return a new, empty engine of this type
+	 * @throws IllegalArgumentException if the engine doesn't support the zip code mode
+	 */
+	public abstract RangeReducer newReducer(boolean use9DigitZip);
+
+	/**
+	 * Look up an engine by name, ignoring case and surrounding whitespace. e.g. "sort_merge"
+	 * <p>
+	 * @param name - the engine name
+	 * @return the matching engine type
+	 * @throws IllegalArgumentException if no engine has that name
+	 */
+	public static RangeReducerType fromName(String name) {
+		return valueOf(name.trim().toUpperCase());
+	}
+
+	/**
+	 * @param use9DigitZip - true for ZIP+4 codes
+	 * @return CHUNKED for 9 digit zip codes, otherwise the configured {@link ShippingConfigDefaults#RANGE_REDUCER_ENGINE}
+	 */
+	public static RangeReducerType defaultType(boolean use9DigitZip) {
+		return use9DigitZip ? CHUNKED : fromName(ShippingConfigDefaults.RANGE_REDUCER_ENGINE);
+	}
+}
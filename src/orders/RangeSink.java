@@ -0,0 +1,23 @@
+package orders;
+
+import java.io.IOException;
+
+/**
+ * Receives reduced zip code ranges one at a time, in ascending order, as a producer emits them.
+ * <p>
+ * Bounds are passed as primitives so streaming producers don't have to build a {@link ZipCodeRange}
+ * object per range.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public interface RangeSink {
+
+	/**
+	 * @param lower - lower bound of the range
+	 * @param upper - upper bound of the range (inclusive)
+	 * @throws IOException if the range can't be written
+	 */
+	void acceptRange(int lower, int upper) throws IOException;
+
+}
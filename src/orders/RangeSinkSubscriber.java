@@ -0,0 +1,77 @@
+package orders;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * {@link Flow.Subscriber} that passes each range it receives to a {@link RangeSink}, e.g. a
+ * {@link ZipCodeRangeWriter} at the end of a {@link StreamingRangeReducer}.
+ * <p>
+ * Ranges are requested BATCH_SIZE at a time. {@link #getCompletion()} completes with the number of ranges passed
+ * on when the stream completes, or exceptionally with the stream's error or the sink's IOException. The sink
+ * isn't closed.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class RangeSinkSubscriber implements Flow.Subscriber<ZipCodeRange> {
+
+	private static final int BATCH_SIZE = 256;
+
+	private final RangeSink sink;
+	private final CompletableFuture<Long> completion = new CompletableFuture<Long>();
+	private Flow.Subscription subscription;
+	private long rangeCount;
+	private int pending;
+
+	/**
+	 * @param sink - receives the ranges
+	 */
+	public RangeSinkSubscriber(RangeSink sink) {
+		this.sink = sink;
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		pending = BATCH_SIZE;
+		subscription.request(BATCH_SIZE);
+	}
+
+	@Override
+	public void onNext(ZipCodeRange range) {
+		if (completion.isDone()) {
+			return;
+		}
+		try {
+			sink.acceptRange(range.getLowerBound(), range.getUpperBound());
+		} catch (IOException ex) {
+			subscription.cancel();
+			completion.completeExceptionally(ex);
+			return;
+		}
+		rangeCount++;
+		if (--pending == 0) {
+			pending = BATCH_SIZE;
+			subscription.request(BATCH_SIZE);
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		completion.completeExceptionally(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		completion.complete(Long.valueOf(rangeCount));
+	}
+
+	/**
+	 * @return completes with the number of ranges passed to the sink
+	 */
+	public CompletableFuture<Long> getCompletion() {
+		return completion;
+	}
+}
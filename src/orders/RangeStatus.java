@@ -0,0 +1,28 @@
+package orders;
+
+/**
+ * Outcome of checking one input row or pair of bounds, returned instead of throwing a {@link ZipCodeRangeException}
+ * on the bulk load paths.
+ * <p>
+ * VALID - a usable range
+ * <br>OUT_OF_BOUNDS - a bound is below the minimum or above the maximum zip code
+ * <br>INVERTED - lower bound > upper bound
+ * <br>UNPARSEABLE - the row isn't 2 comma separated numbers
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public enum RangeStatus {
+
+	VALID,
+	OUT_OF_BOUNDS,
+	INVERTED,
+	UNPARSEABLE;
+
+	/**
+	 * @return true for every status but VALID
+	 */
+	public boolean isRejected() {
+		return this != VALID;
+	}
+}
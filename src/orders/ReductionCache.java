@@ -0,0 +1,152 @@
+package orders;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Bounded cache of reduced ranges keyed by the combination of sources they were reduced from.
+ * <p>
+ * Most items combine the same few sources, e.g. "hazmat + state-X + carrier-Y", so the first item pays for the
+ * flag and reduce pass and every other item with that combination gets the same {@link ZipCodeRangeSet} back,
+ * already shared the way a {@link RestrictionStore} interns it.
+ * <p>
+ * The key is the fingerprint of the source IDs: sorted, without duplicates, so the order they're listed in
+ * doesn't matter. Past maxEntries combinations the least recently used one is evicted.
+ * <p>
+ * Thread safe. Two threads missing on the same combination at once may both reduce it, the last one is kept.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class ReductionCache {
+
+	private final int maxEntries;
+	private final LinkedHashMap<String, ZipCodeRangeSet> reducedBySources;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	/**
+	 * @param maxEntries - number of combinations kept, at least 1
+	 * @throws IllegalArgumentException if maxEntries < 1
+	 */
+	public ReductionCache(int maxEntries) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be at least 1, was " + maxEntries);
+		}
+		this.maxEntries = maxEntries;
+		this.reducedBySources = new LinkedHashMap<String, ZipCodeRangeSet>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ZipCodeRangeSet> eldest) {
+				if (size() > ReductionCache.this.maxEntries) {
+					evictionCount++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @param sourceIds - source IDs in any order, duplicates allowed
+	 * @return the sorted, distinct source IDs
+	 */
+	static List<String> canonicalSources(Collection<String> sourceIds) {
+		return Collections.unmodifiableList(new ArrayList<String>(new TreeSet<String>(sourceIds)));
+	}
+
+	/**
+	 * @param sourceIds - source IDs in any order, duplicates allowed
+	 * @return a key that's the same for any listing of the same sources
+	 */
+	public static String fingerprint(Collection<String> sourceIds) {
+		StringBuilder fingerprint = new StringBuilder();
+		for (String sourceId : canonicalSources(sourceIds)) {
+			// length prefixed so no source ID can run into the next one
+			fingerprint.append(sourceId.length()).append(':').append(sourceId);
+		}
+		return fingerprint.toString();
+	}
+
+	/**
+	 * Return the cached ranges of a combination of sources, reducing them on a miss.
+	 * <p>
+	 * @param sourceIds - the sources to combine, in any order
+	 * @param reducer - computes the ranges on a miss, called without holding the cache lock
+	 * @return the reduced ranges of the combination
+	 * @throws IOException if the reducer can't read a source
+	 * @throws ZipCodeRangeException if the reducer can't reduce the ranges
+	 */
+	public ZipCodeRangeSet getReduced(Collection<String> sourceIds, SourceSetReducer reducer) throws IOException, ZipCodeRangeException {
+		String key = fingerprint(sourceIds);
+		synchronized (this) {
+			ZipCodeRangeSet cached = reducedBySources.get(key);
+			if (cached != null) {
+				hitCount++;
+				return cached;
+			}
+			missCount++;
+		}
+		ZipCodeRangeSet reduced = reducer.reduce(canonicalSources(sourceIds));
+		synchronized (this) {
+			reducedBySources.put(key, reduced);
+		}
+		return reduced;
+	}
+
+	/**
+	 * Drop every cached combination, e.g. when the sources change. The statistics are kept.
+	 */
+	public synchronized void clear() {
+		reducedBySources.clear();
+	}
+
+	/**
+	 * @return the number of combinations cached
+	 */
+	public synchronized int size() {
+		return reducedBySources.size();
+	}
+
+	/**
+	 * @return the number of lookups answered from the cache
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return the number of lookups that had to reduce their sources
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return the number of combinations dropped to stay within maxEntries
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @return hits per lookup, 0 before the first lookup
+	 */
+	public synchronized double getHitRatio() {
+		long lookups = hitCount + missCount;
+		return (lookups == 0) ? 0 : (double) hitCount / lookups;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "hits=" + hitCount + " misses=" + missCount + " evictions=" + evictionCount + " size=" + reducedBySources.size();
+	}
+}
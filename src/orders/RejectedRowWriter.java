@@ -0,0 +1,107 @@
+package orders;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Side file for the rows a bulk loader rejects, one "STATUS,row" line per row, e.g. "INVERTED,10000,5000".
+ * <p>
+ * Rows are copied into a 64 KB batch and written through a {@link FileChannel} when the batch fills up or
+ * the writer is closed. Loaders running on several threads can share one writer, rows are then written in
+ * no particular order.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class RejectedRowWriter implements Closeable {
+
+	private static final int BATCH_SIZE = 1 << 16;
+
+	private static final byte [][] STATUS_PREFIXES = new byte [RangeStatus.values().length][];
+	static {
+		for (RangeStatus status : RangeStatus.values()) {
+			STATUS_PREFIXES[status.ordinal()] = (status.name() + ",").getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	private final FileChannel channel;
+	private final ByteBuffer batch = ByteBuffer.allocate(BATCH_SIZE);
+	private long rowCount;
+
+	/**
+	 * @param fileName - the reject file, replaced if it exists
+	 * @throws IOException if the file can't be opened
+	 */
+	public RejectedRowWriter(String fileName) throws IOException {
+		channel = new FileOutputStream(fileName).getChannel();
+	}
+
+	/**
+	 * Add the row bytes [from, to) of source to the batch. A trailing \r is dropped.
+	 * <p>
+	 * @param status - why the row was rejected
+	 * @param source - buffer holding the row, its position and limit aren't changed
+	 * @param from - first byte of the row
+	 * @param to - first byte past the row, not including the \n
+	 * @throws IOException if a full batch can't be written
+	 */
+	public synchronized void writeRow(RangeStatus status, ByteBuffer source, int from, int to) throws IOException {
+		if (to > from && source.get(to - 1) == '\r') {
+			to--;
+		}
+		byte [] prefix = STATUS_PREFIXES[status.ordinal()];
+		int size = prefix.length + (to - from) + 1;
+		if (batch.remaining() < size) {
+			flush();
+		}
+		ByteBuffer row = source.duplicate();
+		row.limit(to);
+		row.position(from);
+		if (batch.remaining() < size) {
+			write(ByteBuffer.wrap(prefix));
+			write(row);
+			write(ByteBuffer.wrap(new byte [] {'\n'}));
+		}
+		else {
+			batch.put(prefix).put(row).put((byte) '\n');
+		}
+		rowCount++;
+	}
+
+	/**
+	 * @return the number of rows written so far
+	 */
+	public synchronized long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Write out the current batch.
+	 * @throws IOException if the batch can't be written
+	 */
+	public synchronized void flush() throws IOException {
+		batch.flip();
+		write(batch);
+		batch.clear();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+}
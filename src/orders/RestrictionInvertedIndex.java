@@ -0,0 +1,288 @@
+package orders;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transposed view of many items' restrictions: for a zip code, which items can't ship there.
+ * <p>
+ * Items are numbered 0 to itemCount - 1 and every item's reduced ranges are swept together. Each distinct bound
+ * (a lower bound, or an upper bound + 1) starts an interval in which the same items are restricted. Neighbouring
+ * intervals differ by a few items, so an interval only keeps the numbers of the items that changed at its start,
+ * and a full {@link BitSet} of the restricted items is kept as a checkpoint every time about itemCount / 16 items
+ * have changed since the last one. Memory is O(B) for B bounds in total instead of itemCount / 8 bytes per
+ * interval.
+ * <p>
+ * A query is a binary search over the interval starts, O(log intervals), then a copy of the closest checkpoint
+ * and the replay of at most itemCount / 16 changes. The answer is ANDed with the caller's candidates, e.g. the
+ * 500 items of a search page, instead of checking each candidate's ranges in turn.
+ * <p>
+ * The index is immutable and safe to share between threads.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public final class RestrictionInvertedIndex {
+
+	private static final int MIN_CHECKPOINT_CHANGES = 64;
+
+	private final List<String> itemIds;
+	private final Map<String, Integer> itemNumbers;
+
+	/**
+	 * First zip code of each interval, ascending.
+	 */
+	private final int [] starts;
+
+	/**
+	 * The items that changed at the start of interval i are changes[changeOffsets[i], changeOffsets[i + 1]).
+	 */
+	private final int [] changeOffsets;
+	private final int [] changes;
+
+	/**
+	 * The words of the restricted items of interval checkpointIntervals[c], ascending intervals, the first one is 0.
+	 */
+	private final int [] checkpointIntervals;
+	private final long [][] checkpoints;
+
+	private RestrictionInvertedIndex(List<String> itemIds, int [] starts, int [] changeOffsets, int [] changes,
+									 int [] checkpointIntervals, long [][] checkpoints) {
+		this.itemIds = itemIds;
+		this.itemNumbers = new HashMap<String, Integer>(itemIds.size() * 2);
+		for (int i = 0; i < itemIds.size(); i++) {
+			itemNumbers.put(itemIds.get(i), Integer.valueOf(i));
+		}
+		this.starts = starts;
+		this.changeOffsets = changeOffsets;
+		this.changes = changes;
+		this.checkpointIntervals = checkpointIntervals;
+		this.checkpoints = checkpoints;
+	}
+
+	/**
+	 * Index every item of a store, numbered in item ID order.
+	 * <p>
+	 * @param store - the catalog's restrictions
+	 * @return the index
+	 */
+	public static RestrictionInvertedIndex build(RestrictionStore store) {
+		String [] ids = store.getItemIds().toArray(new String [0]);
+		Arrays.sort(ids);
+		Map<String, ZipCodeRangeSet> restrictionsByItem = new LinkedHashMap<String, ZipCodeRangeSet>();
+		for (String id : ids) {
+			restrictionsByItem.put(id, store.getRestrictions(id));
+		}
+		return build(restrictionsByItem);
+	}
+
+	/**
+	 * Index the items of a map, numbered in its iteration order. Use a LinkedHashMap to number them in catalog order.
+	 * <br>Sweeps all the bounds at once, O(B log B) for B bounds in total.
+	 * <p>
+	 * @param restrictionsByItem - reduced restrictions per item ID
+	 * @return the index
+	 */
+	public static RestrictionInvertedIndex build(Map<String, ZipCodeRangeSet> restrictionsByItem) {
+		List<String> itemIds = new ArrayList<String>(restrictionsByItem.keySet());
+
+		// one event per bound: (zip code << 32) | (item << 1) | 1 for a start, 0 for an end (upper + 1)
+		int eventCount = 0;
+		for (ZipCodeRangeSet ranges : restrictionsByItem.values()) {
+			eventCount += ranges.size() << 1;
+		}
+		long [] events = new long [eventCount];
+		int e = 0;
+		int item = 0;
+		for (ZipCodeRangeSet ranges : restrictionsByItem.values()) {
+			for (int i = 0; i < ranges.size(); i++) {
+				events[e++] = ((long) ranges.getLowerBound(i) << 32) | ((long) item << 1) | 1;
+				events[e++] = (((long) ranges.getUpperBound(i) + 1) << 32) | ((long) item << 1);
+			}
+			item++;
+		}
+		Arrays.sort(events);
+
+		int checkpointChanges = Math.max(MIN_CHECKPOINT_CHANGES, itemIds.size() >>> 4);
+		int [] starts = new int [eventCount];
+		int [] changeOffsets = new int [eventCount + 1];
+		int [] changes = new int [eventCount];
+		int [] checkpointIntervals = new int [8];
+		long [][] checkpoints = new long [8][];
+		int intervals = 0;
+		int changeCount = 0;
+		int checkpointCount = 0;
+		int changesSinceCheckpoint = 0;
+		BitSet active = new BitSet(itemIds.size());
+		for (int i = 0; i < eventCount; ) {
+			int zipCode = (int) (events[i] >>> 32);
+			int firstChange = changeCount;
+			// apply every change at this zip code before recording the interval it starts
+			while (i < eventCount && (int) (events[i] >>> 32) == zipCode) {
+				int number = (int) events[i] >>> 1;
+				boolean restricted = (events[i] & 1) != 0;
+				if (active.get(number) != restricted) {
+					active.set(number, restricted);
+					changes[changeCount++] = number;
+				}
+				i++;
+			}
+			if (changeCount == firstChange) {
+				continue;
+			}
+			starts[intervals] = zipCode;
+			changeOffsets[intervals + 1] = changeCount;
+			changesSinceCheckpoint += changeCount - firstChange;
+			if (intervals == 0 || changesSinceCheckpoint >= checkpointChanges) {
+				if (checkpointCount == checkpoints.length) {
+					checkpointIntervals = Arrays.copyOf(checkpointIntervals, checkpointCount << 1);
+					checkpoints = Arrays.copyOf(checkpoints, checkpointCount << 1);
+				}
+				checkpointIntervals[checkpointCount] = intervals;
+				checkpoints[checkpointCount++] = active.toLongArray();
+				changesSinceCheckpoint = 0;
+			}
+			intervals++;
+		}
+		return new RestrictionInvertedIndex(itemIds, Arrays.copyOf(starts, intervals), Arrays.copyOf(changeOffsets, intervals + 1),
+											Arrays.copyOf(changes, changeCount), Arrays.copyOf(checkpointIntervals, checkpointCount),
+											Arrays.copyOf(checkpoints, checkpointCount));
+	}
+
+	/**
+	 * @param zipCode - the shopper's zip code
+	 * @return a new set of the numbers of the items restricted at the zip code
+	 */
+	BitSet restrictedItemsAt(int zipCode) {
+		int interval = floorIndex(starts, starts.length, zipCode);
+		if (interval < 0) {
+			return new BitSet();
+		}
+		int checkpoint = floorIndex(checkpointIntervals, checkpointIntervals.length, interval);
+		BitSet restricted = BitSet.valueOf(checkpoints[checkpoint]);
+		for (int i = changeOffsets[checkpointIntervals[checkpoint] + 1]; i < changeOffsets[interval + 1]; i++) {
+			restricted.flip(changes[i]);
+		}
+		return restricted;
+	}
+
+	/**
+	 * @return index of the last of the ascending values [0, length) that is <= key, -1 if there isn't one
+	 */
+	private static int floorIndex(int [] values, int length, int key) {
+		int low = 0;
+		int high = length - 1;
+		int index = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (values[middle] <= key) {
+				index = middle;
+				low = middle + 1;
+			}
+			else {
+				high = middle - 1;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * @param zipCode - the shopper's zip code
+	 * @return the numbers of every item restricted at the zip code
+	 */
+	public BitSet getRestrictedItems(int zipCode) {
+		return restrictedItemsAt(zipCode);
+	}
+
+	/**
+	 * @param zipCode - the shopper's zip code
+	 * @param candidates - numbers of the items to check, left unchanged
+	 * @return the candidates that can't ship to the zip code
+	 */
+	public BitSet getRestrictedCandidates(int zipCode, BitSet candidates) {
+		BitSet restricted = restrictedItemsAt(zipCode);
+		restricted.and(candidates);
+		return restricted;
+	}
+
+	/**
+	 * @param zipCode - the shopper's zip code
+	 * @param candidates - numbers of the items to check, left unchanged
+	 * @return the candidates that can ship to the zip code
+	 */
+	public BitSet getShippableCandidates(int zipCode, BitSet candidates) {
+		BitSet shippable = (BitSet) candidates.clone();
+		shippable.andNot(restrictedItemsAt(zipCode));
+		return shippable;
+	}
+
+	/**
+	 * @param itemIds - item IDs, unknown IDs are skipped
+	 * @return the numbers of the items, to use as candidates
+	 */
+	public BitSet toItemNumbers(Collection<String> itemIds) {
+		BitSet numbers = new BitSet(this.itemIds.size());
+		for (String itemId : itemIds) {
+			Integer number = itemNumbers.get(itemId);
+			if (number != null) {
+				numbers.set(number.intValue());
+			}
+		}
+		return numbers;
+	}
+
+	/**
+	 * @param itemId - item ID
+	 * @return the number of the item in the index, -1 if it isn't indexed
+	 */
+	public int getItemNumber(String itemId) {
+		Integer number = itemNumbers.get(itemId);
+		return (number == null) ? -1 : number.intValue();
+	}
+
+	/**
+	 * @param itemNumber - number of an item, in [0, getItemCount())
+	 * @return the item ID
+	 */
+	public String getItemId(int itemNumber) {
+		return itemIds.get(itemNumber);
+	}
+
+	/**
+	 * @return the number of items indexed
+	 */
+	public int getItemCount() {
+		return itemIds.size();
+	}
+
+	/**
+	 * @return the number of intervals with a different set of restricted items
+	 */
+	public int getIntervalCount() {
+		return starts.length;
+	}
+
+	/**
+	 * @return the number of full sets of restricted items kept as checkpoints
+	 */
+	public int getCheckpointCount() {
+		return checkpoints.length;
+	}
+
+	/**
+	 * @return approximate size of the intervals, changes and checkpoints in bytes
+	 */
+	public long getMemorySize() {
+		long size = 4L * (starts.length + changeOffsets.length + changes.length + checkpointIntervals.length);
+		for (long [] checkpoint : checkpoints) {
+			size += 8L * checkpoint.length;
+		}
+		return size;
+	}
+}
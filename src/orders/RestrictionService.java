@@ -0,0 +1,148 @@
+package orders;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lookup service over the current {@link RestrictionSnapshot}, reloaded in the background under full traffic.
+ * <p>
+ * A reload fills a brand new {@link RestrictionStore} from a {@link RestrictionSource} on the reload executor
+ * and publishes it with a single atomic reference swap. Readers take the current snapshot with one volatile
+ * read, never block and never see a half built store. The old snapshot stays valid for the readers still
+ * holding it and is garbage collected after them.
+ * <p>
+ * Every reload gets its version when it starts. A reload that finishes after a newer one doesn't replace
+ * it, so the versions a reader sees only go up. A failed reload leaves the current snapshot in place.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class RestrictionService {
+
+	private final AtomicReference<RestrictionSnapshot> current = new AtomicReference<RestrictionSnapshot>(RestrictionSnapshot.EMPTY);
+	private final AtomicLong nextVersion = new AtomicLong();
+	private final AtomicReference<Exception> lastReloadFailure = new AtomicReference<Exception>();
+	private final Executor reloadExecutor;
+
+	/**
+	 * @param reloadExecutor - runs the reloads, e.g. a single thread executor
+	 */
+	public RestrictionService(Executor reloadExecutor) {
+		this.reloadExecutor = reloadExecutor;
+	}
+
+	/**
+	 * Take the current snapshot, e.g. to answer several lookups for one order from the same version.
+	 * @return the current snapshot, {@link RestrictionSnapshot#EMPTY} until the first one is published
+	 */
+	public RestrictionSnapshot getSnapshot() {
+		return current.get();
+	}
+
+	/**
+	 * @param itemId - catalog item (SKU) identifier
+	 * @param zipCode - destination zip code
+	 * @return true if the item can't be shipped to the zip code in the current snapshot
+	 */
+	public boolean isRestricted(String itemId, int zipCode) {
+		return current.get().isRestricted(itemId, zipCode);
+	}
+
+	/**
+	 * @param itemId - catalog item (SKU) identifier
+	 * @param zipCodes - destination zip codes, sorted ascending for the fastest lookup
+	 * @return bit i is set when the item can't be shipped to zipCodes[i] in the current snapshot
+	 */
+	public BitSet isRestricted(String itemId, int [] zipCodes) {
+		return current.get().isRestricted(itemId, zipCodes);
+	}
+
+	/**
+	 * Publish a store filled by the caller. The store must not be changed after this call.
+	 * <p>
+	 * @param store - the new restrictions
+	 * @return the published snapshot
+	 */
+	public RestrictionSnapshot publish(RestrictionStore store) {
+		return publish(new RestrictionSnapshot(nextVersion.incrementAndGet(), store));
+	}
+
+	/**
+	 * Load the restrictions on the reload executor and publish them.
+	 * <p>
+	 * @param source - where the restrictions are loaded from
+	 * @return completes with the current snapshot once the reload is published (or superseded by a newer one),
+	 * or exceptionally with the exception that failed it, which is also kept in {@link #getLastReloadFailure()}
+	 */
+	public CompletableFuture<RestrictionSnapshot> reload(final RestrictionSource source) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return load(source);
+			} catch (IOException | ZipCodeRangeException | RuntimeException ex) {
+				lastReloadFailure.set(ex);
+				throw new CompletionException(ex);
+			}
+		}, reloadExecutor);
+	}
+
+	/**
+	 * Reload the restrictions every period on the scheduler thread, starting after the initial delay. Failed
+	 * reloads are kept in {@link #getLastReloadFailure()} and don't stop the schedule.
+	 * <p>
+	 * @param scheduler - runs the reloads
+	 * @param source - where the restrictions are loaded from
+	 * @param initialDelay - delay before the first reload, pass the period if the restrictions were just loaded
+	 * @param period - delay between the end of a reload and the start of the next one
+	 * @param unit - unit of initialDelay and period
+	 * @return cancel it to stop reloading
+	 */
+	public ScheduledFuture<?> scheduleReloads(ScheduledExecutorService scheduler, final RestrictionSource source, long initialDelay, long period,
+			TimeUnit unit) {
+		return scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				load(source);
+			} catch (IOException | ZipCodeRangeException | RuntimeException ex) {
+				lastReloadFailure.set(ex);
+			}
+		}, initialDelay, period, unit);
+	}
+
+	/**
+	 * @return the exception of the last failed reload, null if none failed
+	 */
+	public Exception getLastReloadFailure() {
+		return lastReloadFailure.get();
+	}
+
+	private RestrictionSnapshot load(RestrictionSource source) throws IOException, ZipCodeRangeException {
+		long version = nextVersion.incrementAndGet();
+		RestrictionStore store = new RestrictionStore();
+		source.loadRestrictions(store);
+		return publish(new RestrictionSnapshot(version, store));
+	}
+
+	/**
+	 * Swap in the snapshot unless a newer one was published in the meantime.
+	 * @return the snapshot current after the swap
+	 */
+	private RestrictionSnapshot publish(RestrictionSnapshot snapshot) {
+		while (true) {
+			RestrictionSnapshot previous = current.get();
+			if (previous.getVersion() > snapshot.getVersion()) {
+				return previous;
+			}
+			if (current.compareAndSet(previous, snapshot)) {
+				return snapshot;
+			}
+		}
+	}
+
+}
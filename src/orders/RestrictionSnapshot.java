@@ -0,0 +1,78 @@
+package orders;
+
+import java.util.BitSet;
+
+/**
+ * Read only, versioned view of a {@link RestrictionStore} published by a {@link RestrictionService}.
+ * <p>
+ * The store is filled before the snapshot is created and never changed after, so any number of threads can
+ * look up restrictions without locking. A snapshot that is no longer current is garbage collected once the
+ * last reader drops it.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public final class RestrictionSnapshot {
+
+	public static final RestrictionSnapshot EMPTY = new RestrictionSnapshot(0, new RestrictionStore());
+
+	private final long version;
+	private final RestrictionStore store;
+
+	/**
+	 * @param version - increases with every snapshot published by a service
+	 * @param store - the restrictions, not to be changed once the snapshot is created
+	 */
+	RestrictionSnapshot(long version, RestrictionStore store) {
+		this.version = version;
+		this.store = store;
+	}
+
+	/**
+	 * @return the version of the restrictions, 0 until the first snapshot is published
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @param itemId - catalog item (SKU) identifier
+	 * @return the item's restrictions, {@link ZipCodeRangeSet#EMPTY} if the item has none
+	 */
+	public ZipCodeRangeSet getRestrictions(String itemId) {
+		return store.getRestrictions(itemId);
+	}
+
+	/**
+	 * @param itemId - catalog item (SKU) identifier
+	 * @param zipCode - destination zip code
+	 * @return true if the item can't be shipped to the zip code
+	 */
+	public boolean isRestricted(String itemId, int zipCode) {
+		return store.isRestricted(itemId, zipCode);
+	}
+
+	/**
+	 * @param itemId - catalog item (SKU) identifier
+	 * @param zipCodes - destination zip codes, sorted ascending for the fastest lookup
+	 * @return bit i is set when the item can't be shipped to zipCodes[i]
+	 */
+	public BitSet isRestricted(String itemId, int [] zipCodes) {
+		return store.isRestricted(itemId, zipCodes);
+	}
+
+	/**
+	 * @return the number of items with restrictions
+	 */
+	public int getItemCount() {
+		return store.getItemCount();
+	}
+
+	/**
+	 * @return the number of distinct restriction profiles shared by the items
+	 */
+	public int getProfileCount() {
+		return store.getProfileCount();
+	}
+
+}
@@ -0,0 +1,23 @@
+package orders;
+
+import java.io.IOException;
+
+/**
+ * Where a {@link RestrictionService} reloads the catalog restrictions from, e.g. the reduced output of the
+ * Driver or a set of {@link ZipCodeRangeSetFile}s.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public interface RestrictionSource {
+
+	/**
+	 * Put every item's restrictions in a new, empty store. Called on a reload thread, the store isn't shared
+	 * until this returns.
+	 * <p>
+	 * @param store - the store to fill
+	 * @throws IOException if the restrictions can't be read
+	 * @throws ZipCodeRangeException if the restrictions can't be reduced
+	 */
+	void loadRestrictions(RestrictionStore store) throws IOException, ZipCodeRangeException;
+}
@@ -0,0 +1,141 @@
+package orders;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Catalog wide map of item IDs to their reduced restrictions.
+ * <p>
+ * Most items share one of a few hundred restriction profiles, so every {@link ZipCodeRangeSet} is interned:
+ * identical sets (same content hash and bounds) are stored once and shared by all the items that use them.
+ * Memory is the distinct profiles plus one reference per item. A profile is dropped when its last item is
+ * removed or gets new restrictions.
+ * <p>
+ * Not thread safe, build it on one thread and then publish it, e.g. with {@link RestrictionService#publish(RestrictionStore)}.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class RestrictionStore {
+
+	/**
+	 * An interned set and the number of items that reference it.
+	 */
+	private static final class Profile {
+		private final ZipCodeRangeSet ranges;
+		private int itemCount;
+
+		private Profile(ZipCodeRangeSet ranges) {
+			this.ranges = ranges;
+		}
+	}
+
+	private final HashMap<String, ZipCodeRangeSet> restrictionsByItem = new HashMap<String, ZipCodeRangeSet>();
+	private final HashMap<ZipCodeRangeSet, Profile> profiles = new HashMap<ZipCodeRangeSet, Profile>();
+
+	/**
+	 * Set an item's restrictions, replacing any it had.
+	 * <p>
+	 * @param itemId - catalog item (SKU) identifier
+	 * @param ranges - the item's reduced restrictions
+	 * @return the interned set now referenced by the item
+	 */
+	public ZipCodeRangeSet putRestrictions(String itemId, ZipCodeRangeSet ranges) {
+		Profile profile = profiles.get(ranges);
+		if (profile == null) {
+			profile = new Profile(ranges);
+			profiles.put(ranges, profile);
+		}
+		profile.itemCount++;
+
+		release(restrictionsByItem.put(itemId, profile.ranges));
+		return profile.ranges;
+	}
+
+	/**
+	 * Set an item's restrictions to the ranges flagged in a helper, replacing any it had.
+	 * <p>
+	 * @param itemId - catalog item (SKU) identifier
+	 * @param helper - helper holding the item's flagged ranges
+	 * @return the interned set now referenced by the item
+	 * @throws ZipCodeRangeException if the helper can't reduce its ranges
+	 */
+	public ZipCodeRangeSet putRestrictions(String itemId, ShippingHelper helper) throws ZipCodeRangeException {
+		return putRestrictions(itemId, ZipCodeRangeSet.fromShippingHelper(helper));
+	}
+
+	/**
+	 * @param itemId - catalog item (SKU) identifier
+	 * @return the item's restrictions, {@link ZipCodeRangeSet#EMPTY} if the item has none
+	 */
+	public ZipCodeRangeSet getRestrictions(String itemId) {
+		ZipCodeRangeSet ranges = restrictionsByItem.get(itemId);
+		return (ranges == null) ? ZipCodeRangeSet.EMPTY : ranges;
+	}
+
+	/**
+	 * @param itemId - catalog item (SKU) identifier
+	 * @param zipCode - destination zip code
+	 * @return true if the item can't be shipped to the zip code
+	 */
+	public boolean isRestricted(String itemId, int zipCode) {
+		return getRestrictions(itemId).isRestricted(zipCode);
+	}
+
+	/**
+	 * @param itemId - catalog item (SKU) identifier
+	 * @param zipCodes - destination zip codes, sorted ascending for the fastest lookup
+	 * @return bit i is set when the item can't be shipped to zipCodes[i]
+	 * @see ZipCodeRangeSet#isRestricted(int[])
+	 */
+	public BitSet isRestricted(String itemId, int [] zipCodes) {
+		return getRestrictions(itemId).isRestricted(zipCodes);
+	}
+
+	/**
+	 * @param itemId - catalog item (SKU) identifier
+	 * @return the restrictions the item had, null if it had none
+	 */
+	public ZipCodeRangeSet removeRestrictions(String itemId) {
+		ZipCodeRangeSet removed = restrictionsByItem.remove(itemId);
+		release(removed);
+		return removed;
+	}
+
+	/**
+	 * @return a read only view of the IDs of the items with restrictions
+	 */
+	public Set<String> getItemIds() {
+		return Collections.unmodifiableSet(restrictionsByItem.keySet());
+	}
+
+	/**
+	 * @return the number of items with restrictions
+	 */
+	public int getItemCount() {
+		return restrictionsByItem.size();
+	}
+
+	/**
+	 * @return the number of distinct restriction profiles shared by the items
+	 */
+	public int getProfileCount() {
+		return profiles.size();
+	}
+
+	/**
+	 * Drop one item's reference to a profile, and the profile with it if no other item uses it.
+	 */
+	private void release(ZipCodeRangeSet ranges) {
+		if (ranges == null) {
+			return;
+		}
+		Profile profile = profiles.get(ranges);
+		if (--profile.itemCount == 0) {
+			profiles.remove(ranges);
+		}
+	}
+
+}
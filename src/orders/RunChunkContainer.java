@@ -0,0 +1,178 @@
+package orders;
+
+import java.util.Arrays;
+
+/**
+ * {@link ChunkContainer} that keeps the flagged values as sorted, disjoint and non adjacent [start, end] runs.
+ * 4 bytes per range whatever its width, which beats the other layouts for the wide ranges carriers send.
+ * <br>Switches to a {@link BitmapChunkContainer} when it would hold more than 2048 runs (8 KB).
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+final class RunChunkContainer extends ChunkContainer {
+
+	static final int MAX_RUNS = 2048;
+
+	/**
+	 * Packed runs [start0, end0, start1, end1, ...]
+	 */
+	private char [] runs = new char [4];
+	private int runCount;
+	private int cardinality;
+
+	/**
+	 * @return a container with every value [0, 65535] flagged
+	 */
+	static RunChunkContainer full() {
+		RunChunkContainer container = new RunChunkContainer();
+		container.addRange(0, MAX_VALUE);
+		return container;
+	}
+
+	@Override
+	ChunkContainer addRange(int lower, int upper) {
+		int first = indexOfFirstRunEndingAtOrAfter(lower - 1);
+		int last = first;
+		while (last < runCount && start(last) <= upper + 1) {
+			last++;
+		}
+		if (first < last) {
+			lower = Math.min(lower, start(first));
+			upper = Math.max(upper, end(last - 1));
+		}
+
+		int newCount = runCount - (last - first) + 1;
+		if (newCount > MAX_RUNS) {
+			return toBitmapContainer().addRange(lower, upper);
+		}
+		cardinality += upper - lower + 1 - width(first, last);
+		if (newCount << 1 > runs.length) {
+			runs = Arrays.copyOf(runs, Math.max(newCount << 1, runs.length << 1));
+		}
+		System.arraycopy(runs, last << 1, runs, (first + 1) << 1, (runCount - last) << 1);
+		runs[first << 1] = (char) lower;
+		runs[(first << 1) + 1] = (char) upper;
+		runCount = newCount;
+		return this;
+	}
+
+	@Override
+	ChunkContainer removeRange(int lower, int upper) {
+		int first = indexOfFirstRunEndingAtOrAfter(lower);
+		int last = first;
+		while (last < runCount && start(last) <= upper) {
+			last++;
+		}
+		if (first == last) {
+			return this;
+		}
+
+		int headStart = start(first);
+		int tailEnd = end(last - 1);
+		int pieces = ((headStart < lower) ? 1 : 0) + ((tailEnd > upper) ? 1 : 0);
+		int newCount = runCount - (last - first) + pieces;
+		if (newCount > MAX_RUNS) {
+			return toBitmapContainer().removeRange(lower, upper);
+		}
+		cardinality -= width(first, last) - Math.max(lower - headStart, 0) - Math.max(tailEnd - upper, 0);
+		if (newCount << 1 > runs.length) {
+			runs = Arrays.copyOf(runs, runs.length << 1);
+		}
+		System.arraycopy(runs, last << 1, runs, (first + pieces) << 1, (runCount - last) << 1);
+		int index = first << 1;
+		if (headStart < lower) {
+			runs[index++] = (char) headStart;
+			runs[index++] = (char) (lower - 1);
+		}
+		if (tailEnd > upper) {
+			runs[index++] = (char) (upper + 1);
+			runs[index++] = (char) tailEnd;
+		}
+		runCount = newCount;
+		return (runCount == 0) ? null : this;
+	}
+
+	@Override
+	int cardinality() {
+		return cardinality;
+	}
+
+	/**
+	 * @return the number of values in the runs [first, last)
+	 */
+	private int width(int first, int last) {
+		int width = 0;
+		for (int i = first; i < last; i++) {
+			width += end(i) - start(i) + 1;
+		}
+		return width;
+	}
+
+	@Override
+	int runCount() {
+		return runCount;
+	}
+
+	/**
+	 * @param runs - packed sorted, disjoint and non adjacent runs [start0, end0, ...], at most MAX_RUNS
+	 * @return a run container with the runs
+	 */
+	static RunChunkContainer fromRuns(int [] runs) {
+		RunChunkContainer container = new RunChunkContainer();
+		container.runs = new char [Math.max(runs.length, 4)];
+		for (int i = 0; i < runs.length; i++) {
+			container.runs[i] = (char) runs[i];
+		}
+		container.runCount = runs.length >> 1;
+		container.cardinality = container.width(0, container.runCount);
+		return container;
+	}
+
+	@Override
+	boolean contains(int value) {
+		int index = indexOfFirstRunEndingAtOrAfter(value);
+		return index < runCount && start(index) <= value;
+	}
+
+	@Override
+	int [] toRuns() {
+		int [] packed = new int [runCount << 1];
+		for (int i = 0; i < packed.length; i++) {
+			packed[i] = runs[i];
+		}
+		return packed;
+	}
+
+	/**
+	 * @param value - value to look for
+	 * @return index of the first run with end >= value, runCount if there isn't one
+	 */
+	private int indexOfFirstRunEndingAtOrAfter(int value) {
+		int low = 0;
+		int high = runCount;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (end(mid) < value) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int start(int index) {
+		return runs[index << 1];
+	}
+
+	private int end(int index) {
+		return runs[(index << 1) + 1];
+	}
+
+	private ChunkContainer toBitmapContainer() {
+		return BitmapChunkContainer.fromRuns(toRuns());
+	}
+
+}
@@ -1,72 +1,124 @@
 package orders;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import config.ShippingConfigDefaults;
 /**
  * This is a supporting class for common tasks and data management that pertain to
  * order fulfillment. 
  * <p>
+ * A helper is as thread safe as its engine. Only the {@link RangeReducerType#CONCURRENT_BITMAP} engine can be
+ * shared by threads flagging ranges at the same time, the others need a helper per thread
+ * (see {@link #newEmptyCopy()} and {@link #setFlagForZipCodesInHelper(ShippingHelper)}).
+ * <p>
+ * Flagging and reducing are timed as the FLAG and REDUCE phases of the {@link PipelineMetrics} when they're enabled.
+ * <p>
  * @author Julie Sampson
  *
  */
 public class ShippingHelper {
 
 	/** 
-	 * The set of all possible zip code values for a 5 digit number.
-	 * <br>The element at index[zip_code_value] reflects the restricted status of a zip code for an item.
+	 * The engine that tracks the restricted status of each zip code for an item and reduces them to ranges.
 	**/
-	private boolean [] zipCodesInRanges;
+	private final RangeReducer zipCodesInRanges;
+
+	private static final PipelineMetrics METRICS = PipelineMetrics.getInstance();
 	
 	/**
-	 * int maxNumberOfZipCodes is all the 5 digit positive integers or 99999. Declared final, do not change.
+	 * Use defaults {@link ShippingConfigDefaults} to pick the engine that tracks the set of all 5 digit
+	 * (or 9 digit when USE_9_DIGIT_ZIP is set) zip codes.
+	 * 
+	 * <br>An item can have multiple geographic restrictions originating from multiple sources.
 	 */
-	private static final int maxNumberOfZipCodes = ShippingConfigDefaults.MAX_NUMBER_OF_ZIP_CODES;
+	public ShippingHelper() {
+		this(RangeReducerType.defaultType(ShippingConfigDefaults.USE_9_DIGIT_ZIP).newReducer());
+	}
 	
 	/**
-	 * Use defaults {@link ShippingConfigDefaults} to create a linear boolean array[99999 + 1] which serves as
-	 * a 1-1 map to the set of all 5 digit zip codes and a discarded index[0]. 
+	 * Use the passed in engine to track the restricted zip codes. Pick it per workload:
+	 * <br>{@link RangeReducerType#BITMAP} for dense items with many or wide ranges
+	 * <br>{@link RangeReducerType#SORT_MERGE} for sparse items with a handful of ranges
+	 * <br>{@link RangeReducerType#CHUNKED} for 9 digit (ZIP+4) zip codes
+	 * <br>{@link RangeReducerType#INTERVAL_TREE} for ranges added and removed one at a time
+	 * <br>{@link RangeReducerType#CONCURRENT_BITMAP} for ranges flagged by many threads at once
 	 * 
-	 * <br>The array element at [zip code] is a boolean flag indicating if the zip code is restricted for a given item.  
-	 * An item can have multiple geographic restrictions originating from multiple sources.
+	 * @param reducer - an engine created with {@link RangeReducerType#newReducer()}
 	 */
-	public ShippingHelper() {
-		zipCodesInRanges = new boolean [maxNumberOfZipCodes + 1];
+	public ShippingHelper(RangeReducer reducer) {
+		zipCodesInRanges = reducer;
 		resetZipCodesInRangesToValue(false);
 	}
 	
 	/**
-	 * Set the start state for all elements in zipCodesInRanges[].
-	 * <br>By default we setup this boolean array [100000] with every element false (0)
+	 * Set the start state for all zip codes in zipCodesInRanges.
+	 * <br>By default every zip code starts unrestricted, false (0)
 	 * <p>
-	 * @param startState - the base state for zipCodesInRanges[]
+	 * @param startState - the base state for zipCodesInRanges
 	 */
 	public void resetZipCodesInRangesToValue(boolean startState) {
-		Arrays.fill(zipCodesInRanges, startState);
+		zipCodesInRanges.reset(startState);
 	
 	}
 	
 	/**
-	 * Add all the zip codes in the range (lower -> upper bounds) to the restricted set
+	 * Add all the zip codes in the range (lower -> upper bounds) to the restricted set.
 	 * @param zipCodeRange - a valid {@link ZipCodeRange} object with bounds representing a contiguous set of zip codes to flag.
 	 * @throws ZipCodeRangeException if the size is not in [minimumBound, maximumBound]
 	 *
 	 */
 	public void setFlagForZipCodesInRange(ZipCodeRange zipCodeRange) throws ZipCodeRangeException {
-		int length = zipCodeRange.getUpperBound() - zipCodeRange.getLowerBound() + 1; 
-		for (int i = 0; i < length; i++) {
-			zipCodesInRanges[zipCodeRange.getLowerBound() + i] = ShippingConfigDefaults.ZIP_CODE_FLAGGED_VALUE;
-		}		
+		setFlagForZipCodesInRange(zipCodeRange.getLowerBound(), zipCodeRange.getUpperBound());
+	}
+	
+	/**
+	 * Add all the zip codes in [lower, upper] to the restricted set without creating a {@link ZipCodeRange}.
+	 * <br>Meant for bulk loaders, the bounds are expected to be checked with {@link ZipCodeRange#isValidRange(int, int, boolean)}.
+	 * @param lower - lower bound of a valid range
+	 * @param upper - upper bound of a valid range
+	 */
+	public void setFlagForZipCodesInRange(int lower, int upper) {
+		zipCodesInRanges.addRange(lower, upper);
+	}
+	
+	/**
+	 * Add all the zip codes restricted in another helper to this one, e.g. to combine helpers filled on separate threads.
+	 * @param other - helper with the restrictions to add, left unchanged
+	 * @throws ZipCodeRangeException if the ranges of the other helper can't be reduced
+	 */
+	public void setFlagForZipCodesInHelper(ShippingHelper other) throws ZipCodeRangeException {
+		long start = METRICS.startTimer();
+		zipCodesInRanges.addAll(other.zipCodesInRanges);
+		METRICS.stopTimer(PipelinePhase.FLAG, start);
+	}
+	
+	/**
+	 * @return a new helper with no restrictions that uses the same kind of engine as this one
+	 */
+	public ShippingHelper newEmptyCopy() {
+		return new ShippingHelper(zipCodesInRanges.newEmptyReducer());
+	}
+	
+	/**
+	 * Remove all the zip codes in the range (lower -> upper bounds) from the restricted set, lifting a single
+	 * restriction without reloading every source.
+	 * @param zipCodeRange - a valid {@link ZipCodeRange} object with bounds representing a contiguous set of zip codes to clear.
+	 */
+	public void clearFlagForZipCodesInRange(ZipCodeRange zipCodeRange) {
+		zipCodesInRanges.removeRange(zipCodeRange.getLowerBound(), zipCodeRange.getUpperBound());
+	}
+	
+	/**
+	 * Check a single zip code against the ranges flagged since reset.
+	 * @param zipCode - the zip code to look up
+	 * @return true if the zip code is restricted
+	 */
+	public boolean isZipCodeFlagged(int zipCode) {
+		return zipCodesInRanges.isFlagged(zipCode);
 	}
 	
 	/**
 	 * Returns the minimal set of ranges representing the restricted (flagged) zip codes processed since reset.
 	 * <p> 
-	 * <br>Execute a linear traversal starting at position [1] 
-	 * <br>Detect lower and upper bounds by checking for a state change between elements in the traversal
-	 * <br>Construct a {@link ZipCodeRange} object from detected bounds
-	 * <br>Add range to the return set
-	 * <p>
 	 * @param useFlagValue - the value (0|1) that defines which zip codes are included in the constructed ranges.
 	 * By default, the ranges that were flagged during range processing are set to (1|true). 
 	 * To extract the set of ranges that represent unrestricted zip codes set useFlagValue = false. 
@@ -74,38 +126,29 @@ public class ShippingHelper {
 	 * with the same flag state = (true|false)
 	 * <p> 
 	 *  @see ShippingHelper#resetZipCodesInRangesToValue 
+	 *  @see RangeReducer#getReducedZipCodeRanges(boolean)
 	 */
 	public ArrayList<ZipCodeRange> getReducedZipCodeRanges (boolean useFlagValue) throws ZipCodeRangeException {
-		
-		int currentIndex = 1;
-		int lowerBoundIndex = 0;
-		int upperBoundIndex = zipCodesInRanges.length - 1;
-		
-		ArrayList <ZipCodeRange> reduced = new ArrayList<ZipCodeRange>(); 
+		long start = METRICS.startTimer();
+		ArrayList<ZipCodeRange> ranges = zipCodesInRanges.getReducedZipCodeRanges(useFlagValue);
+		METRICS.stopTimer(PipelinePhase.REDUCE, start);
+		return ranges;
+	}
 
-		while (currentIndex < zipCodesInRanges.length) {
-			if (zipCodesInRanges[currentIndex] == useFlagValue) {
-				lowerBoundIndex = currentIndex;
-				
-				while (currentIndex < zipCodesInRanges.length) {
-					if ( (zipCodesInRanges[currentIndex] != useFlagValue) || (currentIndex == zipCodesInRanges.length - 1)) {
-						upperBoundIndex = currentIndex - 1;
-						if (currentIndex == zipCodesInRanges.length - 1)
-						{
-							upperBoundIndex++;
-						}
-						ZipCodeRange range = new ZipCodeRange(lowerBoundIndex, upperBoundIndex);
-						reduced.add(range);
-						break;
-					}
-					currentIndex++;
-				}
-			}
-			currentIndex++;
-		}
-		return reduced;
-		
+	/**
+	 * Returns at most maxRanges ranges covering every restricted (flagged) zip code, for consumers that cap the size
+	 * of their rule tables. The smallest gaps between the minimal ranges are closed first, so some unrestricted zip
+	 * codes may become restricted but never the other way around.
+	 * <br>Only the restricted ranges are coarsened: growing the unrestricted ranges would drop restrictions.
+	 * <p>
+	 * @param maxRanges - the budget, at least 1
+	 * @return no more than maxRanges ranges, with the number of extra zip codes they restrict
+	 * @throws IllegalArgumentException if maxRanges < 1
+	 * @see ZipCodeRangeSet#coarsen(int)
+	 */
+	public CoarsenedZipCodeRanges getReducedZipCodeRanges (int maxRanges) throws ZipCodeRangeException {
+		ZipCodeRangeSet exact = ZipCodeRangeSet.fromZipCodeRanges(getReducedZipCodeRanges(true));
+		return new CoarsenedZipCodeRanges(exact, exact.coarsen(maxRanges));
 	}
-	
 
 }
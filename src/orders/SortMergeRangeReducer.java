@@ -0,0 +1,222 @@
+package orders;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * {@link RangeReducer} that keeps the input ranges and reduces them with a sort and a single merge pass.
+ * <p>
+ * Each range is packed in a long as (lower << 32 | upper) so sorting the longs orders the ranges by
+ * lower bound. Overlapping and adjacent ranges ([70001,70002] + [70003,70005]) are merged into one.
+ * <br>Reduction costs O(n log n) in the number of ranges and doesn't depend on the size of the zip code space,
+ * which makes it the engine of choice for sparse items with a handful of ranges.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class SortMergeRangeReducer implements RangeReducer {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long [] ranges = new long [INITIAL_CAPACITY];
+	private int size;
+	// ranges[0, size) is sorted, disjoint and non adjacent, cleared by every add
+	private boolean merged = true;
+	private final boolean use9DigitZip;
+	private final int maxBoundValue;
+
+	/**
+	 * Create an engine for the configured {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP} mode.
+	 */
+	public SortMergeRangeReducer() {
+		this(ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+
+	/**
+	 * @param use9DigitZip - true to track ZIP+4 codes [1, 999999999], false for 5 digit zip codes [1, 99999]
+	 */
+	public SortMergeRangeReducer(boolean use9DigitZip) {
+		this.use9DigitZip = use9DigitZip;
+		this.maxBoundValue = ZipCodeRange.getMaximumBoundValue(use9DigitZip);
+	}
+
+	@Override
+	public void reset(boolean startState) {
+		size = 0;
+		merged = true;
+		if (startState) {
+			addRange(ShippingConfigDefaults.MINIMUM_BOUND_VALUE, maxBoundValue);
+		}
+	}
+
+	@Override
+	public void addRange(int lower, int upper) {
+		if (size == ranges.length) {
+			ranges = Arrays.copyOf(ranges, size << 1);
+		}
+		ranges[size++] = pack(lower, upper);
+		merged = false;
+	}
+
+	/**
+	 * Merge the ranges, then trim or split the ones that overlap [lower, upper] in place. The ranges stay merged.
+	 */
+	@Override
+	public void removeRange(int lower, int upper) {
+
+		merge();
+
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			long range = ranges[i];
+			int rangeLower = lowerOf(range);
+			int rangeUpper = upperOf(range);
+			if (rangeUpper < lower || upper < rangeLower) {
+				ranges[count++] = range;
+				continue;
+			}
+			if (rangeLower < lower && upper < rangeUpper) {
+				// the only range that overlaps, split it in two
+				if (size == ranges.length) {
+					ranges = Arrays.copyOf(ranges, size << 1);
+				}
+				System.arraycopy(ranges, i + 1, ranges, i + 2, size - i - 1);
+				ranges[i] = pack(rangeLower, lower - 1);
+				ranges[i + 1] = pack(upper + 1, rangeUpper);
+				size++;
+				return;
+			}
+			if (rangeLower < lower) {
+				ranges[count++] = pack(rangeLower, lower - 1);
+			}
+			if (upper < rangeUpper) {
+				ranges[count++] = pack(upper + 1, rangeUpper);
+			}
+		}
+		size = count;
+	}
+
+	/**
+	 * Merge the ranges, then binary search for the last range with lower bound <= zipCode.
+	 */
+	@Override
+	public boolean isFlagged(int zipCode) {
+
+		merge();
+
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (lowerOf(ranges[mid]) <= zipCode) {
+				low = mid + 1;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		return high >= 0 && zipCode <= upperOf(ranges[high]);
+	}
+
+	/**
+	 * Sort the ranges by lower bound, then merge each range into the previous one when they overlap or touch.
+	 * <br>The merged ranges replace the input, so reads and lookups are free of sorting until ranges are added again.
+	 */
+	@Override
+	public ArrayList<ZipCodeRange> getReducedZipCodeRanges(boolean useFlagValue) throws ZipCodeRangeException {
+
+		merge();
+
+		ArrayList <ZipCodeRange> reduced = new ArrayList<ZipCodeRange>(size + 1);
+		if (useFlagValue) {
+			for (int i = 0; i < size; i++) {
+				reduced.add(new ZipCodeRange(lowerOf(ranges[i]), upperOf(ranges[i]), use9DigitZip));
+			}
+		}
+		else {
+			int nextLower = ShippingConfigDefaults.MINIMUM_BOUND_VALUE;
+			for (int i = 0; i < size; i++) {
+				if (lowerOf(ranges[i]) > nextLower) {
+					reduced.add(new ZipCodeRange(nextLower, lowerOf(ranges[i]) - 1, use9DigitZip));
+				}
+				nextLower = upperOf(ranges[i]) + 1;
+			}
+			if (nextLower <= maxBoundValue) {
+				reduced.add(new ZipCodeRange(nextLower, maxBoundValue, use9DigitZip));
+			}
+		}
+		return reduced;
+	}
+
+	@Override
+	public RangeReducer newEmptyReducer() {
+		return new SortMergeRangeReducer(use9DigitZip);
+	}
+
+	/**
+	 * The ranges of other are appended as they are and merged with the rest on the next read.
+	 */
+	@Override
+	public void addAll(RangeReducer other) throws ZipCodeRangeException {
+		if (other instanceof SortMergeRangeReducer) {
+			SortMergeRangeReducer sortMerge = (SortMergeRangeReducer) other;
+			if (size + sortMerge.size > ranges.length) {
+				ranges = Arrays.copyOf(ranges, Math.max(size + sortMerge.size, size << 1));
+			}
+			System.arraycopy(sortMerge.ranges, 0, ranges, size, sortMerge.size);
+			size += sortMerge.size;
+			merged = false;
+		}
+		else {
+			RangeReducer.super.addAll(other);
+		}
+	}
+
+	/**
+	 * Sort and merge the ranges in place, unless nothing was added since the last merge.
+	 * After this call ranges[0, size) is sorted, disjoint and non adjacent.
+	 */
+	private void merge() {
+		if (merged) {
+			return;
+		}
+		merged = true;
+		if (size < 2) {
+			return;
+		}
+		Arrays.sort(ranges, 0, size);
+
+		int count = 0;
+		int lower = lowerOf(ranges[0]);
+		int upper = upperOf(ranges[0]);
+		for (int i = 1; i < size; i++) {
+			int nextLower = lowerOf(ranges[i]);
+			int nextUpper = upperOf(ranges[i]);
+			if (nextLower <= upper + 1) {
+				upper = Math.max(upper, nextUpper);
+			}
+			else {
+				ranges[count++] = pack(lower, upper);
+				lower = nextLower;
+				upper = nextUpper;
+			}
+		}
+		ranges[count++] = pack(lower, upper);
+		size = count;
+	}
+
+	private static long pack(int lower, int upper) {
+		return ((long) lower << 32) | (upper & 0xFFFFFFFFL);
+	}
+
+	private static int lowerOf(long range) {
+		return (int) (range >>> 32);
+	}
+
+	private static int upperOf(long range) {
+		return (int) range;
+	}
+
+}
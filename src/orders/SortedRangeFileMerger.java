@@ -0,0 +1,228 @@
+package orders;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import config.ShippingConfigDefaults;
+import config.ShippingMessageConstants;
+
+/**
+ * Streaming union of several restriction sources, each a 2 column csv file already sorted by lower bound.
+ * <p>
+ * The sources are k-way merged through a heap that holds the current range of each source. The smallest
+ * lower bound is popped, merged into the pending range when they overlap or touch, and the pending range is
+ * emitted to a {@link RangeSink} as soon as the next lower bound leaves a gap. Ranges come out minimal and in
+ * ascending order without loading any source, so memory is O(N) in the number of sources whatever their size.
+ * <p>
+ * Rows that aren't a valid range are skipped and counted by {@link RangeStatus}, and copied to a
+ * {@link RejectedRowWriter} when one is set. The bounds are checked with
+ * {@link ZipCodeRange#validateBounds(int, int, boolean)}, so a bad row costs no exception.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class SortedRangeFileMerger {
+
+	private final boolean use9DigitZip;
+	private long rangeCount;
+	private final long [] rejectedRowCounts = new long [RangeStatus.values().length];
+	private RejectedRowWriter rejectedRowWriter;
+
+	/**
+	 * Create a merger for the configured {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP} mode.
+	 */
+	public SortedRangeFileMerger() {
+		this(ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+
+	/**
+	 * @param use9DigitZip - true when the sources hold 9 digit (ZIP+4) zip codes
+	 */
+	public SortedRangeFileMerger(boolean use9DigitZip) {
+		this.use9DigitZip = use9DigitZip;
+	}
+
+	/**
+	 * @param rejectedRowWriter - receives the rows that aren't a valid range, or null to only count them
+	 */
+	public void setRejectedRowWriter(RejectedRowWriter rejectedRowWriter) {
+		this.rejectedRowWriter = rejectedRowWriter;
+	}
+
+	/**
+	 * Merge the sources and emit their minimal union.
+	 * <p>
+	 * @param fileNames - the sorted sources
+	 * @param sink - receives the merged ranges in ascending order
+	 * @return the number of ranges emitted
+	 * @throws IOException if a source can't be read, or the sink or reject file fails
+	 * @throws ZipCodeRangeException if a source isn't sorted by lower bound
+	 */
+	public long merge(List<String> fileNames, RangeSink sink) throws IOException, ZipCodeRangeException {
+
+		PriorityQueue<SortedRangeSource> heap = new PriorityQueue<SortedRangeSource>(Math.max(1, fileNames.size()));
+		try {
+			for (String fileName : fileNames) {
+				advance(new SortedRangeSource(fileName), heap);
+			}
+
+			long emitted = 0;
+			boolean pending = false;
+			int lower = 0;
+			int upper = 0;
+
+			while (!heap.isEmpty()) {
+				SortedRangeSource source = heap.poll();
+				if (pending && source.lower <= upper + 1) {
+					upper = Math.max(upper, source.upper);
+				}
+				else {
+					if (pending) {
+						sink.acceptRange(lower, upper);
+						emitted++;
+					}
+					lower = source.lower;
+					upper = source.upper;
+					pending = true;
+				}
+
+				advance(source, heap);
+			}
+			if (pending) {
+				sink.acceptRange(lower, upper);
+				emitted++;
+			}
+			return emitted;
+
+		} finally {
+			for (SortedRangeSource source : heap) {
+				source.close();
+			}
+		}
+	}
+
+	/**
+	 * Move a source to its next range and put it back in the heap, or close it when it's exhausted.
+	 */
+	private static void advance(SortedRangeSource source, PriorityQueue<SortedRangeSource> heap) throws IOException, ZipCodeRangeException {
+		boolean hasRange = false;
+		try {
+			hasRange = source.advance();
+		} finally {
+			if (hasRange) {
+				heap.add(source);
+			}
+			else {
+				source.close();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of valid ranges read from the sources, across all merges
+	 */
+	public long getRangeCount() {
+		return rangeCount;
+	}
+
+	/**
+	 * @return the number of rows skipped because they weren't a valid range, across all merges
+	 */
+	public long getRejectedRowCount() {
+		long count = 0;
+		for (long statusCount : rejectedRowCounts) {
+			count += statusCount;
+		}
+		return count;
+	}
+
+	/**
+	 * @param status - OUT_OF_BOUNDS, INVERTED or UNPARSEABLE
+	 * @return the number of rows skipped for that reason, across all merges
+	 */
+	public long getRejectedRowCount(RangeStatus status) {
+		return rejectedRowCounts[status.ordinal()];
+	}
+
+	private void reject(RangeStatus status, String line) throws IOException {
+		rejectedRowCounts[status.ordinal()]++;
+		PipelineMetrics.getInstance().recordRejected(status);
+		if (rejectedRowWriter != null) {
+			byte [] row = line.getBytes(StandardCharsets.US_ASCII);
+			rejectedRowWriter.writeRow(status, ByteBuffer.wrap(row), 0, row.length);
+		}
+	}
+
+	/**
+	 * Cursor over one sorted source, ordered in the heap by its current range.
+	 */
+	private final class SortedRangeSource implements Comparable<SortedRangeSource>, Closeable {
+
+		private final String fileName;
+		private final BufferedReader reader;
+		private long lineNumber;
+		private boolean started;
+		private int lower;
+		private int upper;
+
+		private SortedRangeSource(String fileName) throws IOException {
+			this.fileName = fileName;
+			this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName)));
+		}
+
+		/**
+		 * Read the next valid range of the source.
+		 * @return false at the end of the source
+		 */
+		private boolean advance() throws IOException, ZipCodeRangeException {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (line.isEmpty()) {
+					continue;
+				}
+				int comma = line.indexOf(',');
+				int rangeLower = (comma < 0) ? -1 : ZipCodeRange.parseBound(line, 0, comma);
+				int rangeUpper = (comma < 0) ? -1 : ZipCodeRange.parseBound(line, comma + 1, line.length());
+				RangeStatus status = (rangeLower < 0 || rangeUpper < 0) ? RangeStatus.UNPARSEABLE
+						: ZipCodeRange.validateBounds(rangeLower, rangeUpper, use9DigitZip);
+				if (status != RangeStatus.VALID) {
+					reject(status, line);
+					continue;
+				}
+				if (started && rangeLower < lower) {
+					throw new ZipCodeRangeException(MessageFormat.format(ShippingMessageConstants.ZC_SOURCE_NOT_SORTED_MSG,
+							fileName, String.valueOf(lineNumber), String.valueOf(rangeLower), String.valueOf(lower)));
+				}
+				started = true;
+				rangeCount++;
+				lower = rangeLower;
+				upper = rangeUpper;
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public int compareTo(SortedRangeSource other) {
+			if (lower != other.lower) {
+				return (lower < other.lower) ? -1 : 1;
+			}
+			return Integer.compare(upper, other.upper);
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+
+}
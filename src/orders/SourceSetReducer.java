@@ -0,0 +1,21 @@
+package orders;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Computes the reduced ranges of a combination of restriction sources when a {@link ReductionCache} misses.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public interface SourceSetReducer {
+
+	/**
+	 * @param sourceIds - the sources to combine, sorted and without duplicates
+	 * @return the minimal ranges restricted by any of the sources
+	 * @throws IOException if a source can't be read
+	 * @throws ZipCodeRangeException if the ranges can't be reduced
+	 */
+	ZipCodeRangeSet reduce(List<String> sourceIds) throws IOException, ZipCodeRangeException;
+}
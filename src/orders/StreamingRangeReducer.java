@@ -0,0 +1,169 @@
+package orders;
+
+import java.text.MessageFormat;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+import config.ShippingConfigDefaults;
+import config.ShippingMessageConstants;
+
+/**
+ * Reduces a stream of ranges as it arrives, a {@link Flow.Processor} between a publisher of input ranges and the
+ * subscribers of the reduced ranges, e.g. a {@link RangeSinkSubscriber} writing them out.
+ * <p>
+ * With input sorted by lower bound, a merged range is emitted as soon as a later lower bound proves it can't grow,
+ * so downstream writes while upstream still loads and memory stays O(1): only the range being merged is kept.
+ * Unsorted input is flagged in a {@link ShippingHelper} and reduced when the input completes.
+ * <p>
+ * Backpressure follows {@link SubmissionPublisher}: one input range is requested at a time, and
+ * {@link #submit(Object)} blocks while a subscriber's buffer is full, so a slow writer slows the reader down
+ * rather than letting ranges pile up.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class StreamingRangeReducer extends SubmissionPublisher<ZipCodeRange> implements Flow.Processor<ZipCodeRange, ZipCodeRange> {
+
+	private static final String SOURCE_NAME = "stream";
+
+	private final boolean sortedInput;
+	private final boolean use9DigitZip;
+	private final ShippingHelper helper;
+
+	private Flow.Subscription subscription;
+	private boolean started;
+	private int lower;
+	private int upper;
+	private long inputCount;
+	private long outputCount;
+
+	/**
+	 * Create a reducer that delivers on the common pool with the default buffer size.
+	 * <p>
+	 * @param sortedInput - true if the input is sorted by lower bound, enables early emission
+	 * @param use9DigitZip - true for 9 digit (ZIP+4) zip codes
+	 */
+	public StreamingRangeReducer(boolean sortedInput, boolean use9DigitZip) {
+		this(sortedInput, use9DigitZip, ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+	}
+
+	/**
+	 * @param sortedInput - true if the input is sorted by lower bound, enables early emission
+	 * @param use9DigitZip - true for 9 digit (ZIP+4) zip codes
+	 * @param executor - runs the deliveries to the subscribers
+	 * @param maxBufferCapacity - ranges buffered per subscriber before {@link #submit(Object)} blocks
+	 */
+	public StreamingRangeReducer(boolean sortedInput, boolean use9DigitZip, Executor executor, int maxBufferCapacity) {
+		super(executor, maxBufferCapacity);
+		this.sortedInput = sortedInput;
+		this.use9DigitZip = use9DigitZip;
+		this.helper = sortedInput ? null : new ShippingHelper(RangeReducerType.defaultType(use9DigitZip).newReducer(use9DigitZip));
+	}
+
+	/**
+	 * Create a reducer for the configured {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP} mode.
+	 * @param sortedInput - true if the input is sorted by lower bound, enables early emission
+	 */
+	public StreamingRangeReducer(boolean sortedInput) {
+		this(sortedInput, ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		subscription.request(1);
+	}
+
+	/**
+	 * Merge the range into the one in progress, or emit the one in progress if the range starts past its end.
+	 * <br>Input declared sorted that isn't fails the stream with a ZipCodeRangeException.
+	 */
+	@Override
+	public void onNext(ZipCodeRange range) {
+		inputCount++;
+		try {
+			if (!sortedInput) {
+				helper.setFlagForZipCodesInRange(range);
+			}
+			else {
+				acceptSorted(range.getLowerBound(), range.getUpperBound());
+			}
+		} catch (ZipCodeRangeException ex) {
+			subscription.cancel();
+			closeExceptionally(ex);
+			return;
+		}
+		subscription.request(1);
+	}
+
+	private void acceptSorted(int nextLower, int nextUpper) throws ZipCodeRangeException {
+		if (!started) {
+			started = true;
+			lower = nextLower;
+			upper = nextUpper;
+			return;
+		}
+		if (nextLower < lower) {
+			throw new ZipCodeRangeException(MessageFormat.format(ShippingMessageConstants.ZC_SOURCE_NOT_SORTED_MSG,
+					SOURCE_NAME, String.valueOf(inputCount), String.valueOf(nextLower), String.valueOf(lower)));
+		}
+		if (nextLower <= upper + 1) {
+			upper = Math.max(upper, nextUpper);
+			return;
+		}
+		// nothing later can start at or before upper + 1, the range is final
+		emit(lower, upper);
+		lower = nextLower;
+		upper = nextUpper;
+	}
+
+	private void emit(int emitLower, int emitUpper) throws ZipCodeRangeException {
+		submit(new ZipCodeRange(emitLower, emitUpper, use9DigitZip));
+		outputCount++;
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		closeExceptionally(throwable);
+	}
+
+	/**
+	 * Emit the last merged range, or every reduced range of unsorted input, and complete the subscribers.
+	 */
+	@Override
+	public void onComplete() {
+		try {
+			if (sortedInput) {
+				if (started) {
+					emit(lower, upper);
+				}
+			}
+			else {
+				for (ZipCodeRange range : helper.getReducedZipCodeRanges(true)) {
+					submit(range);
+					outputCount++;
+				}
+			}
+		} catch (ZipCodeRangeException ex) {
+			closeExceptionally(ex);
+			return;
+		}
+		close();
+	}
+
+	/**
+	 * @return the number of ranges received so far
+	 */
+	public long getInputCount() {
+		return inputCount;
+	}
+
+	/**
+	 * @return the number of reduced ranges emitted so far
+	 */
+	public long getOutputCount() {
+		return outputCount;
+	}
+}
@@ -0,0 +1,190 @@
+package orders;
+
+import java.util.Arrays;
+
+/**
+ * Word packed set of zip code values. Every zip code is a single bit in a long[] so a 5 digit
+ * zip code space fits in 1563 words (12.5 KB) instead of a boolean [100000] (100 KB).
+ * <p>
+ * Ranges are flagged with word masks and range boundaries are found with
+ * {@link Long#numberOfTrailingZeros(long)} over the words (or the inverted words), so the cost of
+ * flagging and scanning is counted in words rather than in zip codes.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class ZipCodeBitmap {
+
+	/**
+	 * 2^6 = 64 bits in a word.
+	 */
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+	private static final long WORD_MASK = 0xFFFFFFFFFFFFFFFFL;
+
+	private final long [] words;
+	private final int maxValue;
+
+	/**
+	 * Create an empty bitmap for the values [0, maxValue].
+	 * <p>
+	 * @param maxValue - the largest value that can be flagged
+	 */
+	public ZipCodeBitmap(int maxValue) {
+		this.maxValue = maxValue;
+		this.words = new long [wordIndex(maxValue) + 1];
+	}
+
+	/**
+	 * Wrap words copied from another bitmap, e.g. a snapshot of an {@link AtomicZipCodeBitmap}.
+	 * <p>
+	 * @param maxValue - the largest value that can be flagged
+	 * @param words - wordIndex(maxValue) + 1 words, not copied
+	 */
+	ZipCodeBitmap(int maxValue, long [] words) {
+		this.maxValue = maxValue;
+		this.words = words;
+	}
+
+	/**
+	 * @return the largest value that can be flagged
+	 */
+	public int getMaxValue() {
+		return maxValue;
+	}
+
+	/**
+	 * Set every value [0, maxValue] to state.
+	 * <p>
+	 * @param state - true sets all the bits, false clears them
+	 */
+	public void fill(boolean state) {
+		Arrays.fill(words, 0L);
+		if (state) {
+			setRange(0, maxValue);
+		}
+	}
+
+	/**
+	 * Flag all the values in [lower, upper]. Bounds are expected to be in [0, maxValue].
+	 * <p>
+	 * @param lower - first value of the range
+	 * @param upper - last value of the range (inclusive)
+	 */
+	public void setRange(int lower, int upper) {
+		int startWordIndex = wordIndex(lower);
+		int endWordIndex = wordIndex(upper);
+		long firstWordMask = WORD_MASK << lower;
+		long lastWordMask = WORD_MASK >>> -(upper + 1);
+
+		if (startWordIndex == endWordIndex) {
+			words[startWordIndex] |= (firstWordMask & lastWordMask);
+		}
+		else {
+			words[startWordIndex] |= firstWordMask;
+			Arrays.fill(words, startWordIndex + 1, endWordIndex, WORD_MASK);
+			words[endWordIndex] |= lastWordMask;
+		}
+	}
+
+	/**
+	 * Clear all the values in [lower, upper]. Bounds are expected to be in [0, maxValue].
+	 * <p>
+	 * @param lower - first value of the range
+	 * @param upper - last value of the range (inclusive)
+	 */
+	public void clearRange(int lower, int upper) {
+		int startWordIndex = wordIndex(lower);
+		int endWordIndex = wordIndex(upper);
+		long firstWordMask = WORD_MASK << lower;
+		long lastWordMask = WORD_MASK >>> -(upper + 1);
+
+		if (startWordIndex == endWordIndex) {
+			words[startWordIndex] &= ~(firstWordMask & lastWordMask);
+		}
+		else {
+			words[startWordIndex] &= ~firstWordMask;
+			Arrays.fill(words, startWordIndex + 1, endWordIndex, 0L);
+			words[endWordIndex] &= ~lastWordMask;
+		}
+	}
+
+	/**
+	 * Flag every value flagged in other, one word at a time.
+	 * <p>
+	 * @param other - a bitmap with the same maxValue
+	 */
+	public void or(ZipCodeBitmap other) {
+		for (int i = 0; i < words.length; i++) {
+			words[i] |= other.words[i];
+		}
+	}
+
+	/**
+	 * @return the words backing the bitmap, not copied
+	 */
+	long [] getWords() {
+		return words;
+	}
+
+	/**
+	 * @param value - a value in [0, maxValue]
+	 * @return true if the value is flagged
+	 */
+	public boolean get(int value) {
+		return (words[wordIndex(value)] & (1L << value)) != 0;
+	}
+
+	/**
+	 * @param fromIndex - first value to check
+	 * @return the first flagged value >= fromIndex, or -1 if there isn't one
+	 */
+	public int nextSetBit(int fromIndex) {
+		if (fromIndex > maxValue) {
+			return -1;
+		}
+		int u = wordIndex(fromIndex);
+		long word = words[u] & (WORD_MASK << fromIndex);
+
+		while (true) {
+			if (word != 0) {
+				int index = (u << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+				return (index <= maxValue) ? index : -1;
+			}
+			if (++u == words.length) {
+				return -1;
+			}
+			word = words[u];
+		}
+	}
+
+	/**
+	 * @param fromIndex - first value to check
+	 * @return the first value >= fromIndex that isn't flagged, or maxValue + 1 if every value is flagged
+	 */
+	public int nextClearBit(int fromIndex) {
+		if (fromIndex > maxValue) {
+			return maxValue + 1;
+		}
+		int u = wordIndex(fromIndex);
+		long word = ~words[u] & (WORD_MASK << fromIndex);
+
+		while (true) {
+			if (word != 0) {
+				int index = (u << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+				return Math.min(index, maxValue + 1);
+			}
+			if (++u == words.length) {
+				return maxValue + 1;
+			}
+			word = ~words[u];
+		}
+	}
+
+	/**
+	 * @param value - a value in [0, maxValue]
+	 * @return index of the word that holds the bit for value
+	 */
+	private static int wordIndex(int value) {
+		return value >>> ADDRESS_BITS_PER_WORD;
+	}
+}
@@ -0,0 +1,167 @@
+package orders;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of zip code values for spaces too large for a flat bitmap, e.g. the 10^9 ZIP+4 codes.
+ * <p>
+ * The space is cut in chunks of 2^16 values keyed by the high 16 bits of the zip code. Only chunks with
+ * at least one flagged zip code exist, and each one stores its low 16 bits in the smallest
+ * {@link ChunkContainer} layout (array, run or bitmap), re-picked after every change. The keys are kept sorted so the chunks can be
+ * found with a binary search and traversed in zip code order.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class ZipCodeChunkedBitmap {
+
+	private static final int CHUNK_BITS = 16;
+	private static final int LOW_BITS_MASK = 0xFFFF;
+
+	private char [] keys = new char [4];
+	private ChunkContainer [] containers = new ChunkContainer [4];
+	private int size;
+
+	/**
+	 * Remove every flagged value.
+	 */
+	public void clear() {
+		Arrays.fill(containers, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Flag all the values in [lower, upper], one chunk at a time.
+	 * <br>Chunks covered end to end are stored as a single full run, a new chunk starts in the layout that fits its
+	 * first range best.
+	 * <p>
+	 * @param lower - first value of the range, >= 0
+	 * @param upper - last value of the range (inclusive)
+	 */
+	public void setRange(int lower, int upper) {
+		int lowerKey = lower >>> CHUNK_BITS;
+		int upperKey = upper >>> CHUNK_BITS;
+
+		for (int key = lowerKey; key <= upperKey; key++) {
+			int chunkLower = (key == lowerKey) ? lower & LOW_BITS_MASK : 0;
+			int chunkUpper = (key == upperKey) ? upper & LOW_BITS_MASK : ChunkContainer.MAX_VALUE;
+			int index = indexOf(key);
+
+			if (index < 0) {
+				index = -index - 1;
+				insertAt(index, key, ChunkContainer.forRange(chunkLower, chunkUpper));
+			}
+			if (chunkLower == 0 && chunkUpper == ChunkContainer.MAX_VALUE) {
+				containers[index] = RunChunkContainer.full();
+			}
+			else {
+				containers[index] = ChunkContainer.compact(containers[index].addRange(chunkLower, chunkUpper));
+			}
+		}
+	}
+
+	/**
+	 * Clear all the values in [lower, upper] in the chunks that exist. Chunks left empty are dropped.
+	 * <p>
+	 * @param lower - first value of the range, >= 0
+	 * @param upper - last value of the range (inclusive)
+	 */
+	public void clearRange(int lower, int upper) {
+		int lowerKey = lower >>> CHUNK_BITS;
+		int upperKey = upper >>> CHUNK_BITS;
+		int index = indexOf(lowerKey);
+		if (index < 0) {
+			index = -index - 1;
+		}
+
+		while (index < size && keys[index] <= upperKey) {
+			int key = keys[index];
+			int chunkLower = (key == lowerKey) ? lower & LOW_BITS_MASK : 0;
+			int chunkUpper = (key == upperKey) ? upper & LOW_BITS_MASK : ChunkContainer.MAX_VALUE;
+			ChunkContainer container = ChunkContainer.compact(containers[index].removeRange(chunkLower, chunkUpper));
+
+			if (container == null) {
+				removeAt(index);
+			}
+			else {
+				containers[index++] = container;
+			}
+		}
+	}
+
+	/**
+	 * @param value - zip code to check, >= 0
+	 * @return true if the value is flagged
+	 */
+	public boolean get(int value) {
+		int index = indexOf(value >>> CHUNK_BITS);
+		return index >= 0 && containers[index].contains(value & LOW_BITS_MASK);
+	}
+
+	/**
+	 * @param value - any zip code in the chunk
+	 * @return the container of the chunk, or null if nothing in it is flagged
+	 */
+	ChunkContainer getContainer(int value) {
+		int index = indexOf(value >>> CHUNK_BITS);
+		return (index >= 0) ? containers[index] : null;
+	}
+
+	/**
+	 * Visit the flagged values as sorted, disjoint and non adjacent ranges. Runs that touch across a
+	 * chunk boundary are joined into one range.
+	 * <p>
+	 * @return packed ranges [lower0, upper0, lower1, upper1, ...]
+	 */
+	public int [] toRanges() {
+		int [] ranges = new int [16];
+		int count = 0;
+
+		for (int i = 0; i < size; i++) {
+			int base = keys[i] << CHUNK_BITS;
+			int [] runs = containers[i].toRuns();
+			for (int r = 0; r < runs.length; r += 2) {
+				int lower = base + runs[r];
+				int upper = base + runs[r + 1];
+				if (count > 0 && ranges[count - 1] + 1 == lower) {
+					ranges[count - 1] = upper;
+				}
+				else {
+					if (count + 2 > ranges.length) {
+						ranges = Arrays.copyOf(ranges, ranges.length << 1);
+					}
+					ranges[count++] = lower;
+					ranges[count++] = upper;
+				}
+			}
+		}
+		return Arrays.copyOf(ranges, count);
+	}
+
+	/**
+	 * @param key - high 16 bits of a zip code
+	 * @return index of the chunk, or (-(insertion point) - 1) if it doesn't exist
+	 */
+	private int indexOf(int key) {
+		return Arrays.binarySearch(keys, 0, size, (char) key);
+	}
+
+	private void removeAt(int index) {
+		System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+		System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+		containers[--size] = null;
+	}
+
+	private void insertAt(int index, int key, ChunkContainer container) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size << 1);
+			containers = Arrays.copyOf(containers, size << 1);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(containers, index, containers, index + 1, size - index);
+		keys[index] = (char) key;
+		containers[index] = container;
+		size++;
+	}
+
+}
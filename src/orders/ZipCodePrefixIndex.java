@@ -0,0 +1,181 @@
+package orders;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * Two level lookup table compiled from a reduced {@link ZipCodeRangeSet} of 5 digit zip codes.
+ * <p>
+ * Restrictions cluster by USPS sectional center, the first 3 digits of a zip code. The top level has one entry
+ * per 3 digit prefix: CLEAR, ALL (every zip code of the prefix restricted) or the id of a 100 bit leaf for the
+ * last 2 digits. Identical leaves are stored once, so an item restricted along the same pattern in many
+ * prefixes costs a single leaf.
+ * <p>
+ * A lookup is a division, a table load and at most one leaf word load, constant time whatever the number of
+ * ranges. Memory is the 2 KB top table plus 16 bytes per distinct leaf, rather than 12.5 KB for a full
+ * {@link ZipCodeBitmap} or 8 bytes per range for a {@link ZipCodeRangeSet} that needs a binary search.
+ * <p>
+ * The index is immutable and safe to share between threads.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public final class ZipCodePrefixIndex {
+
+	private static final int PREFIX_COUNT = 1000;
+	private static final int LEAF_SIZE = 100;
+
+	private static final char CLEAR = 0;
+	private static final char ALL = 1;
+	private static final char FIRST_LEAF = 2;
+
+	/**
+	 * The high word of a leaf with all of its 100 bits set, bits 64 to 99.
+	 */
+	private static final long FULL_HIGH_WORD = (1L << (LEAF_SIZE - 64)) - 1;
+
+	/**
+	 * CLEAR, ALL or FIRST_LEAF + leaf id, per 3 digit prefix.
+	 */
+	private final char [] prefixes;
+
+	/**
+	 * 2 words per leaf: bits 0 to 63 then bits 64 to 99 of the last 2 digits.
+	 */
+	private final long [] leaves;
+
+	private ZipCodePrefixIndex(char [] prefixes, long [] leaves) {
+		this.prefixes = prefixes;
+		this.leaves = leaves;
+	}
+
+	/**
+	 * Compile the index for a set of 5 digit zip code ranges. O(size + 1000).
+	 * <p>
+	 * @param ranges - the reduced ranges
+	 * @return the index
+	 * @throws IllegalArgumentException if a range is above {@link ShippingConfigDefaults#MAXIMUM_BOUND_VALUE}, e.g. ZIP+4 codes
+	 */
+	public static ZipCodePrefixIndex compile(ZipCodeRangeSet ranges) {
+		if (!ranges.isEmpty() && ranges.getUpperBound(ranges.size() - 1) > ShippingConfigDefaults.MAXIMUM_BOUND_VALUE) {
+			throw new IllegalArgumentException("The prefix index only holds 5 digit zip codes");
+		}
+
+		// one 100 bit leaf per prefix to start with
+		long [] words = new long [PREFIX_COUNT << 1];
+		for (int i = 0; i < ranges.size(); i++) {
+			int lower = ranges.getLowerBound(i);
+			int upper = ranges.getUpperBound(i);
+			for (int prefix = lower / LEAF_SIZE; prefix <= upper / LEAF_SIZE; prefix++) {
+				int from = Math.max(lower, prefix * LEAF_SIZE) % LEAF_SIZE;
+				int to = Math.min(upper, prefix * LEAF_SIZE + LEAF_SIZE - 1) % LEAF_SIZE;
+				setBits(words, prefix << 1, from, to);
+			}
+		}
+
+		char [] prefixes = new char [PREFIX_COUNT];
+		long [] leaves = new long [16];
+		int leafCount = 0;
+		Map<Leaf, Character> leafIds = new HashMap<Leaf, Character>();
+		for (int prefix = 0; prefix < PREFIX_COUNT; prefix++) {
+			long low = words[prefix << 1];
+			long high = words[(prefix << 1) + 1];
+			if (low == 0 && high == 0) {
+				prefixes[prefix] = CLEAR;
+			}
+			else if (low == -1L && high == FULL_HIGH_WORD) {
+				prefixes[prefix] = ALL;
+			}
+			else {
+				Leaf leaf = new Leaf(low, high);
+				Character id = leafIds.get(leaf);
+				if (id == null) {
+					if ((leafCount << 1) == leaves.length) {
+						leaves = Arrays.copyOf(leaves, leaves.length << 1);
+					}
+					leaves[leafCount << 1] = low;
+					leaves[(leafCount << 1) + 1] = high;
+					id = Character.valueOf((char) (FIRST_LEAF + leafCount++));
+					leafIds.put(leaf, id);
+				}
+				prefixes[prefix] = id.charValue();
+			}
+		}
+		return new ZipCodePrefixIndex(prefixes, Arrays.copyOf(leaves, leafCount << 1));
+	}
+
+	/**
+	 * Set bits [from, to] of the leaf starting at words[offset].
+	 */
+	private static void setBits(long [] words, int offset, int from, int to) {
+		for (int word = from >>> 6; word <= to >>> 6; word++) {
+			int first = Math.max(from, word << 6) & 63;
+			int last = Math.min(to, (word << 6) + 63) & 63;
+			words[offset + word] |= (-1L >>> (63 - last)) & (-1L << first);
+		}
+	}
+
+	/**
+	 * Check a single zip code in constant time.
+	 * <p>
+	 * @param zipCode - the zip code to look up
+	 * @return true if the zip code is restricted
+	 */
+	public boolean isRestricted(int zipCode) {
+		if (zipCode < 0 || zipCode > ShippingConfigDefaults.MAXIMUM_BOUND_VALUE) {
+			return false;
+		}
+		char entry = prefixes[zipCode / LEAF_SIZE];
+		if (entry < FIRST_LEAF) {
+			return entry == ALL;
+		}
+		int bit = zipCode % LEAF_SIZE;
+		return (leaves[((entry - FIRST_LEAF) << 1) + (bit >>> 6)] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * @return the number of distinct 100 bit leaves
+	 */
+	public int getLeafCount() {
+		return leaves.length >> 1;
+	}
+
+	/**
+	 * @return bytes held by the top table and the leaves, without object headers
+	 */
+	public int getMemorySize() {
+		return prefixes.length * Character.BYTES + leaves.length * Long.BYTES;
+	}
+
+	/**
+	 * The 100 bits of a leaf, as a key to share identical leaves while compiling.
+	 */
+	private static final class Leaf {
+
+		private final long low;
+		private final long high;
+
+		Leaf(long low, long high) {
+			this.low = low;
+			this.high = high;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Leaf)) {
+				return false;
+			}
+			Leaf other = (Leaf) obj;
+			return low == other.low && high == other.high;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(low) * 31 + Long.hashCode(high);
+		}
+	}
+
+}
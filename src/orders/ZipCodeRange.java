@@ -6,6 +6,7 @@ import java.text.MessageFormat;
 
 /**
  * Interval that includes a contiguous range of 5 digit Zip Code (ZC) values including both end points. 
+ * <br>In 9 digit mode the values are ZIP+4 codes written without the dash, e.g. 941330001 
  * <br>It is a required component of an item's shipping address for most US locations. 
  * <p> The ZC was introduced in 1963 by the USPS to ensure items "zipped" to their delivery 
  * destinations:
@@ -50,8 +51,24 @@ public class ZipCodeRange  {
 	 * @throws ZipCodeRangeException - invalid bounds settings
 	 */
 	public ZipCodeRange(int lower, int upper) throws ZipCodeRangeException {
+		this(lower, upper, ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+	
+	/**
+	 * Construct a ZipCodeRange object with valid lower and upper bounds for 5 or 9 digit (ZIP+4) zip codes.
+	 * <p>
+	 * Bounds validated on:
+	 * <br>Comparative value with each other to each other: lower !> upper 
+	 * <br>Value compared to range min/max: [MINIMUM_BOUND_VALUE <= (lower | upper) <= {@link #getMaximumBoundValue(boolean)}]
+	 * 
+	 * @param lowerBound  
+	 * @param upperBound 
+	 * @param use9DigitZip - true to accept ZIP+4 bounds up to 999999999
+	 * @throws ZipCodeRangeException - invalid bounds settings
+	 */
+	public ZipCodeRange(int lower, int upper, boolean use9DigitZip) throws ZipCodeRangeException {
 		try {
-			setBoundsWithValidation(lower, upper);
+			setBoundsWithValidation(lower, upper, use9DigitZip);
 			
 		} catch (ZipCodeRangeException zcex) {
 			this.lowerBound = this.upperBound = ShippingConfigDefaults.MINIMUM_BOUND_VALUE;
@@ -78,14 +95,16 @@ public class ZipCodeRange  {
 			try {
 				setBoundsWithValidation(Integer.parseInt(zipCodes[0]), Integer.parseInt(zipCodes[1]));		
 			} catch (NumberFormatException | ZipCodeRangeException nfe) {
-				
+				if (nfe instanceof NumberFormatException) {
+					PipelineMetrics.getInstance().recordRejected(RangeStatus.UNPARSEABLE);
+				}
 				throw new ZipCodeRangeException(nfe.getMessage() + "\n" + MessageFormat.format(ShippingMessageConstants.ZC_RANGE_PARSE_ERROR, range));
 			}
 		}
 	}
 
 	/**
-	 * Validate bounds before setting the fields. 
+	 * Validate bounds for the configured {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP} mode before setting the fields. 
 	 * If validation fails with the passed in bounds, then we set the range to have both upper and lower =  MIN_BOUND_VALUE
 	 * <p>
 	 * Conditions:
@@ -96,17 +115,40 @@ public class ZipCodeRange  {
 	 * 
 	 */
 	public void setBoundsWithValidation(int lower, int upper) throws ZipCodeRangeException {
+		setBoundsWithValidation(lower, upper, ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+
+	/**
+	 * Validate bounds for 5 or 9 digit (ZIP+4) zip codes before setting the fields. 
+	 * If validation fails with the passed in bounds, then we set the range to have both upper and lower =  MIN_BOUND_VALUE
+	 * <p>
+	 * Conditions:
+	 *<br> 	1) 0 < lower bound <= 99999 (999999999 for 9 digit zip codes)
+	 *<br> 	2) lower bound < = upper bound
+	 *  
+	 * @param use9DigitZip - true to accept ZIP+4 bounds
+	 * @throws ZipCodeRangeException indicates failure to meet bound conditions 
+	 * 
+	 */
+	public void setBoundsWithValidation(int lower, int upper, boolean use9DigitZip) throws ZipCodeRangeException {
 		
 		int min = ShippingConfigDefaults.MINIMUM_BOUND_VALUE;
-		int max = ShippingConfigDefaults.MAXIMUM_BOUND_VALUE;
+		int max = getMaximumBoundValue(use9DigitZip);
 
+		RangeStatus status = validateBounds(lower, upper, use9DigitZip);
+		if (status == RangeStatus.VALID) {
+			lowerBound = lower;
+			upperBound = upper;
+			return;
+		}
+		PipelineMetrics.getInstance().recordRejected(status);
 		if ( lower  < min || max < lower ) {
-			String msg = MessageFormat.format(ShippingMessageConstants.ZC_VALUE_INVALID_MSG, "lower bound", String.valueOf(lower));
+			String msg = MessageFormat.format(ShippingMessageConstants.ZC_VALUE_INVALID_MSG, "lower bound", String.valueOf(lower), String.valueOf(max));
 			lowerBound = upperBound = min;
 			throw new ZipCodeRangeException (msg);
 		}
 		else if ( upper  < min || max < upper ) {
-			String msg = MessageFormat.format(ShippingMessageConstants.ZC_VALUE_INVALID_MSG, "upper bound", String.valueOf(upper));
+			String msg = MessageFormat.format(ShippingMessageConstants.ZC_VALUE_INVALID_MSG, "upper bound", String.valueOf(upper), String.valueOf(max));
 			lowerBound = upperBound = min;
 			throw new ZipCodeRangeException (msg);
 		}
@@ -115,12 +157,81 @@ public class ZipCodeRange  {
 			lowerBound = upperBound = min;
 			throw new ZipCodeRangeException (msg); 
 		}
-		else {
-			lowerBound = lower;
-			upperBound = upper;
-		}		
 	}
 	
+	/**
+	 * Check bounds against the same conditions as {@link #setBoundsWithValidation(int, int, boolean)} without
+	 * creating an object or an exception. Used by bulk loaders on the hot path.
+	 * 
+	 * @param lower - lower bound
+	 * @param upper - upper bound
+	 * @param use9DigitZip - true to accept ZIP+4 bounds
+	 * @return true if [lower, upper] is a valid range
+	 */
+	public static boolean isValidRange(int lower, int upper, boolean use9DigitZip) {
+		return ShippingConfigDefaults.MINIMUM_BOUND_VALUE <= lower && lower <= upper && upper <= getMaximumBoundValue(use9DigitZip);
+	}
+
+	/**
+	 * Check bounds like {@link #isValidRange(int, int, boolean)} and say why they were rejected. Out of bounds
+	 * wins over inverted when both apply, same order as {@link #setBoundsWithValidation(int, int, boolean)}.
+	 * 
+	 * @param lower - lower bound
+	 * @param upper - upper bound
+	 * @param use9DigitZip - true to accept ZIP+4 bounds
+	 * @return VALID, OUT_OF_BOUNDS or INVERTED
+	 */
+	public static RangeStatus validateBounds(int lower, int upper, boolean use9DigitZip) {
+		int min = ShippingConfigDefaults.MINIMUM_BOUND_VALUE;
+		int max = getMaximumBoundValue(use9DigitZip);
+		if (lower < min || max < lower || upper < min || max < upper) {
+			return RangeStatus.OUT_OF_BOUNDS;
+		}
+		return (lower > upper) ? RangeStatus.INVERTED : RangeStatus.VALID;
+	}
+
+	/**
+	 * Parse a bound without creating a substring or an exception. Used by the line based loaders with
+	 * {@link #validateBounds(int, int, boolean)}, which then reports a number too big for an int as out of bounds,
+	 * like {@link MappedRangeFileReader} does.
+	 * 
+	 * @param text - a line holding the bound
+	 * @param from - first char of the bound
+	 * @param to - first char past the bound
+	 * @return the digits of text [from, to) as an int, ignoring surrounding whitespace, Integer.MAX_VALUE if they
+	 * overflow an int, or -1 if they aren't a number
+	 */
+	public static int parseBound(String text, int from, int to) {
+		while (from < to && text.charAt(from) <= ' ') {
+			from++;
+		}
+		while (to > from && text.charAt(to - 1) <= ' ') {
+			to--;
+		}
+		if (from == to) {
+			return -1;
+		}
+		long value = 0;
+		for (int i = from; i < to; i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			if (value <= Integer.MAX_VALUE) {
+				value = value * 10 + (c - '0');
+			}
+		}
+		return (value > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) value;
+	}
+
+	/**
+	 * @param use9DigitZip - true for ZIP+4 codes
+	 * @return the largest valid bound, 99999 for 5 digit zip codes or 999999999 for 9 digit zip codes
+	 */
+	public static int getMaximumBoundValue(boolean use9DigitZip) {
+		return use9DigitZip ? ShippingConfigDefaults.MAXIMUM_9_DIGIT_BOUND_VALUE : ShippingConfigDefaults.MAXIMUM_BOUND_VALUE;
+	}
+
 	/** 
 	 * Construct a fixed format known string for this ZipCodeRange.
 	 * <p>
@@ -0,0 +1,508 @@
+package orders;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * Immutable, reduced set of zip code ranges packed in a single int[] as [lower0, upper0, lower1, upper1, ...].
+ * <p>
+ * The ranges are always sorted, disjoint and non adjacent (the minimal form) so two sets with the same
+ * restrictions have the same content. Equality and hash code are computed from that content which lets
+ * identical sets be shared, see {@link RestrictionStore}.
+ * <br>One int[] per set replaces an ArrayList and a {@link ZipCodeRange} object per range.
+ * <br>Union, intersection, difference and complement are single linear passes over the bound arrays.
+ * <br>{@link #coarsen(int)} trades precision for size when a consumer caps the number of ranges.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public final class ZipCodeRangeSet {
+
+	public static final ZipCodeRangeSet EMPTY = new ZipCodeRangeSet(new int [0]);
+
+	private final int [] bounds;
+	private int hash;
+
+	/**
+	 * @param bounds - packed bounds already in minimal form, not copied
+	 */
+	private ZipCodeRangeSet(int [] bounds) {
+		this.bounds = bounds;
+	}
+
+	/**
+	 * Create a set from ranges in any order. Overlapping and adjacent ranges are merged.
+	 * <p>
+	 * @param ranges - e.g. the output of {@link ShippingHelper#getReducedZipCodeRanges(boolean)}
+	 * @return the set in minimal form
+	 */
+	public static ZipCodeRangeSet fromZipCodeRanges(List<ZipCodeRange> ranges) {
+		int [] bounds = new int [ranges.size() << 1];
+		int i = 0;
+		for (ZipCodeRange range : ranges) {
+			bounds[i++] = range.getLowerBound();
+			bounds[i++] = range.getUpperBound();
+		}
+		return fromPackedBounds(bounds, bounds.length);
+	}
+
+	/**
+	 * Create a set from the ranges flagged in a helper.
+	 * <p>
+	 * @param helper - the helper holding an item's restrictions
+	 * @return the set in minimal form
+	 * @throws ZipCodeRangeException if the helper can't reduce its ranges
+	 */
+	public static ZipCodeRangeSet fromShippingHelper(ShippingHelper helper) throws ZipCodeRangeException {
+		return fromZipCodeRanges(helper.getReducedZipCodeRanges(true));
+	}
+
+	/**
+	 * Create a set from packed bounds in any order. Overlapping and adjacent ranges are merged.
+	 * <p>
+	 * @param bounds - packed bounds [lower0, upper0, lower1, upper1, ...] with lower <= upper, copied
+	 * @param length - number of ints to use from bounds, a multiple of 2
+	 * @return the set in minimal form
+	 */
+	public static ZipCodeRangeSet fromPackedBounds(int [] bounds, int length) {
+		if (length == 0) {
+			return EMPTY;
+		}
+		if (isMinimal(bounds, length)) {
+			return new ZipCodeRangeSet(Arrays.copyOf(bounds, length));
+		}
+
+		long [] ranges = new long [length >> 1];
+		for (int i = 0; i < ranges.length; i++) {
+			ranges[i] = ((long) bounds[i << 1] << 32) | (bounds[(i << 1) + 1] & 0xFFFFFFFFL);
+		}
+		Arrays.sort(ranges);
+
+		int [] merged = new int [length];
+		int count = 0;
+		for (long range : ranges) {
+			int lower = (int) (range >>> 32);
+			int upper = (int) range;
+			if (count > 0 && lower <= merged[count - 1] + 1) {
+				merged[count - 1] = Math.max(merged[count - 1], upper);
+			}
+			else {
+				merged[count++] = lower;
+				merged[count++] = upper;
+			}
+		}
+		return new ZipCodeRangeSet(Arrays.copyOf(merged, count));
+	}
+
+	/**
+	 * @return true if the bounds are sorted, disjoint and non adjacent
+	 */
+	private static boolean isMinimal(int [] bounds, int length) {
+		for (int i = 2; i < length; i += 2) {
+			if (bounds[i] <= bounds[i - 1] + 1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of ranges in the set
+	 */
+	public int size() {
+		return bounds.length >> 1;
+	}
+
+	/**
+	 * @return true if the set has no ranges
+	 */
+	public boolean isEmpty() {
+		return bounds.length == 0;
+	}
+
+	/**
+	 * @return the number of zip codes in the ranges
+	 */
+	public long getZipCodeCount() {
+		long count = 0;
+		for (int i = 0; i < bounds.length; i += 2) {
+			count += bounds[i + 1] - bounds[i] + 1L;
+		}
+		return count;
+	}
+
+	/**
+	 * @param index - range index in [0, size)
+	 * @return lower bound of the range
+	 */
+	public int getLowerBound(int index) {
+		return bounds[index << 1];
+	}
+
+	/**
+	 * @param index - range index in [0, size)
+	 * @return upper bound of the range
+	 */
+	public int getUpperBound(int index) {
+		return bounds[(index << 1) + 1];
+	}
+
+	/**
+	 * Check a single zip code against the set.
+	 * <br>Binary search for the last range with lower bound <= zipCode. The loop always runs log2(size) times
+	 * and each step picks the next base with a conditional move rather than a hard to predict branch.
+	 * <p>
+	 * @param zipCode - the zip code to look up
+	 * @return true if the zip code is in one of the ranges
+	 */
+	public boolean isRestricted(int zipCode) {
+		int n = bounds.length >> 1;
+		if (n == 0) {
+			return false;
+		}
+		int base = 0;
+		while (n > 1) {
+			int half = n >>> 1;
+			base = (bounds[(base + half) << 1] <= zipCode) ? base + half : base;
+			n -= half;
+		}
+		return bounds[base << 1] <= zipCode && zipCode <= bounds[(base << 1) + 1];
+	}
+
+	/**
+	 * Check a batch of zip codes against the set, e.g. every line of a cart or an order stream.
+	 * <br>Sorted (ascending) zip codes are merge joined with the ranges in a single O(n + size) pass,
+	 * otherwise each zip code is looked up with {@link #isRestricted(int)}.
+	 * <p>
+	 * @param zipCodes - the zip codes to look up
+	 * @return bit i is set when zipCodes[i] is in one of the ranges
+	 */
+	public BitSet isRestricted(int [] zipCodes) {
+		BitSet restricted = new BitSet(zipCodes.length);
+		if (isSorted(zipCodes)) {
+			int r = 0;
+			for (int i = 0; i < zipCodes.length; i++) {
+				int zipCode = zipCodes[i];
+				while (r < bounds.length && bounds[r + 1] < zipCode) {
+					r += 2;
+				}
+				if (r == bounds.length) {
+					break;
+				}
+				if (bounds[r] <= zipCode) {
+					restricted.set(i);
+				}
+			}
+		}
+		else {
+			for (int i = 0; i < zipCodes.length; i++) {
+				if (isRestricted(zipCodes[i])) {
+					restricted.set(i);
+				}
+			}
+		}
+		return restricted;
+	}
+
+	private static boolean isSorted(int [] values) {
+		for (int i = 1; i < values.length; i++) {
+			if (values[i] < values[i - 1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Zip codes in either set. One merge pass over both bound arrays, O(size + other.size).
+	 * <p>
+	 * @param other - the set to add
+	 * @return the union in minimal form
+	 */
+	public ZipCodeRangeSet union(ZipCodeRangeSet other) {
+		if (other.isEmpty()) {
+			return this;
+		}
+		if (isEmpty()) {
+			return other;
+		}
+		int [] a = bounds;
+		int [] b = other.bounds;
+		int [] result = new int [a.length + b.length];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length || j < b.length) {
+			int lower;
+			int upper;
+			if (j == b.length || (i < a.length && a[i] <= b[j])) {
+				lower = a[i];
+				upper = a[i + 1];
+				i += 2;
+			}
+			else {
+				lower = b[j];
+				upper = b[j + 1];
+				j += 2;
+			}
+			if (count > 0 && lower <= result[count - 1] + 1) {
+				result[count - 1] = Math.max(result[count - 1], upper);
+			}
+			else {
+				result[count++] = lower;
+				result[count++] = upper;
+			}
+		}
+		return of(result, count);
+	}
+
+	/**
+	 * Zip codes in both sets, e.g. a carrier allow list restricted by a deny list. O(size + other.size).
+	 * <p>
+	 * @param other - the set to intersect with
+	 * @return the intersection in minimal form
+	 */
+	public ZipCodeRangeSet intersect(ZipCodeRangeSet other) {
+		int [] a = bounds;
+		int [] b = other.bounds;
+		int [] result = new int [a.length + b.length];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			int lower = Math.max(a[i], b[j]);
+			int upper = Math.min(a[i + 1], b[j + 1]);
+			if (lower <= upper) {
+				result[count++] = lower;
+				result[count++] = upper;
+			}
+			if (a[i + 1] < b[j + 1]) {
+				i += 2;
+			}
+			else {
+				j += 2;
+			}
+		}
+		return of(result, count);
+	}
+
+	/**
+	 * Zip codes in this set but not in the other one. O(size + other.size).
+	 * <p>
+	 * @param other - the set to remove
+	 * @return the difference in minimal form
+	 */
+	public ZipCodeRangeSet subtract(ZipCodeRangeSet other) {
+		if (isEmpty() || other.isEmpty()) {
+			return this;
+		}
+		int [] a = bounds;
+		int [] b = other.bounds;
+		int [] result = new int [a.length + b.length];
+		int count = 0;
+		int j = 0;
+		for (int i = 0; i < a.length; i += 2) {
+			int lower = a[i];
+			int upper = a[i + 1];
+			while (j < b.length && b[j + 1] < lower) {
+				j += 2;
+			}
+			// cut out every range of the other set that overlaps [lower, upper]
+			int k = j;
+			while (k < b.length && b[k] <= upper) {
+				if (b[k] > lower) {
+					result[count++] = lower;
+					result[count++] = b[k] - 1;
+				}
+				lower = b[k + 1] + 1;
+				if (lower > upper) {
+					break;
+				}
+				k += 2;
+			}
+			if (lower <= upper) {
+				result[count++] = lower;
+				result[count++] = upper;
+			}
+		}
+		return of(result, count);
+	}
+
+	/**
+	 * Zip codes in [min, max] that aren't in the set, e.g. where an item can ship. O(size).
+	 * <p>
+	 * @param min - smallest zip code of the universe
+	 * @param max - largest zip code of the universe
+	 * @return the complement in minimal form
+	 */
+	public ZipCodeRangeSet complement(int min, int max) {
+		int [] result = new int [bounds.length + 2];
+		int count = 0;
+		int next = min;
+		for (int i = 0; i < bounds.length && next <= max; i += 2) {
+			if (bounds[i] > next) {
+				result[count++] = next;
+				result[count++] = Math.min(bounds[i] - 1, max);
+			}
+			next = Math.max(next, bounds[i + 1] + 1);
+		}
+		if (next <= max) {
+			result[count++] = next;
+			result[count++] = max;
+		}
+		return of(result, count);
+	}
+
+	/**
+	 * Complement over every valid zip code, same ranges as {@link ShippingHelper#getReducedZipCodeRanges(boolean)}
+	 * with false.
+	 * <p>
+	 * @param use9DigitZip - true for the ZIP+4 universe
+	 * @return the complement in minimal form
+	 */
+	public ZipCodeRangeSet complement(boolean use9DigitZip) {
+		return complement(ShippingConfigDefaults.MINIMUM_BOUND_VALUE, ZipCodeRange.getMaximumBoundValue(use9DigitZip));
+	}
+
+	/**
+	 * Lossy reduction to at most maxRanges ranges, for rule tables with a fixed size.
+	 * <br>The smallest gaps between neighbouring ranges are closed first, so the result only ever restricts more
+	 * zip codes, never fewer, and restricts as few extra zip codes as any set of maxRanges ranges covering this one.
+	 * The extra zip codes are coarsen(k).getZipCodeCount() - getZipCodeCount().
+	 * <p>
+	 * The gaps are packed as (size, index) longs in a min heap built in O(size) and the size - maxRanges smallest
+	 * are popped, O(size log size) overall.
+	 * <p>
+	 * @param maxRanges - the budget, at least 1
+	 * @return this set if it already fits, otherwise a superset of maxRanges ranges
+	 * @throws IllegalArgumentException if maxRanges < 1
+	 */
+	public ZipCodeRangeSet coarsen(int maxRanges) {
+		if (maxRanges < 1) {
+			throw new IllegalArgumentException("maxRanges must be at least 1, was " + maxRanges);
+		}
+		int ranges = size();
+		if (ranges <= maxRanges) {
+			return this;
+		}
+
+		// gap i lies between range i and range i + 1, ties close the lower gap first
+		int gapCount = ranges - 1;
+		long [] heap = new long [gapCount];
+		for (int i = 0; i < gapCount; i++) {
+			long gap = bounds[(i + 1) << 1] - bounds[(i << 1) + 1] - 1;
+			heap[i] = (gap << 32) | i;
+		}
+		for (int i = (gapCount >>> 1) - 1; i >= 0; i--) {
+			siftDown(heap, i, gapCount);
+		}
+		boolean [] closed = new boolean [gapCount];
+		int heapSize = gapCount;
+		for (int i = ranges - maxRanges; i > 0; i--) {
+			closed[(int) heap[0]] = true;
+			heap[0] = heap[--heapSize];
+			siftDown(heap, 0, heapSize);
+		}
+
+		int [] result = new int [maxRanges << 1];
+		int count = 0;
+		result[count++] = bounds[0];
+		for (int i = 0; i < gapCount; i++) {
+			if (!closed[i]) {
+				result[count++] = bounds[(i << 1) + 1];
+				result[count++] = bounds[(i + 1) << 1];
+			}
+		}
+		result[count++] = bounds[bounds.length - 1];
+		return of(result, count);
+	}
+
+	private static void siftDown(long [] heap, int index, int size) {
+		long value = heap[index];
+		int child;
+		while ((child = (index << 1) + 1) < size) {
+			if (child + 1 < size && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (heap[child] >= value) {
+				break;
+			}
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = value;
+	}
+
+	/**
+	 * @param bounds - packed bounds already in minimal form
+	 * @param length - number of ints to use
+	 */
+	private static ZipCodeRangeSet of(int [] bounds, int length) {
+		if (length == 0) {
+			return EMPTY;
+		}
+		return new ZipCodeRangeSet(length == bounds.length ? bounds : Arrays.copyOf(bounds, length));
+	}
+
+	/**
+	 * @return a copy of the packed bounds [lower0, upper0, lower1, upper1, ...]
+	 */
+	public int [] toPackedBounds() {
+		return bounds.clone();
+	}
+
+	/**
+	 * @return the ranges as {@link ZipCodeRange} objects, in ascending order
+	 * @throws ZipCodeRangeException if a range is out of bounds
+	 */
+	public ArrayList<ZipCodeRange> toZipCodeRanges() throws ZipCodeRangeException {
+		boolean use9DigitZip = !isEmpty() && bounds[bounds.length - 1] > ShippingConfigDefaults.MAXIMUM_BOUND_VALUE;
+		ArrayList<ZipCodeRange> ranges = new ArrayList<ZipCodeRange>(size());
+		for (int i = 0; i < bounds.length; i += 2) {
+			ranges.add(new ZipCodeRange(bounds[i], bounds[i + 1], use9DigitZip));
+		}
+		return ranges;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ZipCodeRangeSet)) {
+			return false;
+		}
+		ZipCodeRangeSet other = (ZipCodeRangeSet) obj;
+		return hashCode() == other.hashCode() && Arrays.equals(bounds, other.bounds);
+	}
+
+	/**
+	 * Content hash of the bounds, computed once.
+	 */
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0 && bounds.length > 0) {
+			h = Arrays.hashCode(bounds);
+			hash = h;
+		}
+		return h;
+	}
+
+	/**
+	 * @return the ranges in interval notation, e.g. [94133,94133][94200,94399]
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < bounds.length; i += 2) {
+			builder.append('[').append(bounds[i]).append(',').append(bounds[i + 1]).append(']');
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,277 @@
+package orders;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.MessageFormat;
+import java.util.zip.CRC32;
+
+import config.ShippingMessageConstants;
+
+/**
+ * Compact binary file for a reduced {@link ZipCodeRangeSet}, served straight from a memory mapped buffer.
+ * <p>
+ * Layout, big endian:
+ * <br>header - magic "ZCRS", version (short), reserved (short), range count, index interval, payload length and
+ * the CRC32 of everything after the header
+ * <br>index - one entry per INDEX_INTERVAL ranges: the lower bound of the first range in the block and the
+ * offset of the block in the payload
+ * <br>payload - per range, the gap from the previous upper bound (0 at the start of a block) and the size
+ * (upper - lower), each as an unsigned varint
+ * <p>
+ * A lookup binary searches the index and decodes at most one block of ranges, so a file is usable as soon as
+ * it's mapped and checked, without building {@link ZipCodeRange} objects or a packed int[].
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public final class ZipCodeRangeSetFile {
+
+	public static final int MAGIC = 0x5A435253;
+	public static final short VERSION = 1;
+
+	static final int HEADER_SIZE = 24;
+	static final int INDEX_INTERVAL = 64;
+	private static final int INDEX_ENTRY_SIZE = 8;
+	private static final int CRC_OFFSET = 20;
+
+	/**
+	 * A varint holds 7 bits per byte, an int takes up to 5 bytes.
+	 */
+	private static final int MAX_VARINT_SIZE = 5;
+
+	private final ByteBuffer buffer;
+	private final int rangeCount;
+	private final int indexCount;
+	private final int payloadStart;
+
+	private ZipCodeRangeSetFile(ByteBuffer buffer, int rangeCount) {
+		this.buffer = buffer;
+		this.rangeCount = rangeCount;
+		this.indexCount = (rangeCount + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+		this.payloadStart = HEADER_SIZE + indexCount * INDEX_ENTRY_SIZE;
+	}
+
+	/**
+	 * Write the set to a binary file, replacing the file if it exists.
+	 * <p>
+	 * @param ranges - the reduced ranges
+	 * @param fileName - the output file
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(ZipCodeRangeSet ranges, String fileName) throws IOException {
+		ByteBuffer buffer = encode(ranges);
+		FileChannel channel = new FileOutputStream(fileName).getChannel();
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Encode the set in a heap buffer, flipped and ready to write.
+	 */
+	static ByteBuffer encode(ZipCodeRangeSet ranges) {
+		int count = ranges.size();
+		int indexCount = (count + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+		int payloadStart = HEADER_SIZE + indexCount * INDEX_ENTRY_SIZE;
+		ByteBuffer buffer = ByteBuffer.allocate(payloadStart + count * 2 * MAX_VARINT_SIZE);
+
+		buffer.position(payloadStart);
+		int previousUpper = 0;
+		for (int i = 0; i < count; i++) {
+			int lower = ranges.getLowerBound(i);
+			int upper = ranges.getUpperBound(i);
+			if (i % INDEX_INTERVAL == 0) {
+				int entry = HEADER_SIZE + (i / INDEX_INTERVAL) * INDEX_ENTRY_SIZE;
+				buffer.putInt(entry, lower);
+				buffer.putInt(entry + 4, buffer.position() - payloadStart);
+				previousUpper = 0;
+			}
+			putVarint(buffer, lower - previousUpper);
+			putVarint(buffer, upper - lower);
+			previousUpper = upper;
+		}
+		int end = buffer.position();
+
+		buffer.putInt(0, MAGIC);
+		buffer.putShort(4, VERSION);
+		buffer.putShort(6, (short) 0);
+		buffer.putInt(8, count);
+		buffer.putInt(12, INDEX_INTERVAL);
+		buffer.putInt(16, end - payloadStart);
+		buffer.putInt(CRC_OFFSET, checksum(buffer, HEADER_SIZE, end));
+
+		buffer.position(0);
+		buffer.limit(end);
+		return buffer;
+	}
+
+	/**
+	 * Memory map a binary file and check its header and checksum.
+	 * <p>
+	 * @param fileName - a file written by {@link #write(ZipCodeRangeSet, String)}
+	 * @return the mapped set
+	 * @throws IOException if the file can't be read or mapped
+	 * @throws ZipCodeRangeException if the file isn't a valid range set file
+	 */
+	public static ZipCodeRangeSetFile map(String fileName) throws IOException, ZipCodeRangeException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		MappedByteBuffer buffer;
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+				throw invalid(fileName, "size " + channel.size());
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			file.close();
+		}
+		return wrap(buffer, fileName);
+	}
+
+	/**
+	 * Check the header and checksum of an encoded set.
+	 */
+	static ZipCodeRangeSetFile wrap(ByteBuffer buffer, String name) throws ZipCodeRangeException {
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw invalid(name, "bad magic number");
+		}
+		if (buffer.getShort(4) != VERSION) {
+			throw invalid(name, "unsupported version " + buffer.getShort(4));
+		}
+		int count = buffer.getInt(8);
+		if (count < 0 || buffer.getInt(12) != INDEX_INTERVAL) {
+			throw invalid(name, "bad header");
+		}
+		ZipCodeRangeSetFile file = new ZipCodeRangeSetFile(buffer, count);
+		long end = (long) file.payloadStart + buffer.getInt(16);
+		if (end != buffer.limit()) {
+			throw invalid(name, "expected " + end + " bytes, found " + buffer.limit());
+		}
+		if (checksum(buffer, HEADER_SIZE, (int) end) != buffer.getInt(CRC_OFFSET)) {
+			throw invalid(name, "checksum mismatch");
+		}
+		return file;
+	}
+
+	private static ZipCodeRangeException invalid(String name, String reason) {
+		return new ZipCodeRangeException(MessageFormat.format(ShippingMessageConstants.ZC_RANGE_FILE_INVALID_MSG, name, reason));
+	}
+
+	/**
+	 * @return the number of ranges in the file
+	 */
+	public int size() {
+		return rangeCount;
+	}
+
+	/**
+	 * Check a single zip code against the mapped ranges.
+	 * <br>Binary search the index for the last block starting at or before zipCode, then decode that block.
+	 * <p>
+	 * @param zipCode - the zip code to look up
+	 * @return true if the zip code is in one of the ranges
+	 */
+	public boolean isRestricted(int zipCode) {
+		int low = 0;
+		int high = indexCount - 1;
+		int block = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (buffer.getInt(HEADER_SIZE + middle * INDEX_ENTRY_SIZE) <= zipCode) {
+				block = middle;
+				low = middle + 1;
+			}
+			else {
+				high = middle - 1;
+			}
+		}
+		if (block < 0) {
+			return false;
+		}
+
+		int position = payloadStart + buffer.getInt(HEADER_SIZE + block * INDEX_ENTRY_SIZE + 4);
+		int ranges = Math.min(INDEX_INTERVAL, rangeCount - block * INDEX_INTERVAL);
+		int upper = 0;
+		for (int i = 0; i < ranges; i++) {
+			long gap = getVarint(buffer, position);
+			position += (int) (gap >>> 32);
+			int lower = upper + (int) gap;
+			if (lower > zipCode) {
+				return false;
+			}
+			long size = getVarint(buffer, position);
+			position += (int) (size >>> 32);
+			upper = lower + (int) size;
+			if (zipCode <= upper) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Decode every range, e.g. to hand the set to a {@link RestrictionStore}.
+	 * @return the ranges as an in memory set
+	 */
+	public ZipCodeRangeSet toZipCodeRangeSet() {
+		int [] bounds = new int [rangeCount << 1];
+		int position = payloadStart;
+		int upper = 0;
+		for (int i = 0; i < rangeCount; i++) {
+			if (i % INDEX_INTERVAL == 0) {
+				upper = 0;
+			}
+			long gap = getVarint(buffer, position);
+			position += (int) (gap >>> 32);
+			long size = getVarint(buffer, position);
+			position += (int) (size >>> 32);
+			bounds[i << 1] = upper + (int) gap;
+			upper = bounds[i << 1] + (int) size;
+			bounds[(i << 1) + 1] = upper;
+		}
+		return ZipCodeRangeSet.fromPackedBounds(bounds, bounds.length);
+	}
+
+	private static void putVarint(ByteBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * Read an unsigned varint without moving the buffer position.
+	 * @return the number of bytes read in the high int and the value in the low int
+	 */
+	private static long getVarint(ByteBuffer buffer, int position) {
+		int value = 0;
+		int shift = 0;
+		int read = 0;
+		byte b;
+		do {
+			b = buffer.get(position + read++);
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return ((long) read << 32) | (value & 0xFFFFFFFFL);
+	}
+
+	private static int checksum(ByteBuffer buffer, int start, int end) {
+		ByteBuffer region = buffer.duplicate();
+		region.limit(end);
+		region.position(start);
+		CRC32 crc = new CRC32();
+		crc.update(region);
+		return (int) crc.getValue();
+	}
+
+}
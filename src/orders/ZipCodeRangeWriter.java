@@ -0,0 +1,178 @@
+package orders;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * High throughput writer for reduced ranges to an {@link OutputSink}.
+ * <p>
+ * Bounds are encoded as zero padded ASCII digits (00001 or 000000001 in 9 digit mode) straight into a reusable
+ * byte buffer, and the buffer is written through a {@link FileChannel} when it fills up. No String or
+ * MessageFormat work per range.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class ZipCodeRangeWriter implements RangeSink, Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Longest line: '[' + 10 digits + ',' + 10 digits + ']' + '\n'
+	 */
+	private static final int MAX_LINE_SIZE = 24;
+
+	private final OutputSink sink;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final int digits;
+	private long rangeCount;
+
+	/**
+	 * Create a writer for the configured {@link ShippingConfigDefaults#USE_9_DIGIT_ZIP} mode.
+	 * <p>
+	 * @param sink - where the ranges go
+	 * @param fileName - output file for the CSV_FILE sink, ignored by the others
+	 * @throws IOException if the output file can't be opened
+	 */
+	public ZipCodeRangeWriter(OutputSink sink, String fileName) throws IOException {
+		this(sink, fileName, ShippingConfigDefaults.USE_9_DIGIT_ZIP);
+	}
+
+	/**
+	 * @param sink - where the ranges go
+	 * @param fileName - output file for the CSV_FILE sink, ignored by the others
+	 * @param use9DigitZip - true to pad bounds to 9 digits rather than 5
+	 * @throws IOException if the output file can't be opened
+	 */
+	@SuppressWarnings("resource")
+	public ZipCodeRangeWriter(OutputSink sink, String fileName, boolean use9DigitZip) throws IOException {
+		this.sink = sink;
+		this.digits = use9DigitZip ? 9 : 5;
+		switch (sink) {
+			case CSV_FILE:
+				channel = new FileOutputStream(fileName).getChannel();
+				break;
+			case STDOUT:
+				channel = new FileOutputStream(FileDescriptor.out).getChannel();
+				break;
+			default:
+				channel = null;
+		}
+		buffer = (channel == null) ? null : ByteBuffer.allocate(BUFFER_SIZE);
+	}
+
+	/**
+	 * Encode one range in the buffer, "lower,upper" for a file or "[lower,upper]" for the console.
+	 */
+	@Override
+	public void acceptRange(int lower, int upper) throws IOException {
+		rangeCount++;
+		if (channel == null) {
+			return;
+		}
+		if (buffer.remaining() < MAX_LINE_SIZE) {
+			flush();
+		}
+		boolean console = (sink == OutputSink.STDOUT);
+		if (console) {
+			buffer.put((byte) '[');
+		}
+		putZeroPadded(lower);
+		buffer.put((byte) ',');
+		putZeroPadded(upper);
+		if (console) {
+			buffer.put((byte) ']');
+		}
+		buffer.put((byte) '\n');
+	}
+
+	/**
+	 * @param ranges - reduced ranges in ascending order
+	 * @throws IOException if the ranges can't be written
+	 */
+	public void writeRanges(List<ZipCodeRange> ranges) throws IOException {
+		for (ZipCodeRange range : ranges) {
+			acceptRange(range.getLowerBound(), range.getUpperBound());
+		}
+	}
+
+	/**
+	 * @param ranges - reduced ranges
+	 * @throws IOException if the ranges can't be written
+	 */
+	public void writeRanges(ZipCodeRangeSet ranges) throws IOException {
+		for (int i = 0; i < ranges.size(); i++) {
+			acceptRange(ranges.getLowerBound(i), ranges.getUpperBound(i));
+		}
+	}
+
+	/**
+	 * @return the number of ranges written so far
+	 */
+	public long getRangeCount() {
+		return rangeCount;
+	}
+
+	/**
+	 * Write out whatever is in the buffer.
+	 * @throws IOException if the output can't be written
+	 */
+	public void flush() throws IOException {
+		if (channel == null) {
+			return;
+		}
+		if (sink == OutputSink.STDOUT) {
+			System.out.flush();
+		}
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Flush the buffer and close the output file. The console stays open.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		if (sink == OutputSink.CSV_FILE) {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Write the value as ASCII digits, right to left, padded with zeros to the zip code width.
+	 */
+	private void putZeroPadded(int value) {
+		int width = Math.max(digits, stringSize(value));
+		int end = buffer.position() + width;
+		for (int i = end - 1; i >= end - width; i--) {
+			buffer.put(i, (byte) ('0' + value % 10));
+			value /= 10;
+		}
+		buffer.position(end);
+	}
+
+	/**
+	 * @return number of digits of a non negative value
+	 */
+	private static int stringSize(int value) {
+		int size = 1;
+		while (value >= 10) {
+			value /= 10;
+			size++;
+		}
+		return size;
+	}
+
+}
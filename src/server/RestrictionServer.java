@@ -0,0 +1,283 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import orders.RestrictionService;
+import orders.RestrictionSnapshot;
+
+/**
+ * Embedded HTTP server for restriction lookups against the current snapshot of a {@link RestrictionService}.
+ * Built on the JDK's com.sun.net.httpserver, no other infrastructure needed.
+ * <p>
+ * Requests, all answered in text/plain:
+ * <br>GET /restricted?item=SKU-1&amp;zip=94133 - "1" if the item can't be shipped to the zip code, else "0"
+ * <br>POST /restricted/batch?item=SKU-1 - body of zip codes separated by commas or white space, answered with one
+ * "1" or "0" per zip code in the same order, e.g. "0110"
+ * <br>GET /version - the version of the snapshot being served
+ * <p>
+ * Each request runs on its own virtual thread when the JDK has them (21+), so there is no thread pool ceiling
+ * on concurrent requests. Older JDKs fall back to a cached thread pool. A batch is answered from a single
+ * snapshot, even if a reload is published halfway through it.
+ * <p>
+ * @author Julie Sampson
+ *
+ */
+public class RestrictionServer {
+
+	public static final String RESTRICTED_PATH = "/restricted";
+	public static final String BATCH_PATH = "/restricted/batch";
+	public static final String VERSION_PATH = "/version";
+
+	private static final int HTTP_OK = 200;
+	private static final int HTTP_BAD_REQUEST = 400;
+	private static final int HTTP_NOT_FOUND = 404;
+	private static final int HTTP_BAD_METHOD = 405;
+
+	/**
+	 * Largest batch body accepted, about 100000 zip codes.
+	 */
+	private static final int MAX_BATCH_SIZE = 1 << 20;
+
+	private final RestrictionService service;
+	private final HttpServer httpServer;
+	private final ExecutorService executor;
+
+	/**
+	 * Bind the server, {@link #start()} it to serve requests.
+	 * <p>
+	 * @param service - the restrictions to serve
+	 * @param address - where to listen, port 0 picks a free port
+	 * @throws IOException if the address can't be bound
+	 */
+	public RestrictionServer(RestrictionService service, InetSocketAddress address) throws IOException {
+		this.service = service;
+		this.httpServer = HttpServer.create(address, 0);
+		this.executor = newRequestExecutor();
+		httpServer.setExecutor(executor);
+		httpServer.createContext(RESTRICTED_PATH, new RestrictedHandler());
+		httpServer.createContext(BATCH_PATH, new BatchHandler());
+		httpServer.createContext(VERSION_PATH, new VersionHandler());
+	}
+
+	/**
+	 * Start serving requests on a background thread.
+	 */
+	public void start() {
+		httpServer.start();
+	}
+
+	/**
+	 * Stop accepting requests and shut the request threads down.
+	 * @param delaySeconds - how long to wait for requests in flight
+	 */
+	public void stop(int delaySeconds) {
+		httpServer.stop(delaySeconds);
+		executor.shutdown();
+	}
+
+	/**
+	 * @return the port the server listens on
+	 */
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * Look up Executors.newVirtualThreadPerTaskExecutor() by reflection so the code still builds and runs on JDK 17.
+	 * @return a virtual thread per task executor, or a cached thread pool when the JDK has no virtual threads
+	 */
+	static ExecutorService newRequestExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * GET /restricted?item=SKU-1&amp;zip=94133
+	 */
+	private final class RestrictedHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			if (!RESTRICTED_PATH.equals(exchange.getRequestURI().getPath())) {
+				send(exchange, HTTP_NOT_FOUND, "Unknown path");
+				return;
+			}
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				send(exchange, HTTP_BAD_METHOD, "Use GET");
+				return;
+			}
+			Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+			String itemId = query.get("item");
+			int zipCode = parseZipCode(query.get("zip"));
+			if (itemId == null || zipCode < 0) {
+				send(exchange, HTTP_BAD_REQUEST, "Expected item and zip parameters");
+				return;
+			}
+			send(exchange, HTTP_OK, service.isRestricted(itemId, zipCode) ? "1" : "0");
+		}
+	}
+
+	/**
+	 * POST /restricted/batch?item=SKU-1 with zip codes in the body.
+	 */
+	private final class BatchHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				send(exchange, HTTP_BAD_METHOD, "Use POST");
+				return;
+			}
+			String itemId = parseQuery(exchange.getRequestURI().getRawQuery()).get("item");
+			byte [] body = readBody(exchange.getRequestBody());
+			int [] zipCodes = (body == null) ? null : parseZipCodes(body);
+			if (itemId == null || zipCodes == null) {
+				send(exchange, HTTP_BAD_REQUEST, "Expected an item parameter and up to " + MAX_BATCH_SIZE + " bytes of zip codes");
+				return;
+			}
+
+			RestrictionSnapshot snapshot = service.getSnapshot();
+			BitSet restricted = snapshot.isRestricted(itemId, zipCodes);
+			byte [] response = new byte [zipCodes.length];
+			for (int i = 0; i < response.length; i++) {
+				response[i] = (byte) (restricted.get(i) ? '1' : '0');
+			}
+			send(exchange, HTTP_OK, response);
+		}
+	}
+
+	/**
+	 * GET /version
+	 */
+	private final class VersionHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			send(exchange, HTTP_OK, String.valueOf(service.getSnapshot().getVersion()));
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String text) throws IOException {
+		send(exchange, status, text.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private static void send(HttpExchange exchange, int status, byte [] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=US-ASCII");
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(body);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return the name=value pairs of a raw query string, an empty map if there isn't one
+	 */
+	static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if (rawQuery == null) {
+			return parameters;
+		}
+		for (String pair : rawQuery.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0) {
+				parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+							   URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * @return the zip code, or -1 if the text isn't 1 to 9 digits
+	 */
+	static int parseZipCode(String text) {
+		if (text == null || text.isEmpty() || text.length() > 9) {
+			return -1;
+		}
+		int value = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Parse zip codes of up to 9 digits separated by commas or white space straight from the body bytes.
+	 * @return the zip codes in order, or null if the body holds anything else
+	 */
+	static int [] parseZipCodes(byte [] body) {
+		int [] zipCodes = new int [16];
+		int count = 0;
+		int value = 0;
+		int digits = 0;
+		for (int i = 0; i <= body.length; i++) {
+			int b = (i < body.length) ? body[i] : ' ';
+			if (b >= '0' && b <= '9') {
+				if (++digits > 9) {
+					return null;
+				}
+				value = value * 10 + (b - '0');
+			}
+			else if (b == ',' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+				if (digits > 0) {
+					if (count == zipCodes.length) {
+						zipCodes = Arrays.copyOf(zipCodes, count << 1);
+					}
+					zipCodes[count++] = value;
+				}
+				value = 0;
+				digits = 0;
+			}
+			else {
+				return null;
+			}
+		}
+		return Arrays.copyOf(zipCodes, count);
+	}
+
+	/**
+	 * @return the whole body, or null if it's larger than MAX_BATCH_SIZE
+	 */
+	private static byte [] readBody(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte [] buffer = new byte [8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				body.write(buffer, 0, read);
+				if (body.size() > MAX_BATCH_SIZE) {
+					return null;
+				}
+			}
+			return body.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,142 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * Many threads flagging the same helper must neither lose ranges nor let a reader see half a range.
+ *
+ * @author Julie Sampson
+ *
+ */
+public class AtomicBitmapRangeReducerTest {
+
+	private static final int THREADS = 4;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Every thread flags every 4th zip code starting at its own offset, so all the threads write to the same words.
+	 */
+	@Test
+	public void testConcurrentFlaggingLosesNothing() throws Exception {
+
+		final ShippingHelper helper = new ShippingHelper(RangeReducerType.CONCURRENT_BITMAP.newReducer());
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+		for (int t = 0; t < THREADS; t++) {
+			final int offset = t;
+			results.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int zipCode = 1 + offset; zipCode <= 99996; zipCode += THREADS) {
+						helper.setFlagForZipCodesInRange(zipCode, zipCode);
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> result : results) {
+			result.get();
+		}
+		assertEquals("[1,99996]", ZipCodeRangeSet.fromShippingHelper(helper).toString());
+	}
+
+	/**
+	 * A writer keeps adding and removing the same wide range, every reduction must see all of it or none of it.
+	 */
+	@Test
+	public void testReducedRangesAreConsistent() throws Exception {
+
+		final ShippingHelper helper = new ShippingHelper(RangeReducerType.CONCURRENT_BITMAP.newReducer());
+		final ZipCodeRange range = new ZipCodeRange(100, 90000);
+		final AtomicBoolean done = new AtomicBoolean();
+		Future<Void> writer = executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() {
+				while (!done.get()) {
+					helper.setFlagForZipCodesInRange(range.getLowerBound(), range.getUpperBound());
+					helper.clearFlagForZipCodesInRange(range);
+				}
+				return null;
+			}
+		});
+
+		try {
+			for (int i = 0; i < 2000; i++) {
+				String reduced = ZipCodeRangeSet.fromShippingHelper(helper).toString();
+				assertTrue(reduced, reduced.isEmpty() || reduced.equals("[100,90000]"));
+			}
+		} finally {
+			done.set(true);
+			writer.get();
+		}
+	}
+
+	/**
+	 * Writers never pause, every snapshot must still complete and hold each writer's range fully or not at all.
+	 */
+	@Test(timeout = 60000)
+	public void testSnapshotsCompleteUnderConstantWrites() throws Exception {
+
+		final AtomicZipCodeBitmap bitmap = new AtomicZipCodeBitmap(ShippingConfigDefaults.MAXIMUM_BOUND_VALUE);
+		final AtomicBoolean done = new AtomicBoolean();
+		List<Future<Void>> writers = new ArrayList<Future<Void>>();
+		for (int t = 0; t < THREADS; t++) {
+			final int lower = 1 + t * 20000;
+			writers.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					while (!done.get()) {
+						bitmap.setRange(lower, lower + 9999);
+						bitmap.clearRange(lower, lower + 9999);
+					}
+					return null;
+				}
+			}));
+		}
+
+		try {
+			for (int i = 0; i < 200; i++) {
+				ZipCodeBitmap snapshot = bitmap.snapshot();
+				for (int t = 0; t < THREADS; t++) {
+					int lower = 1 + t * 20000;
+					boolean flagged = snapshot.get(lower);
+					int next = flagged ? snapshot.nextClearBit(lower) : snapshot.nextSetBit(lower);
+					assertTrue("snapshot " + i + " holds part of [" + lower + "," + (lower + 9999) + "]",
+							   flagged ? next == lower + 10000 : (next < 0 || next > lower + 9999));
+				}
+			}
+		} finally {
+			done.set(true);
+			for (Future<Void> writer : writers) {
+				writer.get();
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Julie Sampson
+ *
+ */
+public class MappedRangeFileReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLoadValidRanges() throws IOException, ZipCodeRangeException {
+
+		ShippingHelper helper = new ShippingHelper();
+		MappedRangeFileReader reader = new MappedRangeFileReader(helper, false);
+		reader.load(writeInput("00001,00003\r\n94200,94299\r\n\r\n 94226 , 94399 \r\n99999,99999"));
+
+		assertEquals("[1,3][94200,94399][99999,99999]", ZipCodeRangeSet.fromShippingHelper(helper).toString());
+		assertEquals(4, reader.getRangeCount());
+		assertEquals(0, reader.getRejectedRowCount());
+	}
+
+	@Test
+	public void testRejectInvalidRows() throws IOException, ZipCodeRangeException {
+
+		ShippingHelper helper = new ShippingHelper();
+		MappedRangeFileReader reader = new MappedRangeFileReader(helper, false);
+		reader.load(writeInput("10000,10005\n0,500\n10000,5000\n100000,100001\nabc,def\n1,2,3\n10000\n,10000\n"
+							   + "99999999999999999999,1\n20000,20005\n100 05,10010\n"));
+
+		assertEquals("[10000,10005][20000,20005]", ZipCodeRangeSet.fromShippingHelper(helper).toString());
+		assertEquals(2, reader.getRangeCount());
+		assertEquals(9, reader.getRejectedRowCount());
+	}
+
+	@Test
+	public void testRejectCountsAndFile() throws IOException, ZipCodeRangeException {
+
+		ShippingHelper helper = new ShippingHelper();
+		MappedRangeFileReader reader = new MappedRangeFileReader(helper, false);
+		File rejectFile = folder.newFile();
+		RejectedRowWriter rejects = new RejectedRowWriter(rejectFile.getPath());
+		reader.setRejectedRowWriter(rejects);
+		reader.load(writeInput("10000,10005\r\n0,500\r\n10000,5000\nabc,def\n99999999999999999999,1\n20000,20005\n1 2,3\n1,2,3"));
+		rejects.close();
+
+		assertEquals(2, reader.getRejectedRowCount(RangeStatus.OUT_OF_BOUNDS));
+		assertEquals(1, reader.getRejectedRowCount(RangeStatus.INVERTED));
+		assertEquals(3, reader.getRejectedRowCount(RangeStatus.UNPARSEABLE));
+		assertEquals(0, reader.getRejectedRowCount(RangeStatus.VALID));
+		assertEquals(6, rejects.getRowCount());
+		assertEquals("OUT_OF_BOUNDS,0,500\nINVERTED,10000,5000\nUNPARSEABLE,abc,def\nOUT_OF_BOUNDS,99999999999999999999,1\n"
+					 + "UNPARSEABLE,1 2,3\nUNPARSEABLE,1,2,3\n",
+					 new String(Files.readAllBytes(rejectFile.toPath()), StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	public void testLoadNineDigitRanges() throws IOException, ZipCodeRangeException {
+
+		ShippingHelper helper = new ShippingHelper(RangeReducerType.CHUNKED.newReducer(true));
+		MappedRangeFileReader reader = new MappedRangeFileReader(helper, true);
+		reader.load(writeInput("941330001,941330099\n000000001,000000002\n"));
+
+		assertEquals("[1,2][941330001,941330099]", ZipCodeRangeSet.fromShippingHelper(helper).toString());
+	}
+
+	private String writeInput(String content) throws IOException {
+
+		File file = folder.newFile();
+		FileWriter writer = new FileWriter(file);
+		writer.write(content);
+		writer.close();
+		return file.getPath();
+	}
+}
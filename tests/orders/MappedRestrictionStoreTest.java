@@ -0,0 +1,128 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A mapped store must answer exactly like the heap store it was written from.
+ *
+ * @author Julie Sampson
+ *
+ */
+public class MappedRestrictionStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLookupsMatchHeapStore() throws IOException, ZipCodeRangeException {
+
+		Random random = new Random(42);
+		ZipCodeRangeSet [] profiles = new ZipCodeRangeSet [20];
+		for (int p = 0; p < profiles.length; p++) {
+			int count = random.nextInt(50);
+			int [] bounds = new int [count << 1];
+			for (int i = 0; i < count; i++) {
+				int lower = 1 + random.nextInt(99000);
+				bounds[i << 1] = lower;
+				bounds[(i << 1) + 1] = lower + random.nextInt(500);
+			}
+			profiles[p] = ZipCodeRangeSet.fromPackedBounds(bounds, bounds.length);
+		}
+		RestrictionStore store = new RestrictionStore();
+		for (int item = 0; item < 2000; item++) {
+			store.putRestrictions("SKU-" + item, profiles[random.nextInt(profiles.length)]);
+		}
+		store.putRestrictions("SKU-\u00e9t\u00e9", profiles[0]);
+
+		MappedRestrictionStore mapped = MappedRestrictionStore.map(write(store));
+		assertEquals(store.getItemCount(), mapped.getItemCount());
+		assertEquals(store.getProfileCount(), mapped.getProfileCount());
+		for (String itemId : store.getItemIds()) {
+			assertEquals(itemId, store.getRestrictions(itemId), mapped.getRestrictions(itemId));
+			for (int zipCode = 1; zipCode <= 99999; zipCode += 97) {
+				assertEquals(itemId + " " + zipCode, store.isRestricted(itemId, zipCode), mapped.isRestricted(itemId, zipCode));
+			}
+		}
+		int [] zipCodes = {1, 94133, 50000, 99999};
+		assertEquals(store.isRestricted("SKU-7", zipCodes), mapped.isRestricted("SKU-7", zipCodes));
+	}
+
+	@Test
+	public void testUnknownItemsAndEmptyStore() throws IOException, ZipCodeRangeException {
+
+		RestrictionStore store = new RestrictionStore();
+		store.putRestrictions("SKU-B", ZipCodeRangeSet.fromPackedBounds(new int [] {94133, 94133}, 2));
+		MappedRestrictionStore mapped = MappedRestrictionStore.map(write(store));
+		assertTrue(mapped.containsItem("SKU-B"));
+		assertFalse(mapped.containsItem("SKU-A"));
+		assertFalse(mapped.containsItem("SKU-C"));
+		assertFalse(mapped.isRestricted("SKU-A", 94133));
+		assertTrue(mapped.isRestricted("SKU-B", 94133));
+		assertEquals(ZipCodeRangeSet.EMPTY, mapped.getRestrictions("SKU-C"));
+
+		MappedRestrictionStore empty = MappedRestrictionStore.map(write(new RestrictionStore()));
+		assertEquals(0, empty.getItemCount());
+		assertFalse(empty.isRestricted("SKU-B", 94133));
+	}
+
+	@Test(expected = ZipCodeRangeException.class)
+	public void testRejectsTruncatedFile() throws IOException, ZipCodeRangeException {
+
+		RestrictionStore store = new RestrictionStore();
+		store.putRestrictions("SKU-B", ZipCodeRangeSet.fromPackedBounds(new int [] {94133, 94133}, 2));
+		String fileName = write(store);
+		RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+		try {
+			file.setLength(file.length() - 4);
+		} finally {
+			file.close();
+		}
+		MappedRestrictionStore.map(fileName);
+	}
+
+	@Test
+	public void testRejectsCorruptIndexEntries() throws IOException, ZipCodeRangeException {
+
+		RestrictionStore store = new RestrictionStore();
+		store.putRestrictions("SKU-B", ZipCodeRangeSet.fromPackedBounds(new int [] {94133, 94133}, 2));
+		int entry = MappedRestrictionStore.HEADER_SIZE;
+		int setsOffset = MappedRestrictionStore.HEADER_SIZE + 12 + "SKU-B".length();
+		// key offset, key length, set offset, then the set's range count
+		int [][] corruptions = { {entry, -1}, {entry + 4, 1 << 20}, {entry + 8, Integer.MAX_VALUE - 2},
+			{setsOffset, 1 << 20} };
+		for (int [] corruption : corruptions) {
+			String fileName = write(store);
+			RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+			try {
+				file.seek(corruption[0]);
+				file.writeInt(corruption[1]);
+			} finally {
+				file.close();
+			}
+			try {
+				MappedRestrictionStore.map(fileName);
+				fail("corrupt int at " + corruption[0] + " should be rejected");
+			} catch (ZipCodeRangeException ex) {
+				assertTrue(ex.getMessage().contains("index entry 0"));
+			}
+		}
+	}
+
+	private String write(RestrictionStore store) throws IOException {
+		File file = folder.newFile();
+		MappedRestrictionStore.write(store, file.getPath());
+		return file.getPath();
+	}
+}
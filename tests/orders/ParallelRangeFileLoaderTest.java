@@ -0,0 +1,89 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The parallel loader must flag exactly what the single threaded loader flags.
+ *
+ * @author Julie Sampson
+ *
+ */
+public class ParallelRangeFileLoaderTest {
+
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+
+	private static String inputFileName;
+	private static ForkJoinPool pool;
+
+	/**
+	 * ~4 MB of random ranges with a few bad rows, enough for the loader to split it in 4 chunks.
+	 */
+	@BeforeClass
+	public static void setUpClass() throws IOException {
+		File file = folder.newFile("ranges.csv");
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+		Random random = new Random(42);
+		for (int i = 0; i < 330000; i++) {
+			int lower = 1 + random.nextInt(99000);
+			writer.write(zeroPadded(lower) + "," + zeroPadded(lower + random.nextInt(20)) + "\r\n");
+			if (i % 50000 == 0) {
+				writer.write("bad,row\r\n");
+			}
+		}
+		writer.close();
+		inputFileName = file.getPath();
+		pool = new ForkJoinPool(4);
+	}
+
+	private static String zeroPadded(int zipCode) {
+		String digits = String.valueOf(zipCode);
+		return "00000".substring(digits.length()) + digits;
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void testBitmapEngine() throws IOException, ZipCodeRangeException {
+		assertParallelMatchesSequential(RangeReducerType.BITMAP);
+	}
+
+	@Test
+	public void testSortMergeEngine() throws IOException, ZipCodeRangeException {
+		assertParallelMatchesSequential(RangeReducerType.SORT_MERGE);
+	}
+
+	private void assertParallelMatchesSequential(RangeReducerType type) throws IOException, ZipCodeRangeException {
+
+		ShippingHelper sequential = new ShippingHelper(type.newReducer());
+		MappedRangeFileReader reader = new MappedRangeFileReader(sequential, false);
+		reader.load(inputFileName);
+
+		ShippingHelper parallel = new ShippingHelper(type.newReducer());
+		ParallelRangeFileLoader loader = new ParallelRangeFileLoader(pool, false);
+		loader.load(inputFileName, parallel);
+
+		assertEquals(ZipCodeRangeSet.fromShippingHelper(sequential), ZipCodeRangeSet.fromShippingHelper(parallel));
+		assertEquals(330000, loader.getRangeCount());
+		assertEquals(7, loader.getRejectedRowCount());
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Histogram buckets, the counters recorded by loading and parsing, and the JMX view of them.
+ *
+ * @author Julie Sampson
+ *
+ */
+public class PipelineMetricsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private PipelineMetrics metrics = PipelineMetrics.getInstance();
+
+	@Before
+	public void setUp() {
+		metrics.reset();
+		metrics.setEnabled(true);
+	}
+
+	@After
+	public void tearDown() {
+		metrics.setEnabled(false);
+		metrics.reset();
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentileNanos(99));
+		for (int i = 0; i < 99; i++) {
+			histogram.record(100);
+		}
+		histogram.record(1000000);
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(99 * 100 + 1000000, histogram.getTotalNanos());
+		assertEquals(1000000, histogram.getMaxNanos());
+		assertEquals(127, histogram.getPercentileNanos(50));
+		assertEquals(127, histogram.getPercentileNanos(99));
+		assertEquals(1000000, histogram.getPercentileNanos(100));
+	}
+
+	@Test
+	public void testLoadCountsRangesInOncePerLoad() throws IOException, ZipCodeRangeException {
+		ShippingHelper helper = new ShippingHelper(RangeReducerType.SORT_MERGE.newReducer());
+		new MappedRangeFileReader(helper, false).load(writeInput("100,200\n150,300\n500,600\n0,1\n"));
+		helper.setFlagForZipCodesInRange(700, 800);
+
+		assertEquals(3, metrics.getRangesIn());
+		assertEquals(1, metrics.getHistogram(PipelinePhase.FLAG).getCount());
+		assertEquals(1, metrics.getOutOfBoundsRejects());
+
+		// reads of the reduced ranges, restricted or not, aren't output: only the driver counts ranges out
+		assertEquals(3, helper.getReducedZipCodeRanges(true).size());
+		helper.getReducedZipCodeRanges(false);
+		assertEquals(2, metrics.getHistogram(PipelinePhase.REDUCE).getCount());
+		assertEquals(0, metrics.getRangesOut());
+		metrics.recordRangesOut(2);
+		assertEquals(1.5, metrics.getReductionRatio(), 0.0);
+	}
+
+	@Test
+	public void testDisabledRecordsNothing() throws ZipCodeRangeException {
+		metrics.setEnabled(false);
+		ShippingHelper helper = new ShippingHelper(RangeReducerType.BITMAP.newReducer());
+		helper.setFlagForZipCodesInRange(100, 200);
+		helper.getReducedZipCodeRanges(true);
+		metrics.stopTimer(PipelinePhase.LOAD, metrics.startTimer());
+
+		assertEquals(0, metrics.getRangesIn());
+		assertEquals(0, metrics.getRangesOut());
+		assertEquals(0, metrics.getHistogram(PipelinePhase.FLAG).getCount());
+		assertEquals(0, metrics.getHistogram(PipelinePhase.LOAD).getCount());
+	}
+
+	@Test
+	public void testParseAndValidationRejects() {
+		String [] badRanges = { "200,100", "0,100", "abc,100" };
+		for (String range : badRanges) {
+			try {
+				new ZipCodeRange(range);
+				fail("Expected a ZipCodeRangeException for " + range);
+			} catch (ZipCodeRangeException ex) {
+				// counted
+			}
+		}
+		assertEquals(1, metrics.getInvertedRejects());
+		assertEquals(1, metrics.getOutOfBoundsRejects());
+		assertEquals(1, metrics.getUnparseableRejects());
+	}
+
+	@Test
+	public void testJmxView() throws Exception {
+		assertTrue(metrics.register());
+		assertTrue(metrics.register());
+		ShippingHelper helper = new ShippingHelper(RangeReducerType.SORT_MERGE.newReducer());
+		new MappedRangeFileReader(helper, false).load(writeInput("100,200\n"));
+		helper.getReducedZipCodeRanges(true);
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(PipelineMetrics.OBJECT_NAME);
+		assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+		assertEquals(1L, server.getAttribute(name, "RangesIn"));
+		TabularData phases = (TabularData) server.getAttribute(name, "Phases");
+		CompositeData reduce = (CompositeData) phases.get(new Object [] { "REDUCE" }).get("value");
+		assertEquals(1L, reduce.get("count"));
+
+		server.invoke(name, "reset", null, null);
+		assertEquals(0L, server.getAttribute(name, "RangesIn"));
+	}
+
+	private String writeInput(String content) throws IOException {
+		File file = folder.newFile();
+		FileWriter writer = new FileWriter(file);
+		writer.write(content);
+		writer.close();
+		return file.getPath();
+	}
+}
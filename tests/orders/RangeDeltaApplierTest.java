@@ -0,0 +1,82 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Julie Sampson
+ *
+ */
+public class RangeDeltaApplierTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testChangesAppliedInOrder() throws IOException, ZipCodeRangeException {
+
+		RangeDeltaApplier applier = new RangeDeltaApplier(false);
+		ZipCodeRangeSet base = applier.loadReducedRanges(write("00001,00003\n10000,10009\n"));
+		ZipCodeRangeSet ranges = applier.apply(base, write("+10010,10020\n-2,2\n+50000,50005\n-50003,50003\n\nbad\n+5,1\n"
+														   + "-10005,10005\n+10005,10005\n"));
+
+		assertEquals("[1,1][3,3][10000,10020][50000,50002][50004,50005]", ranges.toString());
+		assertEquals(3, applier.getAddedCount());
+		assertEquals(3, applier.getRemovedCount());
+		assertEquals(2, applier.getRejectedRowCount());
+	}
+
+	/**
+	 * The result must match a full reload of the base ranges with the same changes made one at a time.
+	 */
+	@Test
+	public void testMatchesIntervalTree() throws IOException, ZipCodeRangeException {
+
+		IntervalTreeRangeReducer expected = new IntervalTreeRangeReducer(false);
+		StringBuilder base = new StringBuilder();
+		for (int lower = 100; lower < 90000; lower += 700) {
+			base.append(lower).append(',').append(lower + 300).append('\n');
+			expected.addRange(lower, lower + 300);
+		}
+		StringBuilder delta = new StringBuilder();
+		for (int lower = 150; lower < 90000; lower += 1100) {
+			boolean add = (lower / 1100) % 2 == 0;
+			delta.append(add ? '+' : '-').append(lower).append(',').append(lower + 900).append('\n');
+			if (add) {
+				expected.addRange(lower, lower + 900);
+			}
+			else {
+				expected.removeRange(lower, lower + 900);
+			}
+		}
+
+		RangeDeltaApplier applier = new RangeDeltaApplier(false);
+		ZipCodeRangeSet ranges = applier.apply(applier.loadReducedRanges(write(base.toString())), write(delta.toString()));
+		assertEquals(ZipCodeRangeSet.fromZipCodeRanges(expected.getReducedZipCodeRanges(true)), ranges);
+	}
+
+	@Test(expected = ZipCodeRangeException.class)
+	public void testUnsortedBaseIsRejected() throws IOException, ZipCodeRangeException {
+
+		new RangeDeltaApplier(false).loadReducedRanges(write("10000,10009\n00001,00003\n"));
+	}
+
+	private String write(String content) throws IOException {
+
+		File file = folder.newFile();
+		FileWriter writer = new FileWriter(file);
+		writer.write(content);
+		writer.close();
+		return file.getPath();
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * Every {@link RangeReducerType} engine must produce the same minimal set of ranges.
+ *
+ * @author Julie Sampson
+ *
+ */
+@RunWith(Parameterized.class)
+public class RangeReducerTest {
+
+	private RangeReducerType type;
+
+	@Parameters(name = "{index}:RangeReducer(engine={0})")
+	public static Collection<Object[]> data() {
+	        return Arrays.asList(new Object[][] {
+	                 {RangeReducerType.BITMAP}, {RangeReducerType.SORT_MERGE}, {RangeReducerType.CHUNKED},
+	                 {RangeReducerType.INTERVAL_TREE}, {RangeReducerType.CONCURRENT_BITMAP}
+	           });
+	 }
+
+	public RangeReducerTest(RangeReducerType type) {
+
+		this.type = type;
+	}
+
+	@Test
+	public void testOverlappingRanges() throws ZipCodeRangeException {
+
+		ShippingHelper helper = helperWithRanges(94133, 94133, 94200, 94299, 94226, 94399);
+		assertEquals("[94133,94133][94200,94399]", format(helper.getReducedZipCodeRanges(true)));
+	}
+
+	@Test
+	public void testUnorderedDisjointRanges() throws ZipCodeRangeException {
+
+		ShippingHelper helper = helperWithRanges(94600, 94699, 94133, 94133, 94200, 94299);
+		assertEquals("[94133,94133][94200,94299][94600,94699]", format(helper.getReducedZipCodeRanges(true)));
+	}
+
+	@Test
+	public void testAdjacentRanges() throws ZipCodeRangeException {
+
+		ShippingHelper helper = helperWithRanges(70003, 70005, 70001, 70002, 35500, 35505, 35000, 36000);
+		assertEquals("[35000,36000][70001,70005]", format(helper.getReducedZipCodeRanges(true)));
+	}
+
+	@Test
+	public void testUnflaggedRanges() throws ZipCodeRangeException {
+
+		ShippingHelper helper = helperWithRanges(1, 3, 60001, 60001, 60003, 60005, 99999, 99999);
+		assertEquals("[4,60000][60002,60002][60006,99998]", format(helper.getReducedZipCodeRanges(false)));
+	}
+
+	@Test
+	public void testReset() throws ZipCodeRangeException {
+
+		ShippingHelper helper = helperWithRanges(10000, 10005);
+		helper.resetZipCodesInRangesToValue(true);
+		assertEquals("[1," + ShippingConfigDefaults.MAXIMUM_BOUND_VALUE + "]", format(helper.getReducedZipCodeRanges(true)));
+		assertTrue(helper.getReducedZipCodeRanges(false).isEmpty());
+
+		helper.resetZipCodesInRangesToValue(false);
+		assertTrue(helper.getReducedZipCodeRanges(true).isEmpty());
+	}
+
+	@Test
+	public void testIsZipCodeFlagged() throws ZipCodeRangeException {
+
+		ShippingHelper helper = helperWithRanges(94133, 94133, 94200, 94299, 94600, 94699);
+		assertTrue(helper.isZipCodeFlagged(94133));
+		assertTrue(helper.isZipCodeFlagged(94650));
+		assertTrue(helper.isZipCodeFlagged(94299));
+		assertFalse(helper.isZipCodeFlagged(94199));
+		assertFalse(helper.isZipCodeFlagged(94300));
+		assertFalse(helper.isZipCodeFlagged(65532));
+	}
+
+	@Test
+	public void testClearFlagForZipCodesInRange() throws ZipCodeRangeException {
+
+		ShippingHelper helper = helperWithRanges(94133, 94133, 94200, 94299, 94600, 94699);
+		helper.clearFlagForZipCodesInRange(new ZipCodeRange(94250, 94250));
+		helper.clearFlagForZipCodesInRange(new ZipCodeRange(94100, 94200));
+		helper.clearFlagForZipCodesInRange(new ZipCodeRange(94650, 94800));
+		assertEquals("[94201,94249][94251,94299][94600,94649]", format(helper.getReducedZipCodeRanges(true)));
+		assertFalse(helper.isZipCodeFlagged(94250));
+
+		helper.setFlagForZipCodesInRange(new ZipCodeRange(94250, 94250));
+		assertEquals("[94201,94299][94600,94649]", format(helper.getReducedZipCodeRanges(true)));
+	}
+
+	@Test
+	public void testLookupsBetweenChanges() throws ZipCodeRangeException {
+
+		ShippingHelper helper = helperWithRanges(94200, 94299);
+		assertTrue(helper.isZipCodeFlagged(94250));
+		assertFalse(helper.isZipCodeFlagged(94133));
+		helper.setFlagForZipCodesInRange(new ZipCodeRange(94133, 94133));
+		assertTrue(helper.isZipCodeFlagged(94133));
+
+		// every other zip code cleared, one split per call
+		for (int zipCode = 94201; zipCode < 94299; zipCode += 2) {
+			helper.clearFlagForZipCodesInRange(new ZipCodeRange(zipCode, zipCode));
+			assertFalse(helper.isZipCodeFlagged(zipCode));
+			assertTrue(helper.isZipCodeFlagged(zipCode + 1));
+		}
+		assertEquals(51, helper.getReducedZipCodeRanges(true).size());
+		helper.setFlagForZipCodesInRange(new ZipCodeRange(94200, 94299));
+		assertEquals("[94133,94133][94200,94299]", format(helper.getReducedZipCodeRanges(true)));
+	}
+
+	private ShippingHelper helperWithRanges(int... bounds) throws ZipCodeRangeException {
+
+		ShippingHelper helper = new ShippingHelper(type.newReducer());
+		for (int i = 0; i < bounds.length; i += 2) {
+			helper.setFlagForZipCodesInRange(new ZipCodeRange(bounds[i], bounds[i + 1]));
+		}
+		return helper;
+	}
+
+	private static String format(ArrayList<ZipCodeRange> ranges) {
+
+		StringBuilder builder = new StringBuilder();
+		for (ZipCodeRange range : ranges) {
+			builder.append('[').append(range.getLowerBound()).append(',').append(range.getUpperBound()).append(']');
+		}
+		return builder.toString();
+	}
+}
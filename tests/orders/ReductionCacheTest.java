@@ -0,0 +1,107 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Fingerprints, LRU eviction and statistics of the cache, and its use by {@link RangeFileRestrictionSource}.
+ *
+ * @author Julie Sampson
+ *
+ */
+public class ReductionCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Reduces a combination to one range per source: source "a" is [1,1], "b" is [3,3]...
+	 */
+	private int reduceCount;
+	private final SourceSetReducer reducer = new SourceSetReducer() {
+		@Override
+		public ZipCodeRangeSet reduce(List<String> sourceIds) {
+			reduceCount++;
+			int [] bounds = new int [sourceIds.size() << 1];
+			for (int i = 0; i < sourceIds.size(); i++) {
+				bounds[i << 1] = bounds[(i << 1) + 1] = 1 + 2 * (sourceIds.get(i).charAt(0) - 'a');
+			}
+			return ZipCodeRangeSet.fromPackedBounds(bounds, bounds.length);
+		}
+	};
+
+	@Test
+	public void testFingerprintIgnoresOrderAndDuplicates() {
+		assertEquals(ReductionCache.fingerprint(Arrays.asList("hazmat", "state-ca")),
+					 ReductionCache.fingerprint(Arrays.asList("state-ca", "hazmat", "state-ca")));
+		assertFalse(ReductionCache.fingerprint(Arrays.asList("a", "bc")).equals(ReductionCache.fingerprint(Arrays.asList("ab", "c"))));
+	}
+
+	@Test
+	public void testHitsMissesAndLruEviction() throws IOException, ZipCodeRangeException {
+		ReductionCache cache = new ReductionCache(2);
+		assertEquals("[1,1][3,3]", cache.getReduced(Arrays.asList("b", "a"), reducer).toString());
+		assertSame(cache.getReduced(Arrays.asList("a", "b"), reducer), cache.getReduced(Arrays.asList("b", "a", "a"), reducer));
+		cache.getReduced(Arrays.asList("c"), reducer);
+		// a+b was used more recently than c, so c goes
+		cache.getReduced(Arrays.asList("a", "b"), reducer);
+		cache.getReduced(Arrays.asList("d"), reducer);
+		cache.getReduced(Arrays.asList("a", "b"), reducer);
+		cache.getReduced(Arrays.asList("c"), reducer);
+
+		assertEquals(4, reduceCount);
+		assertEquals(4, cache.getMissCount());
+		assertEquals(4, cache.getHitCount());
+		assertEquals(2, cache.getEvictionCount());
+		assertEquals(2, cache.size());
+		assertEquals(0.5, cache.getHitRatio(), 0.0);
+	}
+
+	@Test
+	public void testFileSourceReducesEachCombinationOnce() throws IOException, ZipCodeRangeException {
+		String hazmat = write("hazmat.csv", "94133,94133\n94200,94299\n");
+		String state = write("state.csv", "94300,94399\n");
+		File carrier = folder.newFile("carrier" + RangeFileRestrictionSource.BINARY_FILE_EXTENSION);
+		ZipCodeRangeSetFile.write(ZipCodeRangeSet.fromPackedBounds(new int [] {10000, 10099}, 2), carrier.getPath());
+
+		Map<String, String> items = new LinkedHashMap<String, String>();
+		for (int i = 0; i < 10; i++) {
+			items.put("SKU-" + i, (i % 2 == 0) ? hazmat + "+" + state : state + " + " + hazmat);
+		}
+		items.put("SKU-X", hazmat + "+" + carrier.getPath());
+		RangeFileRestrictionSource source = new RangeFileRestrictionSource(items, false);
+		RestrictionStore store = new RestrictionStore();
+		source.loadRestrictions(store);
+
+		assertEquals("[94133,94133][94200,94399]", store.getRestrictions("SKU-3").toString());
+		assertEquals("[10000,10099][94133,94133][94200,94299]", store.getRestrictions("SKU-X").toString());
+		assertEquals(2, store.getProfileCount());
+		assertEquals(2, source.getReductionCache().getMissCount());
+		assertEquals(9, source.getReductionCache().getHitCount());
+	}
+
+	private String write(String name, String content) throws IOException {
+		File file = folder.newFile(name);
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+		return file.getPath();
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The inverted index must agree with asking each item's ranges in turn.
+ *
+ * @author Julie Sampson
+ *
+ */
+public class RestrictionInvertedIndexTest {
+
+	@Test
+	public void testMatchesPerItemLookups() {
+		Random random = new Random(42);
+		Map<String, ZipCodeRangeSet> items = new LinkedHashMap<String, ZipCodeRangeSet>();
+		for (int item = 0; item < 300; item++) {
+			int count = random.nextInt(8);
+			int [] bounds = new int [count << 1];
+			for (int i = 0; i < count; i++) {
+				int lower = 1 + random.nextInt(99000);
+				bounds[i << 1] = lower;
+				bounds[(i << 1) + 1] = lower + random.nextInt(1000);
+			}
+			items.put("SKU-" + item, ZipCodeRangeSet.fromPackedBounds(bounds, bounds.length));
+		}
+		RestrictionInvertedIndex index = RestrictionInvertedIndex.build(items);
+		assertEquals(300, index.getItemCount());
+
+		ZipCodeRangeSet [] sets = items.values().toArray(new ZipCodeRangeSet [0]);
+		for (int zipCode = 0; zipCode <= 100000; zipCode += 7) {
+			BitSet expected = new BitSet();
+			for (int item = 0; item < sets.length; item++) {
+				if (sets[item].isRestricted(zipCode)) {
+					expected.set(item);
+				}
+			}
+			assertEquals(String.valueOf(zipCode), expected, index.getRestrictedItems(zipCode));
+		}
+	}
+
+	/**
+	 * 20000 items with a narrow range each give about 40000 intervals that all have a different set of items,
+	 * a full set per interval would take 100 MB.
+	 */
+	@Test
+	public void testLargeCatalogStaysSmall() {
+		Random random = new Random(7);
+		Map<String, ZipCodeRangeSet> items = new LinkedHashMap<String, ZipCodeRangeSet>();
+		for (int item = 0; item < 20000; item++) {
+			int lower = 1 + random.nextInt(99000);
+			items.put("SKU-" + item, ZipCodeRangeSet.fromPackedBounds(new int [] {lower, lower + random.nextInt(500)}, 2));
+		}
+		RestrictionInvertedIndex index = RestrictionInvertedIndex.build(items);
+
+		assertTrue(index.getIntervalCount() > 30000);
+		assertTrue(String.valueOf(index.getCheckpointCount()), index.getCheckpointCount() <= 40000 / (20000 / 16) + 1);
+		assertTrue(String.valueOf(index.getMemorySize()), index.getMemorySize() < 1000000);
+
+		ZipCodeRangeSet [] sets = items.values().toArray(new ZipCodeRangeSet [0]);
+		for (int zipCode = 0; zipCode <= 100000; zipCode += 997) {
+			BitSet expected = new BitSet();
+			for (int item = 0; item < sets.length; item++) {
+				if (sets[item].isRestricted(zipCode)) {
+					expected.set(item);
+				}
+			}
+			assertEquals(String.valueOf(zipCode), expected, index.getRestrictedItems(zipCode));
+		}
+	}
+
+	@Test
+	public void testCandidates() {
+		RestrictionStore store = new RestrictionStore();
+		store.putRestrictions("SKU-B", ZipCodeRangeSet.fromPackedBounds(new int [] {94000, 94999}, 2));
+		store.putRestrictions("SKU-A", ZipCodeRangeSet.fromPackedBounds(new int [] {94133, 94133, 95000, 95099}, 4));
+		store.putRestrictions("SKU-C", ZipCodeRangeSet.EMPTY);
+		RestrictionInvertedIndex index = RestrictionInvertedIndex.build(store);
+
+		assertEquals(0, index.getItemNumber("SKU-A"));
+		assertEquals("SKU-C", index.getItemId(2));
+		assertEquals(-1, index.getItemNumber("SKU-D"));
+		assertEquals(5, index.getIntervalCount());
+
+		BitSet candidates = index.toItemNumbers(Arrays.asList("SKU-A", "SKU-C", "SKU-D"));
+		assertEquals("{0}", index.getRestrictedCandidates(94133, candidates).toString());
+		assertEquals("{2}", index.getShippableCandidates(94133, candidates).toString());
+		assertEquals("{0, 2}", index.getShippableCandidates(94134, candidates).toString());
+		assertEquals("{0, 2}", candidates.toString());
+		assertEquals("{1}", index.getRestrictedItems(94999).toString());
+		assertTrue(index.getRestrictedItems(1).isEmpty());
+		assertTrue(index.getRestrictedItems(99999).isEmpty());
+	}
+}
@@ -0,0 +1,195 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Julie Sampson
+ *
+ */
+public class RestrictionServiceTest {
+
+	private ExecutorService executor;
+	private RestrictionService service;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newSingleThreadExecutor();
+		service = new RestrictionService(executor);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testReloadPublishesNewVersion() throws Exception {
+
+		assertEquals(0, service.getSnapshot().getVersion());
+		assertFalse(service.isRestricted("SKU-1", 94133));
+
+		RestrictionSnapshot first = service.reload(sourceOf("SKU-1", 94133, 94133)).get();
+		assertSame(first, service.getSnapshot());
+		assertTrue(service.isRestricted("SKU-1", 94133));
+
+		RestrictionSnapshot second = service.reload(sourceOf("SKU-1", 94200, 94299)).get();
+		assertTrue(second.getVersion() > first.getVersion());
+		assertFalse(service.isRestricted("SKU-1", 94133));
+		assertTrue(service.isRestricted("SKU-1", 94250));
+
+		// a reader holding the old snapshot keeps a consistent view
+		assertTrue(first.isRestricted("SKU-1", 94133));
+	}
+
+	@Test
+	public void testScheduledReloadsWaitForInitialDelay() throws Exception {
+
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		try {
+			RestrictionSnapshot loaded = service.reload(sourceOf("SKU-1", 94133, 94133)).get();
+			ScheduledFuture<?> reloads = service.scheduleReloads(scheduler, sourceOf("SKU-1", 94200, 94299), 1, 1,
+					TimeUnit.HOURS);
+			assertTrue(reloads.getDelay(TimeUnit.MINUTES) >= 59);
+			assertSame(loaded, service.getSnapshot());
+			reloads.cancel(false);
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testReadersSeeOldSnapshotDuringReload() throws Exception {
+
+		service.reload(sourceOf("SKU-1", 94133, 94133)).get();
+		final CountDownLatch halfLoaded = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		CompletableFuture<RestrictionSnapshot> reload = service.reload(new RestrictionSource() {
+			@Override
+			public void loadRestrictions(RestrictionStore store) throws IOException, ZipCodeRangeException {
+				store.putRestrictions("SKU-2", rangeSet(10000, 10005));
+				halfLoaded.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					throw new IOException(ex);
+				}
+				store.putRestrictions("SKU-1", rangeSet(20000, 20005));
+			}
+		});
+
+		halfLoaded.await();
+		assertTrue(service.isRestricted("SKU-1", 94133));
+		assertFalse(service.isRestricted("SKU-2", 10000));
+
+		release.countDown();
+		reload.get();
+		assertTrue(service.isRestricted("SKU-2", 10000));
+		assertTrue(service.isRestricted("SKU-1", 20000));
+		assertEquals(2, service.getSnapshot().getItemCount());
+	}
+
+	@Test
+	public void testFailedReloadKeepsCurrentSnapshot() throws Exception {
+
+		RestrictionSnapshot loaded = service.reload(sourceOf("SKU-1", 94133, 94133)).get();
+		CompletableFuture<RestrictionSnapshot> failed = service.reload(new RestrictionSource() {
+			@Override
+			public void loadRestrictions(RestrictionStore store) throws IOException {
+				store.putRestrictions("SKU-1", ZipCodeRangeSet.EMPTY);
+				throw new IOException("source unavailable");
+			}
+		});
+
+		try {
+			failed.get();
+			fail("reload should have failed");
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof IOException);
+		}
+		assertSame(loaded, service.getSnapshot());
+		assertTrue(service.isRestricted("SKU-1", 94133));
+		assertEquals("source unavailable", service.getLastReloadFailure().getMessage());
+	}
+
+	@Test
+	public void testUncheckedReloadFailureIsKept() throws Exception {
+
+		RestrictionSnapshot loaded = service.reload(sourceOf("SKU-1", 94133, 94133)).get();
+		CompletableFuture<RestrictionSnapshot> failed = service.reload(new RestrictionSource() {
+			@Override
+			public void loadRestrictions(RestrictionStore store) {
+				throw new IllegalStateException("bad row");
+			}
+		});
+
+		try {
+			failed.get();
+			fail("reload should have failed");
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+		assertSame(loaded, service.getSnapshot());
+		assertEquals("bad row", service.getLastReloadFailure().getMessage());
+	}
+
+	@Test
+	public void testStaleReloadDoesNotReplaceNewerSnapshot() throws Exception {
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<RestrictionSnapshot> slow = service.reload(new RestrictionSource() {
+			@Override
+			public void loadRestrictions(RestrictionStore store) throws IOException {
+				store.putRestrictions("SKU-1", rangeSet(10000, 10005));
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					throw new IOException(ex);
+				}
+			}
+		});
+
+		// the slow reload has its version, publish a newer one before it finishes
+		started.await();
+		RestrictionStore store = new RestrictionStore();
+		store.putRestrictions("SKU-1", rangeSet(20000, 20005));
+		RestrictionSnapshot newer = service.publish(store);
+
+		release.countDown();
+		assertSame(newer, slow.get());
+		assertSame(newer, service.getSnapshot());
+		assertTrue(service.isRestricted("SKU-1", 20000));
+	}
+
+	private static RestrictionSource sourceOf(final String itemId, final int lower, final int upper) {
+		return new RestrictionSource() {
+			@Override
+			public void loadRestrictions(RestrictionStore store) {
+				store.putRestrictions(itemId, rangeSet(lower, upper));
+			}
+		};
+	}
+
+	private static ZipCodeRangeSet rangeSet(int lower, int upper) {
+		return ZipCodeRangeSet.fromPackedBounds(new int [] {lower, upper}, 2);
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Julie Sampson
+ *
+ */
+public class RestrictionStoreTest {
+
+	private RestrictionStore store;
+
+	@Before
+	public void setUp() {
+		store = new RestrictionStore();
+	}
+
+	@Test
+	public void testIdenticalSetsAreInterned() throws ZipCodeRangeException {
+
+		ShippingHelper helper = new ShippingHelper();
+		helper.setFlagForZipCodesInRange(new ZipCodeRange(94200, 94299));
+		helper.setFlagForZipCodesInRange(new ZipCodeRange(94226, 94399));
+
+		ZipCodeRangeSet first = store.putRestrictions("SKU-1", helper);
+		ZipCodeRangeSet second = store.putRestrictions("SKU-2", ZipCodeRangeSet.fromPackedBounds(new int [] {94300, 94399, 94200, 94299}, 4));
+
+		assertSame(first, second);
+		assertSame(first, store.getRestrictions("SKU-2"));
+		assertEquals("[94200,94399]", first.toString());
+		assertEquals(2, store.getItemCount());
+		assertEquals(1, store.getProfileCount());
+	}
+
+	@Test
+	public void testUnusedProfilesAreDropped() {
+
+		ZipCodeRangeSet hazmat = ZipCodeRangeSet.fromPackedBounds(new int [] {1, 3, 99999, 99999}, 4);
+		ZipCodeRangeSet state = ZipCodeRangeSet.fromPackedBounds(new int [] {94133, 94133}, 2);
+
+		store.putRestrictions("SKU-1", hazmat);
+		store.putRestrictions("SKU-2", hazmat);
+		store.putRestrictions("SKU-2", state);
+		assertEquals(2, store.getProfileCount());
+
+		store.removeRestrictions("SKU-1");
+		assertEquals(1, store.getProfileCount());
+		assertEquals(1, store.getItemCount());
+		assertSame(ZipCodeRangeSet.EMPTY, store.getRestrictions("SKU-1"));
+	}
+
+	@Test
+	public void testFromPackedBoundsMergesRanges() {
+
+		ZipCodeRangeSet ranges = ZipCodeRangeSet.fromPackedBounds(new int [] {70003, 70005, 60003, 60005, 70001, 70002, 60001, 60001}, 8);
+		assertEquals("[60001,60001][60003,60005][70001,70005]", ranges.toString());
+		assertEquals(3, ranges.size());
+		assertEquals(ranges, ZipCodeRangeSet.fromPackedBounds(ranges.toPackedBounds(), 6));
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Julie Sampson
+ *
+ */
+public class SortedRangeFileMergerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Rule
+	public ExpectedException expEx = ExpectedException.none();
+
+	private final StringBuilder merged = new StringBuilder();
+
+	private final RangeSink sink = new RangeSink() {
+		@Override
+		public void acceptRange(int lower, int upper) {
+			merged.append('[').append(lower).append(',').append(upper).append(']');
+		}
+	};
+
+	@Test
+	public void testMergeSortedSources() throws IOException, ZipCodeRangeException {
+
+		String hazmat = writeSource("hazmat.csv", "00001,00003\n60001,60001\n94200,94299\n");
+		String state = writeSource("state.csv", "10000,10005\n60003,60005\n94226,94399\n99999,99999\n");
+		String carrier = writeSource("carrier.csv", "00004,00010\r\n10002,10009\r\nbad,row\r\n70001,70002\r\n70003,70005\r\n");
+
+		SortedRangeFileMerger merger = new SortedRangeFileMerger(false);
+		long count = merger.merge(Arrays.asList(hazmat, state, carrier), sink);
+
+		assertEquals("[1,10][10000,10009][60001,60001][60003,60005][70001,70005][94200,94399][99999,99999]", merged.toString());
+		assertEquals(7, count);
+		assertEquals(1, merger.getRejectedRowCount());
+	}
+
+	@Test
+	public void testRejectCountsAndFile() throws IOException, ZipCodeRangeException {
+
+		String hazmat = writeSource("hazmat.csv", "00001,00003\n0,500\n1 2,3\n10000,5000\n\t20000 ,20005\n");
+		String state = writeSource("state.csv", "abc,def\n99999999999999999999,1\n20003,20009\n1,2,3\n");
+		File rejectFile = folder.newFile();
+		RejectedRowWriter rejects = new RejectedRowWriter(rejectFile.getPath());
+
+		SortedRangeFileMerger merger = new SortedRangeFileMerger(false);
+		merger.setRejectedRowWriter(rejects);
+		merger.merge(Arrays.asList(hazmat, state), sink);
+		rejects.close();
+
+		assertEquals("[1,3][20000,20009]", merged.toString());
+		assertEquals(2, merger.getRejectedRowCount(RangeStatus.OUT_OF_BOUNDS));
+		assertEquals(1, merger.getRejectedRowCount(RangeStatus.INVERTED));
+		assertEquals(3, merger.getRejectedRowCount(RangeStatus.UNPARSEABLE));
+		assertEquals(6, merger.getRejectedRowCount());
+		assertEquals(6, rejects.getRowCount());
+		String rows = new String(Files.readAllBytes(rejectFile.toPath()), StandardCharsets.US_ASCII);
+		assertTrue(rows.contains("OUT_OF_BOUNDS,0,500\n"));
+		assertTrue(rows.contains("UNPARSEABLE,1 2,3\n"));
+		assertTrue(rows.contains("INVERTED,10000,5000\n"));
+		assertTrue(rows.contains("UNPARSEABLE,1,2,3\n"));
+		assertTrue(rows.contains("OUT_OF_BOUNDS,99999999999999999999,1\n"));
+	}
+
+	@Test
+	public void testEmptySource() throws IOException, ZipCodeRangeException {
+
+		String empty = writeSource("empty.csv", "");
+		String state = writeSource("state.csv", "10000,10005\n");
+
+		new SortedRangeFileMerger(false).merge(Arrays.asList(empty, state), sink);
+		assertEquals("[10000,10005]", merged.toString());
+	}
+
+	@Test
+	public void testUnsortedSource() throws IOException, ZipCodeRangeException {
+
+		String unsorted = writeSource("unsorted.csv", "20000,20005\n19900,20001\n");
+
+		expEx.expect(ZipCodeRangeException.class);
+		expEx.expectMessage("unsorted.csv");
+		new SortedRangeFileMerger(false).merge(Arrays.asList(unsorted), sink);
+	}
+
+	private String writeSource(String fileName, String content) throws IOException {
+
+		File file = folder.newFile(fileName);
+		FileWriter writer = new FileWriter(file);
+		writer.write(content);
+		writer.close();
+		return file.getPath();
+	}
+}
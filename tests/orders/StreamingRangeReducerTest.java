@@ -0,0 +1,155 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Early emission on sorted input, reduction of unsorted input and errors, end to end through publishers.
+ *
+ * @author Julie Sampson
+ *
+ */
+public class StreamingRangeReducerTest {
+
+	private ExecutorService executor;
+
+	/**
+	 * Collects the packed bounds it receives and counts down once per range.
+	 */
+	private static final class CollectingSink implements RangeSink {
+		private final List<Integer> bounds = new ArrayList<Integer>();
+		private final CountDownLatch firstRange = new CountDownLatch(1);
+
+		@Override
+		public synchronized void acceptRange(int lower, int upper) {
+			bounds.add(Integer.valueOf(lower));
+			bounds.add(Integer.valueOf(upper));
+			firstRange.countDown();
+		}
+
+		synchronized ZipCodeRangeSet toSet() {
+			int [] packed = new int [bounds.size()];
+			for (int i = 0; i < packed.length; i++) {
+				packed[i] = bounds.get(i).intValue();
+			}
+			return ZipCodeRangeSet.fromPackedBounds(packed, packed.length);
+		}
+	}
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testSortedInputEmitsBeforeItCompletes() throws Exception {
+		CollectingSink sink = new CollectingSink();
+		RangeSinkSubscriber subscriber = new RangeSinkSubscriber(sink);
+		StreamingRangeReducer reducer = new StreamingRangeReducer(true, false, executor, 16);
+		reducer.subscribe(subscriber);
+		SubmissionPublisher<ZipCodeRange> source = new SubmissionPublisher<ZipCodeRange>(executor, 16);
+		source.subscribe(reducer);
+
+		source.submit(new ZipCodeRange(1, 5, false));
+		source.submit(new ZipCodeRange(3, 8, false));
+		source.submit(new ZipCodeRange(9, 9, false));
+		source.submit(new ZipCodeRange(20, 30, false));
+		// [20,30] proves [1,9] can't grow, it must arrive while the source is still open
+		assertTrue(sink.firstRange.await(5, TimeUnit.SECONDS));
+		assertEquals("[1,9]", sink.toSet().toString());
+
+		source.close();
+		assertEquals(Long.valueOf(2), subscriber.getCompletion().get(5, TimeUnit.SECONDS));
+		assertEquals("[1,9][20,30]", sink.toSet().toString());
+		assertEquals(4, reducer.getInputCount());
+		assertEquals(2, reducer.getOutputCount());
+	}
+
+	@Test
+	public void testBackpressureKeepsEveryRange() throws Exception {
+		Random random = new Random(42);
+		int [] bounds = new int [20000];
+		for (int i = 0; i < bounds.length; i += 2) {
+			bounds[i] = 1 + random.nextInt(99000);
+			bounds[i + 1] = bounds[i] + random.nextInt(20);
+		}
+		long [] sorted = new long [bounds.length >> 1];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = ((long) bounds[i << 1] << 32) | bounds[(i << 1) + 1];
+		}
+		Arrays.sort(sorted);
+
+		CollectingSink sink = new CollectingSink();
+		RangeSinkSubscriber subscriber = new RangeSinkSubscriber(sink);
+		StreamingRangeReducer reducer = new StreamingRangeReducer(true, false, executor, 1);
+		reducer.subscribe(subscriber);
+		SubmissionPublisher<ZipCodeRange> source = new SubmissionPublisher<ZipCodeRange>(executor, 1);
+		source.subscribe(reducer);
+		for (long range : sorted) {
+			source.submit(new ZipCodeRange((int) (range >>> 32), (int) range, false));
+		}
+		source.close();
+		subscriber.getCompletion().get(30, TimeUnit.SECONDS);
+
+		assertEquals(ZipCodeRangeSet.fromPackedBounds(bounds, bounds.length), sink.toSet());
+	}
+
+	@Test
+	public void testUnsortedInputIsReducedOnCompletion() throws Exception {
+		CollectingSink sink = new CollectingSink();
+		RangeSinkSubscriber subscriber = new RangeSinkSubscriber(sink);
+		StreamingRangeReducer reducer = new StreamingRangeReducer(false, false, executor, 16);
+		reducer.subscribe(subscriber);
+		SubmissionPublisher<ZipCodeRange> source = new SubmissionPublisher<ZipCodeRange>(executor, 16);
+		source.subscribe(reducer);
+
+		source.submit(new ZipCodeRange(20, 30, false));
+		source.submit(new ZipCodeRange(1, 5, false));
+		source.submit(new ZipCodeRange(6, 10, false));
+		source.close();
+
+		assertEquals(Long.valueOf(2), subscriber.getCompletion().get(5, TimeUnit.SECONDS));
+		assertEquals("[1,10][20,30]", sink.toSet().toString());
+	}
+
+	@Test
+	public void testUnsortedInputDeclaredSortedFails() throws Exception {
+		RangeSinkSubscriber subscriber = new RangeSinkSubscriber(new CollectingSink());
+		StreamingRangeReducer reducer = new StreamingRangeReducer(true, false, executor, 16);
+		reducer.subscribe(subscriber);
+		SubmissionPublisher<ZipCodeRange> source = new SubmissionPublisher<ZipCodeRange>(executor, 16);
+		source.subscribe(reducer);
+
+		source.submit(new ZipCodeRange(20, 30, false));
+		source.submit(new ZipCodeRange(1, 5, false));
+		source.close();
+		try {
+			subscriber.getCompletion().get(5, TimeUnit.SECONDS);
+			fail("Expected the stream to fail");
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof ZipCodeRangeException);
+		}
+	}
+}
@@ -7,6 +7,8 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import server.RestrictionServerTest;
+
 /**
  * @author Julie Sampson
  *
@@ -14,7 +16,27 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ 
 	ShippingHelperTest.class, 
-	ZipCodeBoundsTest.class })
+	ZipCodeBoundsTest.class,
+	ZipCodeBitmapTest.class,
+	RangeReducerTest.class,
+	ZipCodeChunkedBitmapTest.class,
+	RestrictionStoreTest.class,
+	ZipCodeRangeSetTest.class,
+	SortedRangeFileMergerTest.class,
+	MappedRangeFileReaderTest.class,
+	ParallelRangeFileLoaderTest.class,
+	ZipCodeRangeWriterTest.class,
+	ZipCodeRangeSetFileTest.class,
+	AtomicBitmapRangeReducerTest.class,
+	RestrictionServiceTest.class,
+	RangeDeltaApplierTest.class,
+	RestrictionServerTest.class,
+	PipelineMetricsTest.class,
+	ZipCodePrefixIndexTest.class,
+	RestrictionInvertedIndexTest.class,
+	MappedRestrictionStoreTest.class,
+	ReductionCacheTest.class,
+	StreamingRangeReducerTest.class })
 
 public class TSRangeRunner {
 
@@ -0,0 +1,89 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * @author Julie Sampson
+ *
+ */
+@RunWith(Parameterized.class)
+public class ZipCodeBitmapTest {
+
+	private ZipCodeBitmap bitmap;
+	private int lower;
+	private int upper;
+
+	@Parameters(name = "{index}:ZipCodeBitmap(lower={0})upper={1}")
+	public static Collection<Object[]> data() {
+	        return Arrays.asList(new Object[][] {
+	                 {1, 1}, {63, 64}, {64, 127}, {1, 99999}, {99968, 99999}, {10000, 10005}, {127, 300}
+	           });
+	 }
+
+	public ZipCodeBitmapTest(int lower, int upper) {
+
+		this.lower = lower;
+		this.upper = upper;
+	}
+
+	@Before
+	public void setUp() {
+		bitmap = new ZipCodeBitmap(ShippingConfigDefaults.MAX_NUMBER_OF_ZIP_CODES);
+	}
+
+	@Test
+	public void testSetRange() {
+
+		bitmap.setRange(lower, upper);
+		assertFalse(bitmap.get(lower - 1));
+		assertTrue(bitmap.get(lower));
+		assertTrue(bitmap.get(upper));
+		if (upper < bitmap.getMaxValue()) {
+			assertFalse(bitmap.get(upper + 1));
+		}
+	}
+
+	@Test
+	public void testNextSetAndClearBit() {
+
+		bitmap.setRange(lower, upper);
+		assertEquals(lower, bitmap.nextSetBit(1));
+		assertEquals(upper + 1, bitmap.nextClearBit(lower));
+		assertEquals(-1, bitmap.nextSetBit(upper + 1));
+	}
+
+	@Test
+	public void testFill() {
+
+		bitmap.fill(true);
+		assertEquals(bitmap.getMaxValue() + 1, bitmap.nextClearBit(0));
+		bitmap.fill(false);
+		assertEquals(-1, bitmap.nextSetBit(0));
+	}
+
+	@Test
+	public void testReducedRangesMatchFlaggedRange() throws ZipCodeRangeException {
+
+		ShippingHelper helper = new ShippingHelper();
+		helper.setFlagForZipCodesInRange(new ZipCodeRange(lower, upper));
+
+		ZipCodeRange reduced = helper.getReducedZipCodeRanges(true).get(0);
+		assertEquals(lower, reduced.getLowerBound());
+		assertEquals(upper, reduced.getUpperBound());
+		assertEquals(1, helper.getReducedZipCodeRanges(true).size());
+	}
+}
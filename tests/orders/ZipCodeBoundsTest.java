@@ -83,6 +83,18 @@ public class ZipCodeBoundsTest {
 		zipCodeRange = new ZipCodeRange(lowerBound, upperBound);
 	}
 	
+	/**
+	 * Test method for {@link orders.ZipCodeRange#validateBounds(int, int, boolean)}.
+	 */
+	@Test
+	public void testValidateBounds() {
+		
+		RangeStatus status = ZipCodeRange.validateBounds(lowerBound, upperBound, false);
+		assertTrue(status.isRejected());
+		assertEquals(lowerBound > upperBound && lowerBound >= minBounds && lowerBound <= maxBounds && upperBound >= minBounds,
+					 status == RangeStatus.INVERTED);
+	}
+	
 	/**
 	 * Test method for {@link orders.ZipCodeRange#toString()}.
 	 */
@@ -0,0 +1,198 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import config.ShippingConfigDefaults;
+
+/**
+ * 9 digit (ZIP+4) zip codes in the compressed chunked bitmap.
+ *
+ * @author Julie Sampson
+ *
+ */
+public class ZipCodeChunkedBitmapTest {
+
+	private ZipCodeChunkedBitmap bitmap;
+
+	@Rule
+	public ExpectedException expEx = ExpectedException.none();
+
+	@Before
+	public void setUp() {
+		bitmap = new ZipCodeChunkedBitmap();
+	}
+
+	@Test
+	public void testRangeAcrossChunks() {
+
+		bitmap.setRange(941330001, 941530000);
+		assertArrayEquals(new int [] {941330001, 941530000}, bitmap.toRanges());
+		assertTrue(bitmap.get(941330001));
+		assertTrue(bitmap.get(941400000));
+		assertFalse(bitmap.get(941330000));
+		assertFalse(bitmap.get(941530001));
+	}
+
+	@Test
+	public void testScatteredZipCodesSwitchLayouts() {
+
+		// every other zip code: array layout, then run layout, then bitmap layout
+		int base = 5 << 16;
+		for (int i = 0; i < 6000; i++) {
+			bitmap.setRange(base + 2 * i, base + 2 * i);
+		}
+		int [] ranges = bitmap.toRanges();
+		assertEquals(12000, ranges.length);
+		assertEquals(base + 11998, ranges[ranges.length - 1]);
+		assertTrue(bitmap.get(base + 4000));
+		assertFalse(bitmap.get(base + 4001));
+
+		bitmap.setRange(base, base + 0xFFFF);
+		assertArrayEquals(new int [] {base, base + 0xFFFF}, bitmap.toRanges());
+	}
+
+	@Test
+	public void testWideRangeStartsAsRuns() {
+
+		int base = 7 << 16;
+		bitmap.setRange(base + 100, base + 60000);
+		assertTrue(bitmap.getContainer(base) instanceof RunChunkContainer);
+		assertEquals(1, bitmap.getContainer(base).runCount());
+
+		bitmap.setRange(base + 70000, base + 70001);
+		assertTrue(bitmap.getContainer(base + 70000) instanceof ArrayChunkContainer);
+
+		// widening a small array chunk moves it to runs instead of writing every value
+		bitmap.setRange(base + 70002, base + 80000);
+		assertTrue(bitmap.getContainer(base + 70000) instanceof RunChunkContainer);
+		assertArrayEquals(new int [] {base + 100, base + 60000, base + 70000, base + 80000}, bitmap.toRanges());
+	}
+
+	@Test
+	public void testLayoutShrinksAfterRemove() {
+
+		int base = 9 << 16;
+		for (int i = 0; i < 6000; i++) {
+			bitmap.setRange(base + 2 * i, base + 2 * i);
+		}
+		assertTrue(bitmap.getContainer(base) instanceof BitmapChunkContainer);
+
+		// filling the gaps leaves a single run
+		bitmap.setRange(base, base + 11998);
+		assertTrue(bitmap.getContainer(base) instanceof RunChunkContainer);
+
+		// punching holes back in goes to a bitmap, then to an array once few values are left
+		for (int i = 0; i < 5999; i++) {
+			bitmap.clearRange(base + 2 * i + 1, base + 2 * i + 1);
+		}
+		assertTrue(bitmap.getContainer(base) instanceof BitmapChunkContainer);
+		bitmap.clearRange(base + 100, base + 11998);
+		assertTrue(bitmap.getContainer(base) instanceof ArrayChunkContainer);
+		assertEquals(50, bitmap.getContainer(base).cardinality());
+
+		// a run chunk cut down to a few values also becomes an array
+		bitmap.setRange(base + 20000, base + 30000);
+		bitmap.clearRange(base + 20002, base + 30000);
+		bitmap.clearRange(base, base + 99);
+		assertTrue(bitmap.getContainer(base) instanceof ArrayChunkContainer);
+		assertArrayEquals(new int [] {base + 20000, base + 20001}, bitmap.toRanges());
+
+		bitmap.clearRange(base, base + 0xFFFF);
+		assertEquals(null, bitmap.getContainer(base));
+	}
+
+	/**
+	 * Random changes move a chunk through every layout, its counts must always match the flagged values.
+	 */
+	@Test
+	public void testCountsFollowChanges() {
+
+		Random random = new Random(11);
+		BitSet expected = new BitSet();
+		int base = 3 << 16;
+		for (int i = 0; i < 20000; i++) {
+			int lower = random.nextInt(0x10000);
+			// scattered adds up to a bitmap, then wide changes down to runs, then scattered changes down to an array
+			boolean wide = i >= 8000 && i < 9000;
+			int upper = Math.min(0xFFFF, lower + (wide ? random.nextInt(5000) : random.nextInt(4)));
+			if (i >= 8000 && random.nextBoolean()) {
+				bitmap.clearRange(base + lower, base + upper);
+				expected.clear(lower, upper + 1);
+			}
+			else {
+				bitmap.setRange(base + lower, base + upper);
+				expected.set(lower, upper + 1);
+			}
+			ChunkContainer container = bitmap.getContainer(base);
+			int runs = 0;
+			for (int bit = expected.nextSetBit(0); bit >= 0; bit = expected.nextSetBit(expected.nextClearBit(bit))) {
+				runs++;
+			}
+			assertEquals(expected.cardinality(), (container == null) ? 0 : container.cardinality());
+			assertEquals(runs, (container == null) ? 0 : container.runCount());
+			if (i % 1000 == 0) {
+				assertEquals(runs * 2, bitmap.toRanges().length);
+			}
+		}
+	}
+
+	@Test
+	public void testAdjacentRangesMerge() {
+
+		bitmap.setRange(700010000, 700019999);
+		bitmap.setRange(700030000, 700039999);
+		bitmap.setRange(700020000, 700029999);
+		assertArrayEquals(new int [] {700010000, 700039999}, bitmap.toRanges());
+	}
+
+	@Test
+	public void testReducedNineDigitRanges() throws ZipCodeRangeException {
+
+		ShippingHelper helper = new ShippingHelper(RangeReducerType.CHUNKED.newReducer(true));
+		helper.setFlagForZipCodesInRange(new ZipCodeRange(941330001, 941330099, true));
+		helper.setFlagForZipCodesInRange(new ZipCodeRange(941330100, 941339999, true));
+		helper.setFlagForZipCodesInRange(new ZipCodeRange(999999999, 999999999, true));
+
+		ArrayList<ZipCodeRange> flagged = helper.getReducedZipCodeRanges(true);
+		assertEquals(2, flagged.size());
+		assertEquals(941330001, flagged.get(0).getLowerBound());
+		assertEquals(941339999, flagged.get(0).getUpperBound());
+
+		ArrayList<ZipCodeRange> unflagged = helper.getReducedZipCodeRanges(false);
+		assertEquals(2, unflagged.size());
+		assertEquals(941330000, unflagged.get(0).getUpperBound());
+		assertEquals(999999998, unflagged.get(1).getUpperBound());
+		assertTrue(helper.isZipCodeFlagged(941335000));
+	}
+
+	@Test
+	public void testNineDigitBounds() throws ZipCodeRangeException {
+
+		ZipCodeRange range = new ZipCodeRange(1, ShippingConfigDefaults.MAXIMUM_9_DIGIT_BOUND_VALUE, true);
+		assertEquals(ShippingConfigDefaults.MAXIMUM_9_DIGIT_BOUND_VALUE, range.getUpperBound());
+
+		expEx.expect(ZipCodeRangeException.class);
+		expEx.expectMessage(CoreMatchers.containsString("Invalid"));
+		new ZipCodeRange(94133, 941330001);
+	}
+
+	@Test
+	public void testBitmapEngineRejectsNineDigit() {
+
+		expEx.expect(IllegalArgumentException.class);
+		RangeReducerType.BITMAP.newReducer(true);
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The prefix index must answer every zip code the same way as the set it's compiled from.
+ *
+ * @author Julie Sampson
+ *
+ */
+public class ZipCodePrefixIndexTest {
+
+	@Test
+	public void testMatchesRangeSet() {
+		Random random = new Random(42);
+		for (int round = 0; round < 20; round++) {
+			int count = 1 + random.nextInt(200);
+			int [] bounds = new int [count << 1];
+			for (int i = 0; i < count; i++) {
+				int lower = 1 + random.nextInt(99999);
+				bounds[i << 1] = lower;
+				bounds[(i << 1) + 1] = Math.min(99999, lower + random.nextInt(round % 2 == 0 ? 30 : 3000));
+			}
+			ZipCodeRangeSet ranges = ZipCodeRangeSet.fromPackedBounds(bounds, bounds.length);
+			ZipCodePrefixIndex index = ZipCodePrefixIndex.compile(ranges);
+			for (int zipCode = 0; zipCode <= 99999; zipCode++) {
+				assertEquals(String.valueOf(zipCode), ranges.isRestricted(zipCode), index.isRestricted(zipCode));
+			}
+		}
+	}
+
+	@Test
+	public void testSharesIdenticalLeaves() {
+		// the same 10 zip codes at the start of 500 prefixes, and 100 whole prefixes
+		int [] bounds = new int [1002];
+		for (int i = 0; i < 500; i++) {
+			bounds[i << 1] = 10000 + i * 100;
+			bounds[(i << 1) + 1] = 10009 + i * 100;
+		}
+		bounds[1000] = 80000;
+		bounds[1001] = 89999;
+		ZipCodePrefixIndex index = ZipCodePrefixIndex.compile(ZipCodeRangeSet.fromPackedBounds(bounds, bounds.length));
+
+		assertEquals(1, index.getLeafCount());
+		assertEquals(2016, index.getMemorySize());
+		assertTrue(index.isRestricted(59909));
+		assertFalse(index.isRestricted(59910));
+		assertTrue(index.isRestricted(85555));
+		assertFalse(index.isRestricted(99999));
+		assertFalse(index.isRestricted(-1));
+		assertFalse(index.isRestricted(100000));
+	}
+
+	@Test
+	public void testEmptySet() {
+		ZipCodePrefixIndex index = ZipCodePrefixIndex.compile(ZipCodeRangeSet.EMPTY);
+		assertEquals(0, index.getLeafCount());
+		assertFalse(index.isRestricted(94133));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsNineDigitZipCodes() {
+		ZipCodePrefixIndex.compile(ZipCodeRangeSet.fromPackedBounds(new int [] {941330001, 941330099}, 2));
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Julie Sampson
+ *
+ */
+public class ZipCodeRangeSetFileTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWriteAndMap() throws IOException, ZipCodeRangeException {
+
+		ZipCodeRangeSet ranges = ZipCodeRangeSet.fromPackedBounds(new int [] {94133, 94133, 94200, 94299, 94600, 94699}, 6);
+		ZipCodeRangeSetFile mapped = ZipCodeRangeSetFile.map(write(ranges));
+
+		assertEquals(3, mapped.size());
+		assertEquals(ranges, mapped.toZipCodeRangeSet());
+		assertTrue(mapped.isRestricted(94133));
+		assertTrue(mapped.isRestricted(94699));
+		assertFalse(mapped.isRestricted(94132));
+		assertFalse(mapped.isRestricted(94300));
+		assertFalse(mapped.isRestricted(99999));
+	}
+
+	@Test
+	public void testEmptySet() throws IOException, ZipCodeRangeException {
+
+		ZipCodeRangeSetFile mapped = ZipCodeRangeSetFile.map(write(ZipCodeRangeSet.EMPTY));
+		assertEquals(0, mapped.size());
+		assertFalse(mapped.isRestricted(1));
+		assertEquals(ZipCodeRangeSet.EMPTY, mapped.toZipCodeRangeSet());
+	}
+
+	/**
+	 * Enough 9 digit ranges to span several index blocks, every lookup must agree with the in memory set.
+	 */
+	@Test
+	public void testLookupsMatchInMemorySet() throws IOException, ZipCodeRangeException {
+
+		Random random = new Random(7);
+		int [] bounds = new int [2000];
+		for (int i = 0; i < bounds.length; i += 2) {
+			bounds[i] = 1 + random.nextInt(999000000);
+			bounds[i + 1] = bounds[i] + random.nextInt(100000);
+		}
+		ZipCodeRangeSet ranges = ZipCodeRangeSet.fromPackedBounds(bounds, bounds.length);
+		ZipCodeRangeSetFile mapped = ZipCodeRangeSetFile.map(write(ranges));
+
+		assertEquals(ranges, mapped.toZipCodeRangeSet());
+		for (int i = 0; i < ranges.size(); i++) {
+			int lower = ranges.getLowerBound(i);
+			int upper = ranges.getUpperBound(i);
+			for (int zipCode : new int [] {lower - 1, lower, upper, upper + 1}) {
+				assertEquals(String.valueOf(zipCode), ranges.isRestricted(zipCode), mapped.isRestricted(zipCode));
+			}
+		}
+	}
+
+	@Test(expected = ZipCodeRangeException.class)
+	public void testCorruptFileIsRejected() throws IOException, ZipCodeRangeException {
+
+		String fileName = write(ZipCodeRangeSet.fromPackedBounds(new int [] {10000, 10005, 20000, 20005}, 4));
+		RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+		file.seek(file.length() - 1);
+		file.write(0x7F);
+		file.close();
+		ZipCodeRangeSetFile.map(fileName);
+	}
+
+	@Test(expected = ZipCodeRangeException.class)
+	public void testNotARangeSetFile() throws IOException, ZipCodeRangeException {
+
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		buffer.put("10000,10005\n".getBytes());
+		ZipCodeRangeSetFile.wrap(buffer, "ranges.csv");
+	}
+
+	private String write(ZipCodeRangeSet ranges) throws IOException {
+
+		File file = folder.newFile();
+		ZipCodeRangeSetFile.write(ranges, file.getPath());
+		return file.getPath();
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Julie Sampson
+ *
+ */
+public class ZipCodeRangeSetTest {
+
+	private ZipCodeRangeSet ranges;
+
+	@Before
+	public void setUp() {
+		ranges = ZipCodeRangeSet.fromPackedBounds(new int [] {94133, 94133, 94200, 94299, 94600, 94699}, 6);
+	}
+
+	@Test
+	public void testIsRestricted() {
+
+		for (int zipCode : new int [] {94133, 94650, 94230, 94600, 94299}) {
+			assertTrue(String.valueOf(zipCode), ranges.isRestricted(zipCode));
+		}
+		for (int zipCode : new int [] {94199, 94300, 65532, 1, 99999, 94132, 94700}) {
+			assertFalse(String.valueOf(zipCode), ranges.isRestricted(zipCode));
+		}
+		assertFalse(ZipCodeRangeSet.EMPTY.isRestricted(94133));
+	}
+
+	@Test
+	public void testIsRestrictedSortedBatch() {
+
+		BitSet restricted = ranges.isRestricted(new int [] {1, 94133, 94133, 94199, 94200, 94650, 94699, 99999});
+		assertEquals("{1, 2, 4, 5, 6}", restricted.toString());
+	}
+
+	@Test
+	public void testIsRestrictedUnsortedBatch() {
+
+		BitSet restricted = ranges.isRestricted(new int [] {94650, 65532, 94133, 94300, 94230});
+		assertEquals("{0, 2, 4}", restricted.toString());
+	}
+
+	@Test
+	public void testUnion() {
+
+		ZipCodeRangeSet other = ZipCodeRangeSet.fromPackedBounds(new int [] {94134, 94150, 94300, 94310, 99999, 99999}, 6);
+		assertEquals("[94133,94150][94200,94310][94600,94699][99999,99999]", ranges.union(other).toString());
+		assertSame(ranges, ranges.union(ZipCodeRangeSet.EMPTY));
+	}
+
+	@Test
+	public void testIntersect() {
+
+		ZipCodeRangeSet allowed = ZipCodeRangeSet.fromPackedBounds(new int [] {94100, 94250, 94650, 99999}, 4);
+		assertEquals("[94133,94133][94200,94250][94650,94699]", ranges.intersect(allowed).toString());
+		assertTrue(ranges.intersect(ZipCodeRangeSet.EMPTY).isEmpty());
+	}
+
+	@Test
+	public void testSubtract() {
+
+		ZipCodeRangeSet denied = ZipCodeRangeSet.fromPackedBounds(new int [] {94133, 94133, 94210, 94219, 94250, 94650}, 6);
+		assertEquals("[94200,94209][94220,94249][94651,94699]", ranges.subtract(denied).toString());
+		assertTrue(ranges.subtract(ranges).isEmpty());
+	}
+
+	@Test
+	public void testComplement() {
+
+		assertEquals("[1,94132][94134,94199][94300,94599][94700,99999]", ranges.complement(false).toString());
+		assertEquals("[94134,94150]", ranges.complement(94133, 94150).toString());
+		assertEquals(ranges, ranges.complement(false).complement(false));
+		assertEquals("[1,99999]", ZipCodeRangeSet.EMPTY.complement(false).toString());
+	}
+
+	@Test
+	public void testCoarsenClosesSmallestGapsFirst() {
+
+		assertSame(ranges, ranges.coarsen(3));
+		ZipCodeRangeSet two = ranges.coarsen(2);
+		assertEquals("[94133,94299][94600,94699]", two.toString());
+		assertEquals(66, two.getZipCodeCount() - ranges.getZipCodeCount());
+		ZipCodeRangeSet one = ranges.coarsen(1);
+		assertEquals("[94133,94699]", one.toString());
+		assertEquals(366, one.getZipCodeCount() - ranges.getZipCodeCount());
+		assertTrue(one.subtract(ranges).union(ranges).equals(one));
+	}
+
+	@Test
+	public void testHelperCoarsensRestrictedRanges() throws ZipCodeRangeException {
+
+		ShippingHelper helper = new ShippingHelper();
+		helper.setFlagForZipCodesInRange(94133, 94133);
+		helper.setFlagForZipCodesInRange(94200, 94299);
+		helper.setFlagForZipCodesInRange(94600, 94699);
+
+		CoarsenedZipCodeRanges two = helper.getReducedZipCodeRanges(2);
+		assertEquals("[94133,94299][94600,94699]", two.getRanges().toString());
+		assertEquals(1, two.getClosedGapCount());
+		assertEquals(66, two.getExtraZipCodeCount());
+
+		CoarsenedZipCodeRanges fits = helper.getReducedZipCodeRanges(5);
+		assertEquals(3, fits.getRanges().size());
+		assertEquals(0, fits.getClosedGapCount());
+		assertEquals(0, fits.getExtraZipCodeCount());
+
+		// every restricted zip code is still restricted
+		ZipCodeRangeSet exact = ZipCodeRangeSet.fromShippingHelper(helper);
+		assertEquals(exact, helper.getReducedZipCodeRanges(1).getRanges().intersect(exact));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCoarsenNeedsABudget() {
+
+		ranges.coarsen(0);
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ *
+ */
+package orders;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Julie Sampson
+ *
+ */
+public class ZipCodeRangeWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCsvFileIsZeroPadded() throws IOException, ZipCodeRangeException {
+
+		ArrayList<ZipCodeRange> ranges = new ArrayList<ZipCodeRange>();
+		ranges.add(new ZipCodeRange(1, 3));
+		ranges.add(new ZipCodeRange(501, 94399));
+		ranges.add(new ZipCodeRange(99999, 99999));
+
+		assertEquals("00001,00003\n00501,94399\n99999,99999\n", write(OutputSink.CSV_FILE, ranges, false));
+	}
+
+	@Test
+	public void testNineDigitCsvFile() throws IOException, ZipCodeRangeException {
+
+		ArrayList<ZipCodeRange> ranges = new ArrayList<ZipCodeRange>();
+		ranges.add(new ZipCodeRange(1, 941330099, true));
+
+		assertEquals("000000001,941330099\n", write(OutputSink.CSV_FILE, ranges, true));
+	}
+
+	@Test
+	public void testManyRangesSpanBufferFlushes() throws IOException {
+
+		File file = folder.newFile();
+		ZipCodeRangeWriter writer = new ZipCodeRangeWriter(OutputSink.CSV_FILE, file.getPath(), false);
+		for (int i = 1; i <= 20000; i++) {
+			writer.acceptRange(i, i);
+		}
+		writer.close();
+
+		assertEquals(20000, writer.getRangeCount());
+		assertEquals(20000 * "00001,00001\n".length(), file.length());
+	}
+
+	@Test
+	public void testNoneSinkOnlyCounts() throws IOException, ZipCodeRangeException {
+
+		File file = folder.newFile();
+		ZipCodeRangeWriter writer = new ZipCodeRangeWriter(OutputSink.NONE, file.getPath(), false);
+		writer.acceptRange(10000, 10005);
+		writer.acceptRange(20000, 20005);
+		writer.close();
+
+		assertEquals(2, writer.getRangeCount());
+		assertEquals(0, file.length());
+	}
+
+	@Test
+	public void testSinkFromName() {
+		assertEquals(OutputSink.CSV_FILE, OutputSink.fromName(" csv_file "));
+		assertEquals(OutputSink.STDOUT, OutputSink.fromName("STDOUT"));
+	}
+
+	private String write(OutputSink sink, ArrayList<ZipCodeRange> ranges, boolean use9DigitZip) throws IOException {
+
+		File file = folder.newFile();
+		ZipCodeRangeWriter writer = new ZipCodeRangeWriter(sink, file.getPath(), use9DigitZip);
+		writer.writeRanges(ranges);
+		writer.close();
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+	}
+}
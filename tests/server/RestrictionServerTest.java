@@ -0,0 +1,129 @@
+/**
+ *
+ */
+package server;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import orders.RestrictionService;
+import orders.RestrictionStore;
+import orders.ZipCodeRangeSet;
+
+/**
+ * @author Julie Sampson
+ *
+ */
+public class RestrictionServerTest {
+
+	private ExecutorService reloader;
+	private RestrictionServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		reloader = Executors.newSingleThreadExecutor();
+		RestrictionService service = new RestrictionService(reloader);
+		RestrictionStore store = new RestrictionStore();
+		store.putRestrictions("SKU-1", ZipCodeRangeSet.fromPackedBounds(new int [] {94133, 94133, 94200, 94299, 94600, 94699}, 6));
+		service.publish(store);
+
+		server = new RestrictionServer(service, new InetSocketAddress("127.0.0.1", 0));
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+		reloader.shutdown();
+	}
+
+	@Test
+	public void testSingleLookup() throws IOException {
+
+		assertEquals("1", get("/restricted?item=SKU-1&zip=94650"));
+		assertEquals("0", get("/restricted?item=SKU-1&zip=94199"));
+		assertEquals("0", get("/restricted?item=SKU-2&zip=94650"));
+		assertEquals("1", get("/version"));
+	}
+
+	@Test
+	public void testBatchLookup() throws IOException {
+
+		assertEquals("1011000", post("/restricted/batch?item=SKU-1", "94133,94300\n94230 94600,65532\r\n94700,1"));
+		assertEquals("", post("/restricted/batch?item=SKU-1", ""));
+	}
+
+	@Test
+	public void testBadRequests() throws IOException {
+
+		assertEquals(400, status("/restricted?item=SKU-1&zip=94l33"));
+		assertEquals(400, status("/restricted?zip=94133"));
+		assertEquals(404, status("/restricted/other"));
+	}
+
+	@Test
+	public void testParseZipCodes() {
+
+		assertArrayEquals(new int [] {94133, 1, 941330001}, RestrictionServer.parseZipCodes("94133, 1\n941330001".getBytes(StandardCharsets.US_ASCII)));
+		assertNull(RestrictionServer.parseZipCodes("94133;1".getBytes(StandardCharsets.US_ASCII)));
+		assertNull(RestrictionServer.parseZipCodes("9413300012".getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	private String get(String path) throws IOException {
+
+		HttpURLConnection connection = open(path);
+		assertEquals(200, connection.getResponseCode());
+		return read(connection.getInputStream());
+	}
+
+	private int status(String path) throws IOException {
+
+		HttpURLConnection connection = open(path);
+		int status = connection.getResponseCode();
+		connection.disconnect();
+		return status;
+	}
+
+	private String post(String path, String body) throws IOException {
+
+		HttpURLConnection connection = open(path);
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		OutputStream out = connection.getOutputStream();
+		out.write(body.getBytes(StandardCharsets.US_ASCII));
+		out.close();
+		assertEquals(200, connection.getResponseCode());
+		return read(connection.getInputStream());
+	}
+
+	private HttpURLConnection open(String path) throws IOException {
+
+		return (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+	}
+
+	private static String read(InputStream in) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte [] buffer = new byte [256];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			bytes.write(buffer, 0, read);
+		}
+		in.close();
+		return new String(bytes.toByteArray(), StandardCharsets.US_ASCII);
+	}
+}